@@ -136,6 +136,33 @@ public class LogicalOperatorVisitor {
         }
     }
 
+    /**
+     * print out the line for top-n operator
+     *
+     * @param logTopNOp
+     */
+    public void visit(TopNOperator logTopNOp) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < level; i++) {
+            sb.append('-');
+        }
+        sb.append("TopN");
+        if (logTopNOp.getOrder() != null) {
+            sb.append(logTopNOp.getOrder().toString());
+        }
+        sb.append('[');
+        sb.append(logTopNOp.getLimit() == Long.MAX_VALUE ? "ALL" : String.valueOf(logTopNOp.getLimit()));
+        sb.append(", ");
+        sb.append(logTopNOp.getOffset());
+        sb.append(']');
+        hierarchy.add(sb.toString());
+        for (Operator operator : logTopNOp.getChildren()) {
+            level++;
+            operator.accept(this);
+            level--;
+        }
+    }
+
     /**
      * print out the line for duplicate elimination operator
      *
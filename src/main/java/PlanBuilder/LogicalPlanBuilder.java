@@ -2,7 +2,10 @@ package PlanBuilder;
 
 import logical.operator.*;
 import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.statement.select.OrderByElement;
 import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import util.ColumnCollectorExpressionVisitor;
 import util.JoinExpressionVisitor;
 import util.UnionFindExpressionVisitor;
 import util.unionfind.Constraints;
@@ -18,10 +21,16 @@ public class LogicalPlanBuilder {
     /**
     * Construct a left deep join query plan
     *
+    *            top-n        if limited with distinct
+    *              |
     *           distinct
     *              |
     *             sort
     *              |
+    *           project
+    *              |
+    *            top-n        if limited without distinct, instead of the sort
+    *              |
     *             join
     *        /     |     \
     *   select   select   scan
@@ -52,8 +61,9 @@ public class LogicalPlanBuilder {
             unionFind = ufVisitor.getUnionFind();
         }
         Set<String> attributes = unionFind.getAttributeSet();
+        Set<String> requiredColumns = getRequiredColumns(plainSelect);
         for (int i = 0; i < numTable; i++) {
-            Operator logicOp = new ScanOperator(plainSelect, i);
+            Operator logicOp = new ScanOperator(plainSelect, i, requiredColumns);
             //scanOps.add(scan);
             Map<String, Constraints> constraints = new HashMap<>();
             for (String attribute : attributes) {
@@ -75,6 +85,13 @@ public class LogicalPlanBuilder {
         } else {
             logicOp = selectOps.get(0);
         }
+        // a project keeps one row per row, so without distinct the rows are limited before they are projected
+        boolean limited = TopNOperator.isLimited(plainSelect.getLimit());
+        if (limited && plainSelect.getDistinct() == null) {
+            @SuppressWarnings("unchecked")
+            List<OrderByElement> order = plainSelect.getOrderByElements();
+            logicOp = new TopNOperator(logicOp, order, plainSelect.getLimit());
+        }
         if (plainSelect.getSelectItems() != null
                 && plainSelect.getSelectItems().size() > 0
                 && plainSelect.getSelectItems().get(0).toString() != "*")
@@ -82,13 +99,45 @@ public class LogicalPlanBuilder {
         if (plainSelect.getDistinct() != null) {
             logicOp = new SortOperator(logicOp, plainSelect);
             logicOp = new DuplicateEliminationOperator(logicOp);
+            if (limited)
+                logicOp = new TopNOperator(logicOp, null, plainSelect.getLimit());
         } else {
-            if (plainSelect.getOrderByElements() != null)
+            if (plainSelect.getOrderByElements() != null && !limited)
                 logicOp = new SortOperator(logicOp, plainSelect);
         }
         return logicOp;
     }
 
+    /**
+     * columns the query needs above the scans: the select list, the where clause
+     * with the join keys and the order by list
+     *
+     * @param plainSelect
+     * @return whole names of the columns, null if every column is needed
+     */
+    public static Set<String> getRequiredColumns(PlainSelect plainSelect) {
+        if (plainSelect.getSelectItems() == null) {
+            return null;
+        }
+        ColumnCollectorExpressionVisitor visitor = new ColumnCollectorExpressionVisitor();
+        for (Object item : plainSelect.getSelectItems()) {
+            if (!(item instanceof SelectExpressionItem)) {
+                // * or table.*
+                return null;
+            }
+            ((SelectExpressionItem) item).getExpression().accept(visitor);
+        }
+        if (plainSelect.getWhere() != null) {
+            plainSelect.getWhere().accept(visitor);
+        }
+        if (plainSelect.getOrderByElements() != null) {
+            for (Object element : plainSelect.getOrderByElements()) {
+                ((OrderByElement) element).getExpression().accept(visitor);
+            }
+        }
+        return visitor.isComplete() ? visitor.getColumns() : null;
+    }
+
     private static boolean hasRelatedExpression(Map<String, Integer> schemaMap, PlainSelect plainSelect) {
         Expression originExpression = plainSelect.getWhere();
         if (originExpression == null) {
@@ -73,6 +73,29 @@ public class PhysicalOperatorVisitor {
         }
     }
 
+    /**
+     * visit (print) PhysicalTopNOperator
+     * @param topNOp
+     * @param level
+     */
+    public void visit(PhysicalTopNOperator topNOp, int level) {
+        for (int i = 0; i< level; i++) {
+            phPBTree.append("-");
+        }
+        phPBTree.append("TopN");
+        if (topNOp.getOrder() != null) {
+            phPBTree.append(topNOp.getOrder().toString());
+        }
+        phPBTree.append("[");
+        phPBTree.append(topNOp.getLimit() == Long.MAX_VALUE ? "ALL" : String.valueOf(topNOp.getLimit()));
+        phPBTree.append(", ");
+        phPBTree.append(topNOp.getOffset());
+        phPBTree.append("]\n");
+        for (PhysicalOperator child : topNOp.getChildren()) {
+            child.accept(this, level + 1);
+        }
+    }
+
     /**
      * visit (print) PhysicalProjectOperator
      * @param phProjOp
@@ -152,6 +175,25 @@ public class PhysicalOperatorVisitor {
         }
     }
 
+    /**
+     * visit (print) PhysicalParallelBlockJoinOperator, printed as a BNLJ
+     * @param blockJoinOp
+     * @param level
+     */
+    public void visit(PhysicalParallelBlockJoinOperator blockJoinOp, int level) {
+        for (int i = 0; i< level; i++) {
+            phPBTree.append("-");
+        }
+        phPBTree.append("BNLJ[");
+        if (blockJoinOp.getJoinCondition() != null) {
+            phPBTree.append(blockJoinOp.getJoinCondition().toString());
+        }
+        phPBTree.append("]\n");
+        for (PhysicalOperator child : blockJoinOp.getChildren()) {
+            child.accept(this, level + 1);
+        }
+    }
+
     /**
      * visit (print) PhysicalTupleJoinOperator
      * @param tupleJoinOp
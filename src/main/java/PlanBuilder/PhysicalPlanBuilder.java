@@ -100,19 +100,49 @@ public class PhysicalPlanBuilder {
                   return;
               }
             }
-            if (orders.get(0).size() != 0) {
-                physJoinOp = new PhysicalHashJoinOperator(newLogicalJoinOp, leftChild, rightChild, orders);
+            if (Catalog.getInstance().getJoinMethod() == Constants.JoinMethod.HASH && orders.get(0).size() != 0) {
+                physJoinOp = new PhysicalHashJoinOperator(newLogicalJoinOp, leftChild, rightChild, orders,
+                        estimateCount(children.get(0)));
                 physOpChildren.push(physJoinOp);
                 return;
             }
         }
         // cannot implement SMJ
-        physJoinOp = new PhysicalBlockJoinOperator(newLogicalJoinOp, leftChild, rightChild,
-                Catalog.getInstance().getJoinBlockSize());
+        if (Catalog.getInstance().getJoinThreadCount() > 1 && Catalog.getInstance().getJoinBlockSize() > 1) {
+            physJoinOp = new PhysicalParallelBlockJoinOperator(newLogicalJoinOp, leftChild, rightChild,
+                    Catalog.getInstance().getJoinBlockSize(), Catalog.getInstance().getJoinThreadCount());
+        } else {
+            physJoinOp = new PhysicalBlockJoinOperator(newLogicalJoinOp, leftChild, rightChild,
+                    Catalog.getInstance().getJoinBlockSize());
+        }
         physOpChildren.push(physJoinOp);
 
     }
 
+    /**
+     * estimate the tuple count of a logical subtree from the table stats
+     * a join is assumed to produce about as many tuples as its largest input
+     *
+     * @param op
+     * @return estimated count of tuple
+     */
+    private long estimateCount(Operator op) {
+        if (op instanceof ScanOperator) {
+            return ((ScanOperator) op).getTableStat().getCount();
+        }
+        if (op instanceof SelectOperator) {
+            return ((SelectOperator) op).getTableStat().getCount();
+        }
+        long count = 0;
+        if (op.getChildren() == null) {
+            return count;
+        }
+        for (Operator child : op.getChildren()) {
+            count = Math.max(count, estimateCount(child));
+        }
+        return count;
+    }
+
     /**
      * @param logicalProjOp
      */
@@ -138,6 +168,24 @@ public class PhysicalPlanBuilder {
         physOpChildren.push(physSelectOp);
     }
 
+    /**
+     * keep the rows in a heap if they fit in the memory of a sort, otherwise
+     * limit the output of an external sort
+     * @param logTopNOp
+     */
+    public void visit(TopNOperator logTopNOp) {
+        List<Operator> children = logTopNOp.getChildren();
+        children.get(0).accept(this);
+        PhysicalOperator child = physOpChildren.pop();
+        List<OrderByElement> order = logTopNOp.getOrder();
+        if (order != null
+                && !PhysicalTopNOperator.fitsInMemory(logTopNOp.getRowCount(), logTopNOp.getSchema().size())) {
+            child = new PhysicalExternalSortOperator(new SortOperator(children.get(0), order), child);
+            order = null;
+        }
+        physOpChildren.push(new PhysicalTopNOperator(logTopNOp, child, order));
+    }
+
     /**
      * @param logDupElimOp
      */
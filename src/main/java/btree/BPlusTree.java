@@ -1,24 +1,29 @@
 package btree;
 
-import io.BinaryTupleReader;
+import io.BinaryTupleWriter;
+import io.PagedTupleReader;
 import model.Tuple;
+import util.Catalog;
+import util.Constants;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.UUID;
 
 /**
  * B+ Tree Class
+ * the tree is bulk loaded bottom up in one pass over the sorted data entries,
+ * the leaves are written first, then each index layer above them, the root last.
+ * Only the nodes being filled are kept in memory, the (min key, address) of the
+ * nodes of a layer are kept for the layer above and spilled to a temp file if
+ * there are too many of them.
  * @author jg2273
  */
 public class BPlusTree {
-    private String btFile;
-    private int attribute;
     private int order;
-    private BinaryTupleReader binTupReader;
-    private List<TreeNode> leafLayer;
-    private List<DataEntry> dataEntries;
+    private int memoryPages;
     private Serializer serializer;
 
 
@@ -31,161 +36,264 @@ public class BPlusTree {
      * @param indexFile
      */
     public BPlusTree(String file, int attribute, int order, String indexFile) {
-        this.btFile = file;
-        this.attribute = attribute;
-        this.order = order;
-        this.binTupReader = new BinaryTupleReader(btFile);
-        this.leafLayer = new ArrayList<>();
-        this.dataEntries = new ArrayList<>();
-        this.serializer = new Serializer(indexFile);
-
-        generateDataEntries();
-        generateLeafLayer();
-        List<TreeNode> indexLayer = leafLayer;
-        while (indexLayer.size() != 1) {
-            indexLayer = generateIndexLayer(indexLayer);
-        }
-        serializer.serialize(indexLayer.get(0));
-        //System.out.println("rootNode of B+Tree Key:" + indexLayer.get(0).getKeys());
-        serializer.finish(order);
-        try {
-            binTupReader.close();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
+        this(file, attribute, order, indexFile, Constants.PAGE_SIZE);
     }
 
     /**
-     * the func generates all the data entries of a relation
+     * @param file      table file
+     * @param attribute index of the key column
+     * @param order     order of the tree
+     * @param indexFile index file to write
+     * @param pageSize  size of the pages of the index file
      */
-    private void generateDataEntries() {
-        SortedMap<Integer, DataEntry> entryMap = new TreeMap<>();
-        try {
-            Tuple currTuple = binTupReader.readNextTuple();
-            while (currTuple != null) {
-
-                int pageId = binTupReader.getLastReadPageIndex();
-                int tupleId = binTupReader.getLastReadTupleInPageIndex();
-                int key = currTuple.getDataAt(attribute);
+    public BPlusTree(String file, int attribute, int order, String indexFile, int pageSize) {
+        this(file, attribute, order, indexFile, pageSize, Constants.DEFAULT_INDEX_BUILD_MEMORY);
+    }
 
-                entryMap.computeIfAbsent(key,
-                        dataEntry -> new DataEntry(key, new ArrayList<>()));
-                Rid rid = new Rid(pageId, tupleId);
-                entryMap.get(key).rids.add(rid);
+    /**
+     * @param file        table file
+     * @param attribute   index of the key column
+     * @param order       order of the tree
+     * @param indexFile   index file to write
+     * @param pageSize    size of the pages of the index file
+     * @param memoryPages pages of memory to sort the data entries and keep the layers
+     * @throws IllegalStateException if the table cannot be read or the thread is interrupted
+     */
+    public BPlusTree(String file, int attribute, int order, String indexFile, int pageSize, int memoryPages) {
+        this.order = order;
+        this.memoryPages = memoryPages;
+        this.serializer = new Serializer(indexFile, pageSize);
 
-                currTuple = binTupReader.readNextTuple();
+        RidSorter sorter = null;
+        try {
+            sorter = new RidSorter(file, attribute, memoryPages);
+            Layer layer = generateLeafLayer(sorter);
+            sorter.close();
+            sorter = null;
+            while (layer.size() > 1) {
+                Layer parents = generateIndexLayer(layer);
+                layer.close();
+                layer = parents;
             }
-
-            dataEntries.addAll(entryMap.values());
-
+            layer.close();
         } catch (Exception e) {
-            System.err.println("Failed to read next tuple when generateDataEntry");
+            throw new IllegalStateException("Failed to build the index of " + file, e);
+        } finally {
+            if (sorter != null) {
+                try {
+                    sorter.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            //System.out.println("rootNode of B+Tree Key:" + indexLayer.get(0).getKeys());
+            serializer.finish(order);
         }
     }
 
-
     /**
-     * the func generates the leaf layer of the b+ tree
+     * the func writes the leaf layer of the b+ tree, grouping the sorted rids by key
+     * @param sorter rids of the relation sorted by key
+     * @return the leaves written
      */
-    private void generateLeafLayer() {
-
+    private Layer generateLeafLayer(RidSorter sorter) throws Exception {
+        Layer leaves = new Layer(memoryPages);
         List<DataEntry> leafEntries = new ArrayList<>();
-        int count = 0;
-        for (DataEntry dataEntry : dataEntries) {
-            if (count == 2 * order) {
-                LeafNode leafNode = new LeafNode(order, leafEntries);
-                leafLayer.add(leafNode);
-                leafEntries = new ArrayList<>();
-                count = 0;
+        // a full leaf is written only once the next one is started, the last two leaves may be rebalanced
+        List<DataEntry> pending = null;
+        DataEntry dataEntry = null;
+        while (sorter.next()) {
+            if (dataEntry == null || dataEntry.getKey() != sorter.getKey()) {
+                if (leafEntries.size() == 2 * order) {
+                    if (pending != null) {
+                        writeLeaf(pending, leaves);
+                    }
+                    pending = leafEntries;
+                    leafEntries = new ArrayList<>();
+                }
+                dataEntry = new DataEntry(sorter.getKey(), new ArrayList<>());
+                leafEntries.add(dataEntry);
             }
-            count++;
-            leafEntries.add(dataEntry);
+            dataEntry.rids.add(new Rid(sorter.getPageId(), sorter.getTupleId()));
         }
 
         // handle the case when the last leafNode is underflow
-        if (leafEntries.size() >= order || leafLayer.size() == 0) {
-            LeafNode leafNode = new LeafNode(order, leafEntries);
-            leafLayer.add(leafNode);
+        if (leafEntries.size() >= order || pending == null) {
+            if (pending != null) {
+                writeLeaf(pending, leaves);
+            }
+            writeLeaf(leafEntries, leaves);
         } else {
-            // remove the second last leaf node and split the entries with the last one
-            LeafNode secondLast = (LeafNode) leafLayer.remove(leafLayer.size() - 1);
-
-            List<DataEntry> secondLastEntries = secondLast.getDataEntries();
-            int numEntry = (secondLastEntries.size() + leafEntries.size()) / 2;
-            List<DataEntry> lastEntries = secondLastEntries.subList(numEntry, secondLastEntries.size());
+            // split the entries of the second last leaf node with the last one
+            int numEntry = (pending.size() + leafEntries.size()) / 2;
+            List<DataEntry> lastEntries = new ArrayList<>(pending.subList(numEntry, pending.size()));
             lastEntries.addAll(leafEntries);
-            secondLastEntries = secondLastEntries.subList(0, numEntry);
-            // add the last two leaf nodes
-            leafLayer.add(new LeafNode(order, secondLastEntries));
-            leafLayer.add(new LeafNode(order, lastEntries));
+            writeLeaf(pending.subList(0, numEntry), leaves);
+            writeLeaf(lastEntries, leaves);
         }
+        return leaves;
+    }
 
+    private void writeLeaf(List<DataEntry> dataEntries, Layer leaves) throws Exception {
+        LeafNode leafNode = new LeafNode(order, dataEntries);
+        int address = serializer.serialize(leafNode);
+        leaves.add(dataEntries.isEmpty() ? 0 : leafNode.getMinChildKey(), address);
     }
 
     /**
-     * the func generates the index layer using the previous (children) layer
+     * the func writes the index layer using the previous (children) layer
      * @param prevLayer
-     * @return
+     * @return the index nodes written
      */
-    private List<TreeNode> generateIndexLayer(List<TreeNode> prevLayer) {
-        List<TreeNode> indexLayer = new ArrayList<>();
-        List<Integer> keys = new ArrayList<>();
-        List<TreeNode> children = new ArrayList<>();
+    private Layer generateIndexLayer(Layer prevLayer) throws Exception {
+        Layer indexLayer = new Layer(memoryPages);
+        List<Integer> minKeys = new ArrayList<>();
         List<Integer> childrenAddresses = new ArrayList<>();
-        int count = 0;
-        for (TreeNode prevNode : prevLayer) {
-            children.add(prevNode);
-            int address = serializer.serialize(prevNode);
-            childrenAddresses.add(address);
-            count++;
-            if (count > 1) {
-                //keys.add(prevNode.getMinKey());
-                keys.add(prevNode.getMinChildKey());
+        // a full node is written only once the next one is started, the last two nodes may be rebalanced
+        List<Integer> pendingMinKeys = null;
+        List<Integer> pendingAddresses = null;
+        while (prevLayer.next()) {
+            minKeys.add(prevLayer.getMinKey());
+            childrenAddresses.add(prevLayer.getAddress());
+            if (minKeys.size() == 2 * order + 1) {
+                if (pendingMinKeys != null) {
+                    writeIndex(pendingMinKeys, pendingAddresses, indexLayer);
+                }
+                pendingMinKeys = minKeys;
+                pendingAddresses = childrenAddresses;
+                minKeys = new ArrayList<>();
+                childrenAddresses = new ArrayList<>();
             }
-            if (count == (2 * order + 1)) {
-                IndexNode indexNode = new IndexNode(order, keys, children, childrenAddresses);
-                indexLayer.add(indexNode);
+        }
 
-                keys = new ArrayList<>();
-                children = new ArrayList<>();
-                childrenAddresses = new ArrayList<>();
-                count = 0;
-                continue;
+        if (!minKeys.isEmpty() && minKeys.size() - 1 < order && prevLayer.size() > 2 * order) {
+            // move children of the second last index node to the last one
+            int numKey = (pendingMinKeys.size() - 1 + minKeys.size() - 1) / 2;
+            pendingMinKeys.addAll(minKeys);
+            pendingAddresses.addAll(childrenAddresses);
+            int total = pendingMinKeys.size();
+            writeIndex(pendingMinKeys.subList(0, numKey + 1), pendingAddresses.subList(0, numKey + 1), indexLayer);
+            writeIndex(pendingMinKeys.subList(numKey + 1, total), pendingAddresses.subList(numKey + 1, total),
+                    indexLayer);
+        } else {
+            if (pendingMinKeys != null) {
+                writeIndex(pendingMinKeys, pendingAddresses, indexLayer);
+            }
+            if (!minKeys.isEmpty()) {
+                writeIndex(minKeys, childrenAddresses, indexLayer);
             }
         }
+        return indexLayer;
+    }
+
+    /**
+     * @param minKeys           min key of each child
+     * @param childrenAddresses address of each child
+     * @param indexLayer        layer to add the node to
+     */
+    private void writeIndex(List<Integer> minKeys, List<Integer> childrenAddresses, Layer indexLayer)
+            throws Exception {
+        List<Integer> keys = new ArrayList<>(minKeys.subList(1, minKeys.size()));
+        IndexNode indexNode = new IndexNode(order, keys, new ArrayList<>(childrenAddresses), minKeys.get(0));
+        int address = serializer.serialize(indexNode);
+        indexLayer.add(indexNode.getMinChildKey(), address);
+    }
+
+    /**
+     * the (min key, address) of the nodes of a layer in the order they are written,
+     * kept in memory up to the memory pages and in a temp file beyond them
+     */
+    private static class Layer {
+        private final int maxInts;
+        private int[] pairs = new int[64];
+        private int length;
+        private long size;
+        private String file;
+        private BinaryTupleWriter writer;
+        private PagedTupleReader reader;
+        private int[] spilled = new int[2];
+        private Tuple tuple = new Tuple(spilled);
 
-        if (children != null && !children.isEmpty()) {
-            if (keys.size() < order && prevLayer.size() > 2 * order) {
-                IndexNode secondLast = (IndexNode) indexLayer.remove(indexLayer.size() - 1);
-                List<Integer> secondLastKeys = secondLast.getKeys();
-                int numKey = (secondLastKeys.size() + keys.size()) / 2;
+        private long position;
+        private int minKey;
+        private int address;
+
+        Layer(int memoryPages) {
+            this.maxInts = Math.max(memoryPages, 1) * (Constants.PAGE_SIZE / Constants.INT_SIZE);
+        }
 
-                List<Integer> lastKeys = new ArrayList<>();
-                if (numKey + 1 < 2 * order) {
-                    lastKeys = secondLastKeys.subList(numKey + 1, secondLastKeys.size());
+        void add(int minKey, int address) throws Exception {
+            size++;
+            if (writer == null && length == pairs.length) {
+                if (length < maxInts) {
+                    pairs = Arrays.copyOf(pairs, Math.min(length * 2, maxInts));
+                } else {
+                    new File(Catalog.getInstance().getTempPath()).mkdirs();
+                    file = Catalog.getInstance().getTempPath() + "layer_" + UUID.randomUUID();
+                    writer = new BinaryTupleWriter(file, 2, Catalog.getInstance().getExtentSize());
                 }
-                //lastKeys.add(children.get(0).getMinKey());
-                lastKeys.add(children.get(0).getMinChildKey());
-                lastKeys.addAll(keys);
-
-                List<TreeNode> secondLastChildren = secondLast.getChildren();
-                List<TreeNode> lastChildren = secondLastChildren.subList(numKey + 1, secondLastChildren.size());
-                lastChildren.addAll(children);
-                secondLastChildren = secondLastChildren.subList(0, numKey + 1);
-
-                List<Integer> secondLastChildrenAddress = secondLast.getChildrenAddresses();
-                List<Integer> lastChidrenAddress = secondLastChildrenAddress.subList(numKey + 1, secondLastChildrenAddress.size());
-                lastChidrenAddress.addAll(childrenAddresses);
-                secondLastChildrenAddress = secondLastChildrenAddress.subList(0, numKey + 1);
-
-                indexLayer.add(new IndexNode(order, secondLastKeys, secondLastChildren, secondLastChildrenAddress));
-                indexLayer.add(new IndexNode(order, lastKeys, lastChildren, lastChidrenAddress));
-            } else {
-                indexLayer.add(new IndexNode(order, keys, children, childrenAddresses));
             }
+            if (writer == null) {
+                pairs[length++] = minKey;
+                pairs[length++] = address;
+                return;
+            }
+            spilled[0] = minKey;
+            spilled[1] = address;
+            writer.writeNextTuple(tuple);
         }
 
-        return indexLayer;
+        long size() {
+            return size;
+        }
+
+        /**
+         * move to the next node of the layer, the nodes are read once
+         *
+         * @return false at the end
+         */
+        boolean next() throws Exception {
+            if (position < length / 2) {
+                minKey = pairs[(int) position * 2];
+                address = pairs[(int) position * 2 + 1];
+                position++;
+                return true;
+            }
+            if (writer == null) {
+                return false;
+            }
+            if (reader == null) {
+                writer.finish();
+                reader = Catalog.getInstance().getSequentialReader(file);
+            }
+            Tuple next = reader.readNextTuple();
+            if (next == null) {
+                return false;
+            }
+            minKey = next.getDataAt(0);
+            address = next.getDataAt(1);
+            position++;
+            return true;
+        }
+
+        int getMinKey() {
+            return minKey;
+        }
+
+        int getAddress() {
+            return address;
+        }
+
+        void close() throws Exception {
+            pairs = null;
+            if (reader != null) {
+                reader.close();
+            } else if (writer != null) {
+                writer.finish();
+            }
+            if (file != null) {
+                new File(file).delete();
+            }
+        }
     }
 }
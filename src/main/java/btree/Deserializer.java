@@ -6,17 +6,24 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
+import io.BufferPool;
 import util.Constants;
 
+/**
+ * Deserializer of an index file, the nodes are read through the buffer pool
+ */
 public class Deserializer {
     private File file;
     private ByteBuffer bufferPage;
-    private RandomAccessFile readerPointer;
+    private FileChannel channel;
+    private BufferPool.Page page;  // pinned page of the current node
+    private int address;  // page of the current node
     private int lowKey;
     private int highKey;
     private int order;
     private int rootAddress;
     private int leafCount;
+    private int pageSize = Constants.PAGE_SIZE;
     private int intPointer;
 
     private int ridNo;
@@ -30,7 +37,7 @@ public class Deserializer {
         this.lowKey = lowKey;
         this.highKey = highKey;
         try {
-            this.readerPointer = new RandomAccessFile(this.file, "r");
+            this.channel = new RandomAccessFile(this.file, "r").getChannel();
             readHead();
             searchLeafNode(lowKey, rootAddress);
         } catch (Exception e) {
@@ -38,12 +45,31 @@ public class Deserializer {
         }
     }
 
-    private void readHead() throws IOException {
-        readerPointer.seek(0);
-        this.bufferPage = ByteBuffer.allocate(Constants.PAGE_SIZE);
-        FileChannel inChannel = readerPointer.getChannel();
+    /**
+     * pin a page of the index file, the page pinned before is unpinned
+     *
+     * @param address page number
+     * @param size    page size
+     * @return bytes read
+     * @throws IOException
+     */
+    private int readPage(int address, int size) throws IOException {
+        release();
+        this.page = BufferPool.getInstance().pin(file, channel, address, size);
+        this.address = address;
+        this.bufferPage = page.getBuffer();
+        return page.getLength();
+    }
+
+    private void release() {
+        if (page != null) {
+            BufferPool.getInstance().unpin(page);
+            page = null;
+        }
+    }
 
-        int byteRead = inChannel.read(bufferPage);
+    private void readHead() throws IOException {
+        int byteRead = readPage(0, Constants.PAGE_SIZE);
         if(byteRead < 3 * Constants.INT_SIZE) {
             throw(new IOException());
         }
@@ -51,13 +77,13 @@ public class Deserializer {
         this.rootAddress = bufferPage.getInt(0 * Constants.INT_SIZE);
         this.leafCount = bufferPage.getInt(1 * Constants.INT_SIZE);
         this.order = bufferPage.getInt(2 * Constants.INT_SIZE);
+        // 0 for the default page size
+        int size = bufferPage.getInt(3 * Constants.INT_SIZE);
+        this.pageSize = size == 0 ? Constants.PAGE_SIZE : size;
     }
 
     private void searchLeafNode(int targetKey, int address) throws Exception {
-        readerPointer.seek(address * Constants.PAGE_SIZE);
-        this.bufferPage = ByteBuffer.allocate(Constants.PAGE_SIZE);
-        FileChannel inChannel = readerPointer.getChannel();
-        int byteRead = inChannel.read(bufferPage);
+        int byteRead = readPage(address, pageSize);
         if(byteRead < 1 * Constants.INT_SIZE) {
             throw(new IOException());
         }
@@ -108,10 +134,8 @@ public class Deserializer {
     public Rid getNextRid() {
         if (entryNo >= entryMaxCount) {
             // need read next page
-            this.bufferPage = ByteBuffer.allocate(Constants.PAGE_SIZE);
-            FileChannel inChannel = readerPointer.getChannel();
             try {
-                int byteRead = inChannel.read(bufferPage);
+                int byteRead = readPage(address + 1, pageSize);
                 if (byteRead < Constants.INT_SIZE) {
                     return null;
                 }
@@ -147,8 +171,21 @@ public class Deserializer {
     }
 
     public void reset() throws Exception {
-        this.readerPointer = new RandomAccessFile(this.file, "r");
+        close();
+        this.channel = new RandomAccessFile(this.file, "r").getChannel();
         readHead();
         searchLeafNode(lowKey, rootAddress);
     }
-}
\ No newline at end of file
+
+    /**
+     * unpin the current node and close the index file
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        release();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -1,22 +1,27 @@
 package btree;
 
-import java.util.ArrayList;
 import java.util.List;
 
 class IndexNode extends TreeNode {
     List<Integer> keys;
-    List<TreeNode> children;
     List<Integer> childrenAddresses;
+    int minChildKey;
 
     public IndexNode(int order) {
         super(order);
     }
 
-    public IndexNode(int order, List<Integer> keys, List<TreeNode> children, List<Integer> childrenAddresses) {
+    /**
+     * @param order
+     * @param keys              min key of every child but the first
+     * @param childrenAddresses
+     * @param minChildKey       min key of the first child
+     */
+    public IndexNode(int order, List<Integer> keys, List<Integer> childrenAddresses, int minChildKey) {
         super(order);
         this.keys = keys;
-        this.children = children;
         this.childrenAddresses = childrenAddresses;
+        this.minChildKey = minChildKey;
     }
 
     @Override
@@ -24,10 +29,6 @@ class IndexNode extends TreeNode {
         return keys.get(0);
     }
 
-    public List<TreeNode> getChildren() {
-        return children;
-    }
-
     public List<Integer> getChildrenAddresses() {
         return childrenAddresses;
     }
@@ -38,6 +39,6 @@ class IndexNode extends TreeNode {
 
     @Override
     public int getMinChildKey() {
-        return children.get(0).getMinChildKey();
+        return minChildKey;
     }
 }
\ No newline at end of file
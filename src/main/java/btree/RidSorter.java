@@ -0,0 +1,312 @@
+package btree;
+
+import io.BinaryTupleReader;
+import io.BinaryTupleWriter;
+import io.PagedTupleReader;
+import model.Tuple;
+import util.Catalog;
+import util.Constants;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * Sort the (key, rid) pairs of a table by key with bounded memory
+ * a pair is packed in a long, the key in the high half and the position of the
+ * tuple in the table in the low half, so the buffer sorts as primitives and the
+ * rids of a key stay in the order of the table.
+ *
+ * A full buffer is sorted and written as a run of (key, pageId, tupleId) tuples,
+ * the runs are merged as many at a time as the memory holds a reader of, next to
+ * one output extent, until one merge is left, which is streamed to the caller.
+ * The pages left over by a merge are shared as read-ahead of its runs.
+ */
+class RidSorter {
+    private static final long POSITION_MASK = 0xffffffffL;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final String table;
+    private final int maxCapacity;
+    private final int memoryPages;
+    private final int fanIn;
+    private long[] buffer = new long[INITIAL_CAPACITY];
+    private int size;
+    private int tuplesPerPage;
+
+    private String prefix;
+    private int pass;
+    private List<String> runs = new ArrayList<>();
+    private RunMerger merger;
+
+    private int next;
+    private int key;
+    private int pageId;
+    private int tupleId;
+
+    /**
+     * @param table       table file
+     * @param attribute   index of the key column
+     * @param memoryPages pages of memory for the buffer of pairs
+     */
+    RidSorter(String table, int attribute, int memoryPages) throws Exception {
+        this.table = table;
+        this.maxCapacity = Math.max(memoryPages, 1) * (Constants.PAGE_SIZE / Long.BYTES);
+        this.memoryPages = memoryPages;
+        this.fanIn = getFanIn(memoryPages);
+
+        BinaryTupleReader reader = new BinaryTupleReader(table, false);
+        try {
+            Tuple tuple;
+            while ((tuple = reader.readNextView()) != null) {
+                checkInterrupted();
+                if (tuplesPerPage == 0) {
+                    tuplesPerPage = (reader.getPageSize() - 2 * Constants.INT_SIZE)
+                            / (tuple.getDataLength() * Constants.INT_SIZE);
+                }
+                long position = (long) reader.getLastReadPageIndex() * tuplesPerPage
+                        + reader.getLastReadTupleInPageIndex();
+                if (position > POSITION_MASK) {
+                    throw new IllegalStateException("Too many tuples to index in " + table);
+                }
+                add(((long) tuple.getDataAt(attribute) << 32) | position);
+            }
+            reader.close();
+
+            Arrays.sort(buffer, 0, size);
+            if (!runs.isEmpty()) {
+                spill();
+                buffer = null;
+                while (runs.size() > fanIn) {
+                    mergePass();
+                }
+                merger = new RunMerger(runs, getRunReadAhead(memoryPages, runs.size()));
+            }
+        } catch (Exception e) {
+            reader.close();
+            close();
+            throw e;
+        }
+    }
+
+    private void add(long pair) throws Exception {
+        if (size == buffer.length) {
+            if (size < maxCapacity) {
+                buffer = Arrays.copyOf(buffer, Math.min(size * 2, maxCapacity));
+            } else {
+                Arrays.sort(buffer, 0, size);
+                spill();
+            }
+        }
+        buffer[size++] = pair;
+    }
+
+    /**
+     * write the sorted buffer as a run
+     */
+    private void spill() {
+        if (prefix == null) {
+            new File(Catalog.getInstance().getTempPath()).mkdirs();
+            prefix = Catalog.getInstance().getTempPath() + "index_" + UUID.randomUUID() + "_";
+        }
+        String run = prefix + pass + "_" + runs.size();
+        runs.add(run);
+        BinaryTupleWriter writer = new BinaryTupleWriter(run, 3, Catalog.getInstance().getExtentSize());
+        int[] data = new int[3];
+        Tuple tuple = new Tuple(data);
+        for (int i = 0; i < size; i++) {
+            long position = buffer[i] & POSITION_MASK;
+            data[0] = (int) (buffer[i] >> 32);
+            data[1] = (int) (position / tuplesPerPage);
+            data[2] = (int) (position % tuplesPerPage);
+            writer.writeNextTuple(tuple);
+        }
+        writer.finish();
+        size = 0;
+    }
+
+    /**
+     * runs merged at once, each holds a reader without read-ahead next to one output extent
+     *
+     * @param memoryPages pages of memory of the sort
+     * @return fan-in of a merge, at least 2
+     */
+    static int getFanIn(int memoryPages) {
+        Catalog catalog = Catalog.getInstance();
+        long memory = (long) memoryPages * Constants.PAGE_SIZE - catalog.getExtentSize();
+        return (int) Math.max(2, memory / catalog.getSequentialReaderSize(0));
+    }
+
+    /**
+     * extents read ahead by each run of a merge, from the memory left by the fan-in
+     *
+     * @param memoryPages pages of memory of the sort
+     * @param runs        runs merged at once
+     * @return read-ahead of a run, 0 to read synchronously
+     */
+    static int getRunReadAhead(int memoryPages, int runs) {
+        Catalog catalog = Catalog.getInstance();
+        long memory = (long) memoryPages * Constants.PAGE_SIZE - catalog.getExtentSize();
+        long extents = memory / Math.max(runs, 1) / catalog.getExtentSize();
+        return (int) Math.max(0, Math.min(catalog.getReadAhead(), extents - 1));
+    }
+
+    /**
+     * merge the runs fanIn at a time into the runs of the next pass
+     */
+    private void mergePass() throws Exception {
+        pass++;
+        List<String> merged = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i += fanIn) {
+            String run = prefix + pass + "_" + merged.size();
+            BinaryTupleWriter writer = new BinaryTupleWriter(run, 3, Catalog.getInstance().getExtentSize());
+            List<String> files = runs.subList(i, Math.min(i + fanIn, runs.size()));
+            RunMerger group = new RunMerger(files, getRunReadAhead(memoryPages, files.size()));
+            Tuple tuple;
+            while ((tuple = group.next()) != null) {
+                writer.writeNextTuple(tuple);
+            }
+            writer.finish();
+            group.close();
+            merged.add(run);
+        }
+        runs = merged;
+    }
+
+    /**
+     * move to the next pair in key order
+     *
+     * @return false at the end
+     */
+    boolean next() throws Exception {
+        checkInterrupted();
+        if (merger == null) {
+            if (next == size) {
+                return false;
+            }
+            long pair = buffer[next++];
+            long position = pair & POSITION_MASK;
+            key = (int) (pair >> 32);
+            pageId = (int) (position / tuplesPerPage);
+            tupleId = (int) (position % tuplesPerPage);
+            return true;
+        }
+        Tuple tuple = merger.next();
+        if (tuple == null) {
+            return false;
+        }
+        key = tuple.getDataAt(0);
+        pageId = tuple.getDataAt(1);
+        tupleId = tuple.getDataAt(2);
+        return true;
+    }
+
+    /**
+     * an index build that ran out of time is cancelled by interrupting its thread
+     */
+    private static void checkInterrupted() throws InterruptedException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("Index build cancelled");
+        }
+    }
+
+    int getKey() {
+        return key;
+    }
+
+    int getPageId() {
+        return pageId;
+    }
+
+    int getTupleId() {
+        return tupleId;
+    }
+
+    /**
+     * delete the runs
+     */
+    void close() throws Exception {
+        if (merger != null) {
+            merger.close();
+            merger = null;
+        }
+        for (String run : runs) {
+            new File(run).delete();
+        }
+        runs.clear();
+        buffer = null;
+    }
+
+    /**
+     * k-way merge of sorted runs with a heap of their next tuples,
+     * the run files are deleted when closed
+     */
+    private static class RunMerger {
+        private final List<String> files;
+        private final PriorityQueue<Head> heads = new PriorityQueue<>();
+
+        RunMerger(List<String> files, int readAhead) throws Exception {
+            this.files = new ArrayList<>(files);
+            for (String file : this.files) {
+                Head head = new Head(Catalog.getInstance().getSequentialReader(file, readAhead));
+                if (head.advance()) {
+                    heads.add(head);
+                } else {
+                    head.reader.close();
+                }
+            }
+        }
+
+        Tuple next() throws Exception {
+            Head head = heads.poll();
+            if (head == null) {
+                return null;
+            }
+            Tuple tuple = head.tuple;
+            if (head.advance()) {
+                heads.add(head);
+            } else {
+                head.reader.close();
+            }
+            return tuple;
+        }
+
+        void close() throws Exception {
+            for (Head head : heads) {
+                head.reader.close();
+            }
+            heads.clear();
+            for (String file : files) {
+                new File(file).delete();
+            }
+        }
+    }
+
+    private static class Head implements Comparable<Head> {
+        private final PagedTupleReader reader;
+        private Tuple tuple;
+
+        Head(PagedTupleReader reader) {
+            this.reader = reader;
+        }
+
+        boolean advance() throws Exception {
+            tuple = reader.readNextTuple();
+            return tuple != null;
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            for (int i = 0; i < 3; i++) {
+                int cmp = Integer.compare(tuple.getDataAt(i), other.tuple.getDataAt(i));
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package btree;
 
+import io.BufferPool;
 import util.Constants;
 
 import java.io.File;
@@ -20,16 +21,27 @@ public class Serializer {
     private ByteBuffer buffer;                // The buffer page.
     private int pageNum;                    // The current page number.
     private int leafCount;
+    private int pageSize;
 
     public Serializer(String path) {
+        this(path, Constants.PAGE_SIZE);
+    }
+
+    /**
+     * @param path     index file
+     * @param pageSize size of the pages, kept in the header page
+     */
+    public Serializer(String path, int pageSize) {
+        this.pageSize = pageSize;
         try {
+            BufferPool.getInstance().invalidate(new File(path));
             fc = new FileOutputStream(new File(path)).getChannel();
         } catch (IOException e) {
             e.printStackTrace();
         }
 
         // allocate the buffer size for output page
-        buffer = buffer.allocate(Constants.PAGE_SIZE);
+        buffer = ByteBuffer.allocate(pageSize);
         pageNum = 1;
         leafCount = 0;
     }
@@ -41,7 +53,7 @@ public class Serializer {
      * @return
      */
     public int serialize(TreeNode node) {
-        long position = Constants.PAGE_SIZE * (long) pageNum;
+        long position = pageSize * (long) pageNum;
 
         // initialize the buffer.
         try {
@@ -109,6 +121,8 @@ public class Serializer {
             buffer.putInt(pageNum - 1);    // The address of the root.
             buffer.putInt(leafCount);    // The number of leaves in the tree.
             buffer.putInt(order);    // The order of the tree.
+            // The page size, 0 for the default one.
+            buffer.putInt(pageSize == Constants.PAGE_SIZE ? 0 : pageSize);
 
             // finally padding zeros at the end.
             while (buffer.hasRemaining()) {
@@ -126,7 +140,7 @@ public class Serializer {
     // Helper method that erases the buffer by filling zeros.
     private void bufferFlush() {
         buffer.clear();
-        buffer.put(new byte[Constants.PAGE_SIZE]);
+        buffer.put(new byte[pageSize]);
         buffer.clear();
     }
 
@@ -11,16 +11,35 @@ import net.sf.jsqlparser.parser.CCJSqlParser;
 import net.sf.jsqlparser.parser.CCJSqlParserManager;
 import net.sf.jsqlparser.parser.ParseException;
 import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.OrderByElement;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.Select;
+import operator.PhysicalExternalSortOperator;
 import operator.PhysicalOperator;
+import operator.PhysicalScanOperator;
 import util.Catalog;
 import util.Constants;
+import util.StatsCollector;
+import util.StatsFile;
 import util.Constants.JoinMethod;
 import util.Constants.SortMethod;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import btree.BPlusTree;
 
@@ -72,6 +91,9 @@ public class Handler {
         createStats();
 
         setConfigs();
+        if (Catalog.getInstance().isColumnarScan()) {
+            createColumnarTables();
+        }
         try {
             parserIndexInfo();
         } catch (Exception e) {
@@ -86,125 +108,253 @@ public class Handler {
 
     /**
      * create stats.txt file by going through the tables
+     * the statistics of the last run are reused for the tables whose file has not changed
      *
      * @throws Exception
      */
     public static void createStats() throws Exception {
-        String statsPath = Catalog.getInstance().getStatsPath();
-//        File fout = new File(statsPath);
-//        FileOutputStream fos = new FileOutputStream(fout);
-        PrintWriter writer = new PrintWriter(statsPath, "UTF-8");
-
-//        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos));
-
-        Map<String, String> files = Catalog.getInstance().getTablePaths();
-        Map<String, Map<String, Integer>> schemas = Catalog.getInstance().getSchemas();
-        for (String table : files.keySet()) {
-            TupleReader reader = new BinaryTupleReader(files.get(table));
-            int size = schemas.get(table).size();
-            String[] schema = new String[size];
-            int[] maxArray = new int[size];
-            int[] minArray = new int[size];
-            Histogram[] histograms = new Histogram[size];
-            for (int i = 0; i < size; ++i) {
-                histograms[i] = new Histogram("");
-            }
-
-            Arrays.fill(maxArray, Integer.MIN_VALUE);
-            Arrays.fill(minArray, Integer.MAX_VALUE);
-            int count = 0;
-            for (String col : schemas.get(table).keySet()) {
-                schema[schemas.get(table).get(col)] = col.split("\\.")[1];
-            }
-            Tuple tuple = reader.readNextTuple();
-            while (tuple != null) {
-                count++;
-                for (int i = 0; i < size; i++) {
-                    int data = tuple.getDataAt(i);
-                    maxArray[i] = Math.max(maxArray[i], data);
-                    minArray[i] = Math.min(minArray[i], data);
-
-                    histograms[i].add(data);
+        Catalog catalog = Catalog.getInstance();
+        Map<String, TableStatistics> stored = StatsFile.read(catalog.getStatisticsPath());
+        Map<String, TableStatistics> statistics = new LinkedHashMap<>();
+        boolean changed = !new File(catalog.getStatsPath()).exists() || stored.size() != catalog.getTablePaths().size();
+
+        // the tables to scan again are scanned together, each split into page ranges
+        Map<String, String> files = catalog.getTablePaths();
+        Map<String, Map<String, Integer>> schemas = catalog.getSchemas();
+        Map<String, String[]> columns = new HashMap<>();
+        Map<String, long[]> fingerprints = new HashMap<>();
+        Map<String, ForkJoinTask<StatsCollector>> scans = new HashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(catalog.getStatsThreadCount());
+        try {
+            for (String table : files.keySet()) {
+                Map<String, Integer> schema = schemas.get(table);
+                String[] tableColumns = new String[schema.size()];
+                for (String col : schema.keySet()) {
+                    tableColumns[schema.get(col)] = col.split("\\.")[1];
+                }
+                long[] fingerprint = StatsFile.fingerprint(new File(files.get(table)));
+                columns.put(table, tableColumns);
+                fingerprints.put(table, fingerprint);
+                if (!isCurrent(stored.get(table), tableColumns, fingerprint)) {
+                    scans.put(table, StatsCollector.collect(pool, files.get(table), tableColumns.length,
+                            catalog.getStatsSampleSize()));
+                    changed = true;
                 }
-                tuple = reader.readNextTuple();
             }
-            TableHistogram tableHistogram = new TableHistogram();
-            
-            for (Map.Entry<String, Integer> entry : schemas.get(table).entrySet()) {
-                tableHistogram.put(entry.getKey(), histograms[entry.getValue()]);
+            for (String table : files.keySet()) {
+                TableStatistics tableStatistics = stored.get(table);
+                if (scans.containsKey(table)) {
+                    tableStatistics = scans.get(table).join().finish(table, columns.get(table),
+                            fingerprints.get(table));
+                }
+                statistics.put(table, tableStatistics);
+                catalog.setOriginHistograms(table, tableStatistics.getTableHistogram(schemas.get(table)));
             }
-            Catalog.getInstance().setOriginHistograms(table, tableHistogram);
-
-            StringBuilder sb = new StringBuilder();
-            sb.append(table);
-            sb.append(' ');
-            sb.append(count);
-            for (int i = 0; i < size; i++) {
-                sb.append(' ');
-                sb.append(schema[i]);
-                sb.append(',');
-                sb.append(minArray[i]);
-                sb.append(',');
-                sb.append(maxArray[i]);
+        } finally {
+            pool.shutdown();
+        }
+        catalog.setTableStatistics(statistics);
+
+        if (changed) {
+            PrintWriter writer = new PrintWriter(catalog.getStatsPath(), "UTF-8");
+            for (TableStatistics tableStatistics : statistics.values()) {
+                writer.println(tableStatistics.toStatsLine());
             }
-            writer.println(sb.toString());
+            writer.close();
+            StatsFile.write(catalog.getStatisticsPath(), statistics);
+        }
 
+        catalog.parserStats();
+    }
+
+    /**
+     * @return whether the stored statistics are of the current table file, schema and sample size
+     */
+    private static boolean isCurrent(TableStatistics statistics, String[] columns, long[] fingerprint) {
+        if (statistics == null
+                || !Arrays.equals(statistics.getFingerprint(), fingerprint)
+                || !Arrays.equals(statistics.getColumns(), columns)) {
+            return false;
         }
-        writer.close();
+        int sampleSize = statistics.getSample() == null ? 0 : statistics.getSample().getCapacity();
+        return sampleSize == Catalog.getInstance().getStatsSampleSize();
+    }
 
-        Catalog.getInstance().parserStats();
+    /**
+     * the table file was rewritten with the same rows, keep its statistics for the new file
+     */
+    private static void refreshStats(String table) {
+        Catalog catalog = Catalog.getInstance();
+        TableStatistics statistics = catalog.getTableStatistics().get(table);
+        if (statistics == null) {
+            return;
+        }
+        try {
+            statistics.setFingerprint(StatsFile.fingerprint(new File(catalog.getDataPath(table))));
+            StatsFile.write(catalog.getStatisticsPath(), catalog.getTableStatistics());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
      * Build the index files according to the index config stored in Catalog
-     *
+     * the indexes are built in parallel, the indexes of a table with a clustered
+     * index are built once the table is sorted. The memory of the index builds is
+     * shared among the threads, a build running longer than the timeout is cancelled.
+     * The config of an index which failed to build is removed.
      */
     public static void buildIndexes() {
-        new File(Catalog.getInstance().getIndexPath()).mkdirs();
-        List<String> indexConfigsToDelete = new ArrayList<>();
-        for (Map.Entry<String, IndexConfig> entry : Catalog.getInstance().getIndexConfigs().entrySet()) {
-            IndexConfig indexConfig = entry.getValue();
-            String tableName = indexConfig.tableName;
-            int attr = Catalog.getInstance().getTableSchema(tableName).get(indexConfig.schemaName);
-            try {
-                new BPlusTree(
-                        Catalog.getInstance().getDataPath(tableName),
-                        attr,
-                        indexConfig.order,
-                        indexConfig.indexFile
-                );
-            } catch (Exception e) {
-                System.out.println(tableName + attr + " failed to build");
-                indexConfigsToDelete.add(entry.getKey());
+        Catalog catalog = Catalog.getInstance();
+        new File(catalog.getIndexPath()).mkdirs();
+
+        // the index configs of each table
+        Map<String, List<IndexConfig>> tables = new LinkedHashMap<>();
+        for (IndexConfig indexConfig : catalog.getIndexConfigs().values()) {
+            tables.computeIfAbsent(indexConfig.tableName, table -> new ArrayList<>()).add(indexConfig);
+        }
+
+        int threadCount = Math.max(catalog.getIndexBuildThreadCount(), 1);
+        int memoryPages = Math.max(catalog.getIndexBuildMemory() / threadCount, 1);
+        ExecutorService threadPool = Executors.newFixedThreadPool(threadCount);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        List<IndexBuild> builds = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> sorts = new ArrayList<>();
+        Set<String> indexConfigsToDelete = ConcurrentHashMap.newKeySet();
+        for (List<IndexConfig> indexConfigs : tables.values()) {
+            sorts.add(threadPool.submit(() -> {
+                for (IndexConfig indexConfig : indexConfigs) {
+                    if (indexConfig.isClustered) {
+                        try {
+                            sortAndReplaceTable(indexConfig);
+                        } catch (Exception e) {
+                            System.err.println("Failed to sort " + indexConfig.tableName + " for its clustered index");
+                            e.printStackTrace();
+                            indexConfigsToDelete.add(indexConfig.schemaName);
+                        }
+                    }
+                }
+                for (IndexConfig indexConfig : indexConfigs) {
+                    IndexBuild build = new IndexBuild(indexConfig, memoryPages, timer);
+                    builds.add(build);
+                    threadPool.execute(build);
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> sort : sorts) {
+                sort.get();
+            }
+            for (IndexBuild build : builds) {
+                try {
+                    build.get();
+                } catch (Exception e) {
+                    System.out.println(build.indexConfig.schemaName + " failed to build");
+                    indexConfigsToDelete.add(build.indexConfig.schemaName);
+                }
             }
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+        } finally {
+            threadPool.shutdownNow();
+            timer.shutdownNow();
         }
         for (String key : indexConfigsToDelete) {
-            Catalog.getInstance().getIndexConfigs().remove(key);
+            catalog.getIndexConfigs().remove(key);
+        }
+    }
+
+    /**
+     * build of one index, cancelled if it runs longer than the index build timeout
+     */
+    private static class IndexBuild extends FutureTask<Void> {
+        private final IndexConfig indexConfig;
+
+        IndexBuild(IndexConfig indexConfig, int memoryPages, ScheduledExecutorService timer) {
+            super(() -> {
+                Catalog catalog = Catalog.getInstance();
+                ScheduledFuture<?> timeout = null;
+                AtomicBoolean running = new AtomicBoolean(true);
+                if (catalog.getIndexBuildTimeout() > 0) {
+                    Thread thread = Thread.currentThread();
+                    timeout = timer.schedule(() -> {
+                        synchronized (running) {
+                            if (running.get()) {
+                                thread.interrupt();
+                            }
+                        }
+                    }, catalog.getIndexBuildTimeout(), TimeUnit.SECONDS);
+                }
+                long startTime = System.currentTimeMillis();
+                System.out.println("Building index " + indexConfig.schemaName);
+                try {
+                    new BPlusTree(
+                            catalog.getDataPath(indexConfig.tableName),
+                            catalog.getTableSchema(indexConfig.tableName).get(indexConfig.schemaName),
+                            indexConfig.order,
+                            indexConfig.indexFile,
+                            catalog.getPageSize(),
+                            memoryPages
+                    );
+                } finally {
+                    synchronized (running) {
+                        running.set(false);
+                    }
+                    if (timeout != null) {
+                        timeout.cancel(false);
+                    }
+                    // clear an interrupt of the timer arriving at the end of the build, the thread is reused
+                    Thread.interrupted();
+                }
+                System.out.println("Index " + indexConfig.schemaName + " built in "
+                        + (System.currentTimeMillis() - startTime) + "ms, "
+                        + new File(indexConfig.indexFile).length() / catalog.getPageSize() + " pages");
+                return null;
+            });
+            this.indexConfig = indexConfig;
         }
     }
 
-    private static void sortAndReplaceTable(IndexConfig indexConfig) throws Exception{
+    /**
+     * sort the table of a clustered index by its key, the sorts share the planner state of the Catalog
+     * so they run one at a time
+     * the table is sorted by an external sort whatever the sort method, merged into one run which
+     * is written to a new file next to the table, then renamed over the table once complete, so
+     * only the sort buffer is held in memory and the table is never left half written
+     */
+    private static synchronized void sortAndReplaceTable(IndexConfig indexConfig) throws Exception{
         String statement = "Select * From " + indexConfig.tableName
                 + " Order By " + indexConfig.schemaName + ";";
         CCJSqlParserManager parserManager = new CCJSqlParserManager();
         PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
         Catalog.getInstance().setAttributeOrder(plainSelect);
-        PhysicalOperator operator = constructPhysicalQueryPlan(plainSelect);
-        ArrayList<Tuple> sortedResult = new ArrayList<>();
-        Tuple tuple;
-        while ((tuple = operator.getNextTuple()) != null) {
-            sortedResult.add(tuple);
-        }
+        @SuppressWarnings("unchecked")
+        List<OrderByElement> order = plainSelect.getOrderByElements();
+        PhysicalOperator operator = new PhysicalExternalSortOperator(order, new PhysicalScanOperator(plainSelect, 0));
         String path = Catalog.getInstance().getDataPath(indexConfig.tableName);
-        TupleWriter tupleWriter = new BinaryTupleWriter(path, operator.getSchema().size());
-        //TupleWriter readableWriter = new ReadableTupleWriter(path+"_r1", operator.getSchema().size());
-        for (Tuple writeTuple : sortedResult) {
-            tupleWriter.writeNextTuple(writeTuple);
-            //readableWriter.writeNextTuple(writeTuple);
+        File sorted = new File(path + ".sorted");
+        TupleWriter tupleWriter = new BinaryTupleWriter(sorted.getPath(), operator.getSchema().size(),
+                Catalog.getInstance().getPageSize());
+        try {
+            Tuple tuple;
+            while ((tuple = operator.getNextTuple()) != null) {
+                tupleWriter.writeNextTuple(tuple);
+            }
+        } finally {
+            // finish
+            tupleWriter.finish();
+            operator.close();
+        }
+        try {
+            Files.move(sorted.toPath(), new File(path).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            sorted.delete();
+            throw e;
         }
-        // finish
-        tupleWriter.finish();
-        //readableWriter.finish();
+        BufferPool.getInstance().invalidate(new File(path));
+        refreshStats(indexConfig.tableName);
     }
 
     /**
@@ -256,10 +406,14 @@ public class Handler {
             String join = br.readLine();
             String sort = br.readLine();
             String btree = br.readLine();
+            // optional, 1 to generate bytecode for the selections and projections
+            String codegen = br.readLine();
+            // optional, 1 to scan the columnar copies of the tables
+            String columnar = br.readLine();
             br.close();
 
-            if (!setConfig(ret[0], join)) throw new IOException("Fail to read join config");;
-            if (!setConfig(ret[1], sort)) throw new IOException("Fail to read sort config");;
+            if (join == null || !setConfig(ret[0], join.trim())) throw new IOException("Fail to read join config");
+            if (sort == null || !setConfig(ret[1], sort.trim())) throw new IOException("Fail to read sort config");
 
             switch (ret[0][0]) {
                 case 0:
@@ -272,6 +426,13 @@ public class Handler {
                 case 2:
                     Catalog.getInstance().setJoinMethod(JoinMethod.SMJ);
                     break;
+                case 3:
+                    Catalog.getInstance().setJoinMethod(JoinMethod.HASH);
+                    // optional memory budget in pages
+                    if (ret[0][1] > 0) {
+                        Catalog.getInstance().setHashJoinMemory(ret[0][1]);
+                    }
+                    break;
                 default:
                 throw new IOException("Unexpected join method");
             }
@@ -288,7 +449,9 @@ public class Handler {
                     throw new IOException("Unexpected sort method");
             }
 
-            Catalog.getInstance().setIndexScan(btree.equals("1"));
+            Catalog.getInstance().setIndexScan(btree != null && btree.trim().equals("1"));
+            Catalog.getInstance().setCodegen(codegen != null && codegen.trim().equals("1"));
+            Catalog.getInstance().setColumnarScan(columnar != null && columnar.trim().equals("1"));
 
         } catch (FileNotFoundException e) {
             System.err.println("Cannot find the target config file");
@@ -325,12 +488,7 @@ public class Handler {
         BufferedReader br = new BufferedReader(new FileReader(file));
         String config;
         while ((config = br.readLine()) != null) {
-            IndexConfig indexConfig = Catalog.getInstance().setIndexConfig(config);
-            if (indexConfig.isClustered) {
-                if (Catalog.getInstance().isBuildIndex()){
-                    sortAndReplaceTable(indexConfig);
-                }
-            }
+            Catalog.getInstance().setIndexConfig(config);
         }
         br.close();
     }
@@ -457,9 +615,40 @@ public class Handler {
         br.close();
     }
 
-    private static void setConfigs() {
+    /**
+     * default configuration, overridden by the plan builder config if there is one
+     */
+    private static void setConfigs() throws Exception {
+        Catalog.getInstance().setJoinMethod(JoinMethod.HASH);
         Catalog.getInstance().setIndexScan(true);
         Catalog.getInstance().setJoinBlockSize(5);
         Catalog.getInstance().setSortBlockSize(5);
+        if (new File(Constants.CONFIG_PATH).exists()) {
+            parserPlanBuilderConfig();
+        }
+    }
+
+    /**
+     * write the columnar copy of every table, a copy older than its table is written again
+     */
+    public static void createColumnarTables() throws Exception {
+        new File(Catalog.getInstance().getColumnarPath("")).mkdirs();
+        Map<String, String> files = Catalog.getInstance().getTablePaths();
+        for (String table : files.keySet()) {
+            File data = new File(files.get(table));
+            File columnar = new File(Catalog.getInstance().getColumnarPath(table));
+            if (columnar.exists() && columnar.lastModified() >= data.lastModified()) {
+                continue;
+            }
+            BinaryTupleReader reader = new BinaryTupleReader(files.get(table));
+            TupleWriter writer = new ColumnarTupleWriter(columnar.getPath(),
+                    Catalog.getInstance().getTableSchema(table).size(), true, reader.getPageSize());
+            Tuple tuple;
+            while ((tuple = reader.readNextTuple()) != null) {
+                writer.writeNextTuple(tuple);
+            }
+            writer.finish();
+            reader.close();
+        }
     }
 }
@@ -1,6 +1,7 @@
 package io;
 
 import model.Tuple;
+import model.TupleBatch;
 import util.Constants;
 
 import java.io.File;
@@ -12,20 +13,39 @@ import java.nio.channels.FileChannel;
 /**
  * Table Reader, implements the tuple reader and store the buffer
  * Read the table from disk and fetch a tuple
+ * the pages are read through the buffer pool unless the reader is uncached,
+ * e.g. for temp files read once
  */
-public class BinaryTupleReader implements TupleReader {
+public class BinaryTupleReader implements PagedTupleReader {
     private File file;
-    private RandomAccessFile readerPointer;
+    private FileChannel channel;
+    private boolean cached;
+    private BufferPool.Page page;  // pinned page of the buffer pool
     private ByteBuffer bufferPage;
     private int tupleSize;
     private int tupleCount;
     private int tuplePointer;
+    private int pageSize = Constants.PAGE_SIZE;
 
     private long pageIndex = 0;
     private long recordTupleIndex;
 
+    // ints of the current page, decoded once for the views
+    private int[] pageInts = new int[0];
+    private boolean decoded;
+    private Tuple view;
+
     public BinaryTupleReader(String file) {
+        this(file, true);
+    }
+
+    /**
+     * @param file   table file
+     * @param cached false to read the pages without the buffer pool
+     */
+    public BinaryTupleReader(String file, boolean cached) {
         this.file = new File(file);
+        this.cached = cached;
         try {
             reset();
         } catch (Exception e) {
@@ -36,7 +56,7 @@ public class BinaryTupleReader implements TupleReader {
 
     @Override
     public void recordPosition() {
-        int maxTupleCountPerPage = (Constants.PAGE_SIZE - 2 * Constants.INT_SIZE) / (tupleSize * Constants.INT_SIZE);
+        int maxTupleCountPerPage = (pageSize - 2 * Constants.INT_SIZE) / (tupleSize * Constants.INT_SIZE);
         recordTupleIndex = (pageIndex - 1) * maxTupleCountPerPage +
                 (tuplePointer - 2 * Constants.INT_SIZE) / (Constants.INT_SIZE * tupleSize);
     }
@@ -45,6 +65,7 @@ public class BinaryTupleReader implements TupleReader {
      * 
      * @return the page index of last read tuple
      */
+    @Override
     public int getLastReadPageIndex() {
         return (int)pageIndex - 1;
     }
@@ -53,6 +74,7 @@ public class BinaryTupleReader implements TupleReader {
      * 
      * @return the tuple index of the last read tuple
      */
+    @Override
     public int getLastReadTupleInPageIndex() {
         return (tuplePointer - 2 * Constants.INT_SIZE) / (Constants.INT_SIZE * tupleSize) - 1;
     }
@@ -64,23 +86,42 @@ public class BinaryTupleReader implements TupleReader {
 
     @Override
     public void reset() throws Exception {
-        this.readerPointer = new RandomAccessFile(this.file, "r");
+        open();
+        this.pageSize = PageFormat.readPageSize(channel);
+        this.pageIndex = 0;
         readPage();
     }
 
+    /**
+     * open the channel if it is not opened or has been closed
+     *
+     * @throws IOException
+     */
+    private void open() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = new RandomAccessFile(this.file, "r").getChannel();
+        }
+    }
+
     public void readPage() throws Exception {
         try {
+            release();
+            if (cached) {
+                page = BufferPool.getInstance().pin(file, channel, pageIndex, pageSize);
+                this.bufferPage = page.getLength() > 0 ? page.getBuffer() : null;
+            } else {
+                this.bufferPage = ByteBuffer.allocate(pageSize);
+                if (channel.read(bufferPage, pageIndex * pageSize) <= 0) {
+                    this.bufferPage = null;
+                }
+            }
             pageIndex++;
-            this.bufferPage = ByteBuffer.allocate(Constants.PAGE_SIZE);
-            FileChannel inChannel = readerPointer.getChannel();
-
-            int byteRead = inChannel.read(bufferPage);
-            if (byteRead == -1) {
+            decoded = false;
+            if (bufferPage == null) {
                 this.tupleCount = 0;
-                this.bufferPage = null;
             }
             if (bufferPage != null) {
-                tupleSize = bufferPage.getInt(0);
+                tupleSize = PageFormat.tupleSize(bufferPage.getInt(0));
                 tupleCount = bufferPage.getInt(Constants.INT_SIZE);
                 tuplePointer = 2 * Constants.INT_SIZE;
             }
@@ -112,6 +153,57 @@ public class BinaryTupleReader implements TupleReader {
         return tuple;
     }
 
+    /**
+     * the view points into the current page, which is decoded once
+     */
+    @Override
+    public Tuple readNextView() throws Exception {
+        if (this.tupleCount <= 0) {
+            return null;
+        }
+        if (tuplePointer >= (2 + tupleCount * tupleSize) * Constants.INT_SIZE) {
+            readPage();
+            if (bufferPage == null) {
+                close();
+                return null;
+            }
+        }
+        if (!decoded) {
+            pageInts = PageFormat.decode(bufferPage, 0, 2 + tupleCount * tupleSize, pageInts);
+            decoded = true;
+        }
+        if (view == null || view.getDataLength() != tupleSize) {
+            view = Tuple.view(pageInts, 0, tupleSize);
+        }
+        view.moveTo(pageInts, tuplePointer / Constants.INT_SIZE);
+        tuplePointer += tupleSize * Constants.INT_SIZE;
+        return view;
+    }
+
+    @Override
+    public int readNextBatch(TupleBatch batch) throws Exception {
+        int[][] columns = batch.getColumns();
+        int row = batch.getSize();
+        int read = 0;
+        while (row < batch.getCapacity() && this.tupleCount > 0) {
+            if (tuplePointer >= (2 + tupleCount * tupleSize) * Constants.INT_SIZE) {
+                readPage();
+                if (bufferPage == null) {
+                    close();
+                    break;
+                }
+            }
+            for (int i = 0; i < tupleSize; ++i) {
+                columns[i][row] = bufferPage.getInt(tuplePointer);
+                tuplePointer += Constants.INT_SIZE;
+            }
+            row++;
+            read++;
+        }
+        batch.setSize(row);
+        return read;
+    }
+
     @Override
     public void moveBack() throws Exception {
         if (tuplePointer == 0) {
@@ -128,15 +220,13 @@ public class BinaryTupleReader implements TupleReader {
         if (i < 0) {
             throw new Exception("Negative tuple position");
         }
-        int maxTupleCountPerPage = (Constants.PAGE_SIZE - 2 * Constants.INT_SIZE) / (tupleSize * Constants.INT_SIZE);
+        int maxTupleCountPerPage = (pageSize - 2 * Constants.INT_SIZE) / (tupleSize * Constants.INT_SIZE);
         long pageIndex = i / maxTupleCountPerPage;
         long newTuplePointer = ((i % maxTupleCountPerPage) * tupleSize + 2) * Constants.INT_SIZE;
-        long newReaderPointer = (long) pageIndex * Constants.PAGE_SIZE;
         if (this.pageIndex - 1 != pageIndex || tupleCount == 0) {
             //need to reread bufferpage
             try {
-                this.readerPointer = new RandomAccessFile(this.file, "r");
-                readerPointer.seek(newReaderPointer);
+                open();
                 this.pageIndex = pageIndex;
                 readPage();
             } catch (Exception e) {
@@ -154,15 +244,35 @@ public class BinaryTupleReader implements TupleReader {
      * @param tupleIndex
      * @throws Exception unexpected position 
      */
+    @Override
     public void reset(int pageIndex, int tupleIndex) throws Exception {
-        int maxTupleCountPerPage = (Constants.PAGE_SIZE - 2 * Constants.INT_SIZE) / (tupleSize * Constants.INT_SIZE);
+        int maxTupleCountPerPage = (pageSize - 2 * Constants.INT_SIZE) / (tupleSize * Constants.INT_SIZE);
         long i = pageIndex * maxTupleCountPerPage + tupleIndex;
         reset(i);
     }
 
+    /**
+     * @return size of the pages of the file
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * unpin the current page
+     */
+    private void release() {
+        if (page != null) {
+            BufferPool.getInstance().unpin(page);
+            page = null;
+        }
+    }
+
     @Override
     public void close() throws IOException {
-        readerPointer.getChannel().close();
-//        readerPointer.close();
+        release();
+        if (channel != null) {
+            channel.close();
+        }
     }
 }
\ No newline at end of file
@@ -21,23 +21,35 @@ public class BinaryTupleWriter implements TupleWriter {
     private ByteBuffer byteBuffer;
     private int tupleSize;
     private int tupleCount;
+    private int pageSize;
     private FileOutputStream fileOutputStream;
     private FileChannel fileChannel;
 
     public BinaryTupleWriter(String path, int tupleSize) {
+        this(path, tupleSize, Constants.PAGE_SIZE);
+    }
+
+    /**
+     * @param path      file to write
+     * @param tupleSize number of columns
+     * @param pageSize  size of the pages, kept in the page headers
+     */
+    public BinaryTupleWriter(String path, int tupleSize, int pageSize) {
+        this.pageSize = PageFormat.checkPageSize(pageSize);
         this.index = 2 * Constants.INT_SIZE;
         this.tupleSize = tupleSize;
         this.tupleCount = 0;
 
         try {
             File file = new File(path);
+            BufferPool.getInstance().invalidate(file);
             this.fileOutputStream = new FileOutputStream(file);
             this.fileChannel = fileOutputStream.getChannel();
         } catch (IOException e) {
             e.printStackTrace();
         }
 
-        this.byteBuffer = ByteBuffer.allocate(Constants.PAGE_SIZE);
+        this.byteBuffer = ByteBuffer.allocate(pageSize);
     }
 
     @Override
@@ -102,14 +114,14 @@ public class BinaryTupleWriter implements TupleWriter {
      */
     public boolean writeBuffer() {
         // put metadata
-        byteBuffer.putInt(0, tupleSize);
+        byteBuffer.putInt(0, PageFormat.encode(tupleSize, pageSize));
         byteBuffer.putInt(Constants.INT_SIZE, tupleCount);
         try {
             fileChannel.write(byteBuffer);
             // reset buffer
             this.index = 2 * Constants.INT_SIZE;
             this.tupleCount = 0;
-            this.byteBuffer = ByteBuffer.allocate(Constants.PAGE_SIZE);
+            this.byteBuffer = ByteBuffer.allocate(pageSize);
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -133,6 +145,6 @@ public class BinaryTupleWriter implements TupleWriter {
      * @return
      */
     public boolean bufferHasSpace() {
-        return index + tupleSize * Constants.INT_SIZE <= Constants.PAGE_SIZE;
+        return index + tupleSize * Constants.INT_SIZE <= pageSize;
     }
 }
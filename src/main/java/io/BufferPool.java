@@ -0,0 +1,345 @@
+package io;
+
+import util.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buffer pool shared by the readers of the tables and the indexes
+ * a page is kept in a frame keyed by its file, page number and page size. The
+ * frames stay in memory while they fit in the capacity, the unpinned ones are
+ * evicted by the CLOCK algorithm: the hand sweeps the frames, clears the
+ * reference bit of the referenced ones and evicts the first one not referenced.
+ * A page knows its frame and its place among the pages of its file, so evicting
+ * or dropping a page frees its frame without searching the clock.
+ *
+ * A reader pins the page it reads and unpins it once it moves on, pinned pages
+ * are never evicted. When every frame is pinned the pool goes over its
+ * capacity instead of failing, it shrinks back with the next evictions.
+ * The pages are read only, a writer of a file drops the pages of the file.
+ */
+public final class BufferPool {
+    private static final BufferPool instance = new BufferPool(Constants.DEFAULT_BUFFER_POOL_SIZE * Constants.PAGE_SIZE);
+    private static final int INITIAL_FRAMES = 64;
+
+    private long capacity;
+    private long used;
+    private Map<Key, Page> frames = new HashMap<>();
+    // frames swept by the hand, null once their page is dropped
+    private Page[] clock = new Page[INITIAL_FRAMES];
+    // frames in use at the start of the clock, the freed ones among them are reused first
+    private int frameCount;
+    private int[] freeFrames = new int[INITIAL_FRAMES];
+    private int freeCount;
+    private int pageCount;
+    private int hand;
+    // pages of each file, to drop a file without sweeping the clock
+    private Map<String, List<Page>> fileFrames = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param capacity bytes of the pages kept, 0 to keep none
+     */
+    BufferPool(long capacity) {
+        this.capacity = capacity;
+    }
+
+    public static BufferPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * a page of the pool
+     */
+    public static final class Page {
+        private final Key key;
+        private final int size;
+        private ByteBuffer buffer;
+        private boolean loaded;
+        private int pinCount;
+        private boolean referenced;
+        // index of the frame in the clock, -1 once the page is out of the pool
+        private int frame = -1;
+        // index of the page among the pages of its file
+        private int fileIndex;
+
+        private Page(Key key, int size) {
+            this.key = key;
+            this.size = size;
+        }
+
+        /**
+         * @return the bytes of the page, read only, shorter than the page size at the end of the file
+         */
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        /**
+         * @return bytes read, 0 past the end of the file
+         */
+        public int getLength() {
+            return buffer.limit();
+        }
+
+        public long getPageNumber() {
+            return key.page;
+        }
+
+        private synchronized void load(FileChannel channel) throws IOException {
+            if (loaded) {
+                return;
+            }
+            ByteBuffer data = ByteBuffer.allocate(size);
+            long position = key.page * size;
+            while (data.hasRemaining()) {
+                if (channel.read(data, position + data.position()) < 0) {
+                    break;
+                }
+            }
+            data.flip();
+            buffer = data.asReadOnlyBuffer();
+            loaded = true;
+        }
+    }
+
+    private static final class Key {
+        private final String file;
+        private final long page;
+        private final int size;
+
+        private Key(String file, long page, int size) {
+            this.file = file;
+            this.page = page;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return page == key.page && size == key.size && file.equals(key.file);
+        }
+
+        @Override
+        public int hashCode() {
+            return (file.hashCode() * 31 + Long.hashCode(page)) * 31 + size;
+        }
+    }
+
+    /**
+     * pin a page, read it from the channel if it is not in the pool
+     *
+     * @param file       file of the page
+     * @param channel    opened channel of the file, only read on a miss
+     * @param pageNumber index of the page in the file
+     * @param pageSize   size of the pages of the file
+     * @return the pinned page, to unpin once it is not used
+     * @throws IOException
+     */
+    public Page pin(File file, FileChannel channel, long pageNumber, int pageSize) throws IOException {
+        Key key = new Key(file.getAbsolutePath(), pageNumber, pageSize);
+        Page page;
+        synchronized (this) {
+            page = frames.get(key);
+            if (page != null) {
+                hits++;
+            } else {
+                misses++;
+                page = new Page(key, pageSize);
+                if (capacity > 0) {
+                    makeRoom(pageSize);
+                    add(page);
+                }
+            }
+            page.pinCount++;
+            page.referenced = true;
+        }
+        try {
+            page.load(channel);
+        } catch (IOException e) {
+            unpin(page);
+            remove(page);
+            throw e;
+        }
+        return page;
+    }
+
+    /**
+     * unpin a page, it can be evicted once no reader pins it
+     */
+    public synchronized void unpin(Page page) {
+        if (page != null && page.pinCount > 0) {
+            page.pinCount--;
+        }
+    }
+
+    /**
+     * drop the pages of a file, called before the file is written
+     * readers still holding a page keep their copy
+     *
+     * @param file
+     */
+    public synchronized void invalidate(File file) {
+        List<Page> pages = fileFrames.get(file.getAbsolutePath());
+        while (pages != null && !pages.isEmpty()) {
+            removeFrame(pages.get(pages.size() - 1));
+        }
+    }
+
+    /**
+     * drop all the pages, the pinned ones stay valid for their readers
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < frameCount; i++) {
+            if (clock[i] != null) {
+                clock[i].frame = -1;
+                clock[i] = null;
+            }
+        }
+        frames.clear();
+        fileFrames.clear();
+        frameCount = 0;
+        freeCount = 0;
+        pageCount = 0;
+        used = 0;
+        hand = 0;
+    }
+
+    /**
+     * set the bytes of the pages kept, evicts pages if the pool is larger
+     *
+     * @param capacity 0 to keep no page
+     */
+    public synchronized void setCapacity(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative buffer pool capacity " + capacity);
+        }
+        this.capacity = capacity;
+        makeRoom(0);
+    }
+
+    public synchronized long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return bytes of the pages in the pool
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    public synchronized int getPageCount() {
+        return pageCount;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized void resetCounters() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * put the page in a freed frame, or in a new one at the end of the clock
+     */
+    private void add(Page page) {
+        int index;
+        if (freeCount > 0) {
+            index = freeFrames[--freeCount];
+        } else {
+            if (frameCount == clock.length) {
+                clock = Arrays.copyOf(clock, clock.length * 2);
+                freeFrames = Arrays.copyOf(freeFrames, clock.length);
+            }
+            index = frameCount++;
+        }
+        clock[index] = page;
+        page.frame = index;
+        frames.put(page.key, page);
+        List<Page> pages = fileFrames.computeIfAbsent(page.key.file, file -> new ArrayList<>());
+        page.fileIndex = pages.size();
+        pages.add(page);
+        pageCount++;
+        used += page.size;
+    }
+
+    private synchronized void remove(Page page) {
+        if (page.frame < 0) {
+            return;
+        }
+        removeFrame(page);
+    }
+
+    /**
+     * free the frame of the page, the last page of its file takes its place among the pages of the file
+     */
+    private void removeFrame(Page page) {
+        clock[page.frame] = null;
+        freeFrames[freeCount++] = page.frame;
+        page.frame = -1;
+        frames.remove(page.key);
+        List<Page> pages = fileFrames.get(page.key.file);
+        Page last = pages.remove(pages.size() - 1);
+        if (last != page) {
+            pages.set(page.fileIndex, last);
+            last.fileIndex = page.fileIndex;
+        }
+        if (pages.isEmpty()) {
+            fileFrames.remove(page.key.file);
+        }
+        pageCount--;
+        used -= page.size;
+    }
+
+    /**
+     * evict unpinned pages until the bytes fit in the capacity
+     * two sweeps clear every reference bit, the pool stays over its capacity
+     * if the pages left are all pinned
+     *
+     * @param bytes bytes to add
+     */
+    private void makeRoom(long bytes) {
+        int steps = 2 * frameCount;
+        while (used + bytes > capacity && pageCount > 0 && steps-- > 0) {
+            if (hand >= frameCount) {
+                hand = 0;
+            }
+            Page page = clock[hand++];
+            if (page == null || page.pinCount > 0) {
+                continue;
+            }
+            if (page.referenced) {
+                page.referenced = false;
+            } else {
+                removeFrame(page);
+                evictions++;
+            }
+        }
+    }
+}
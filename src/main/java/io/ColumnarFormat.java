@@ -0,0 +1,236 @@
+package io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout and encodings of the columnar table files
+ *
+ * A file is a header (magic, version, column count, page size of the row format
+ * file the rids refer to), the column chunks of every row group one after the
+ * other, a footer and a trailer (footer offset, magic).
+ * The footer keeps, for every row group, its row count and the offset, length,
+ * min and max of each column chunk, so a reader only touches the chunks of the
+ * columns it needs.
+ *
+ * Every chunk starts with its encoding:
+ * PLAIN    raw ints
+ * PACKED   frame of reference, the values minus the chunk min bit-packed in the
+ *          least bits the range needs
+ * RLE      runs of equal values, run values and run lengths bit-packed
+ */
+final class ColumnarFormat {
+    static final int MAGIC = 0x434f4c31;
+    static final int VERSION = 2;
+    // rows of a row group
+    static final int ROW_GROUP_SIZE = 8192;
+
+    static final byte PLAIN = 0;
+    static final byte PACKED = 1;
+    static final byte RLE = 2;
+
+    // header: magic, version, column count, row page size
+    static final int HEADER_SIZE = 4 * Integer.BYTES;
+    // trailer: footer offset, magic
+    static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+    // footer entry of a chunk: offset, length, min, max
+    static final int CHUNK_META_SIZE = Long.BYTES + 3 * Integer.BYTES;
+
+    private ColumnarFormat() {
+    }
+
+    /**
+     * encode the first count values of a column in the smallest encoding
+     *
+     * @param values   the column
+     * @param count    number of values
+     * @param compress false to always use PLAIN
+     * @return the chunk
+     */
+    static byte[] encode(int[] values, int count, boolean compress) {
+        if (!compress || count == 0) {
+            return encodePlain(values, count);
+        }
+        int min = values[0], max = values[0];
+        int runs = 1, longestRun = 1, run = 1;
+        for (int i = 1; i < count; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+            if (values[i] == values[i - 1]) {
+                run++;
+            } else {
+                longestRun = Math.max(longestRun, run);
+                runs++;
+                run = 1;
+            }
+        }
+        longestRun = Math.max(longestRun, run);
+        int valueWidth = bitWidth(min, max);
+        int lengthWidth = bitWidth(0, longestRun - 1);
+
+        long plainSize = 1 + 4L * count;
+        long packedSize = 1 + 4 + 1 + packedBytes(count, valueWidth);
+        long rleSize = 1 + 4 + 4 + 2 + packedBytes(runs, valueWidth) + packedBytes(runs, lengthWidth);
+        if (rleSize < packedSize && rleSize < plainSize) {
+            return encodeRle(values, count, runs, min, valueWidth, lengthWidth);
+        }
+        if (packedSize < plainSize) {
+            return encodePacked(values, count, min, valueWidth);
+        }
+        return encodePlain(values, count);
+    }
+
+    private static byte[] encodePlain(int[] values, int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 * count);
+        buffer.put(PLAIN);
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(values[i]);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] encodePacked(int[] values, int count, int base, int width) {
+        long[] words = new long[wordCount(count, width)];
+        for (int i = 0; i < count; i++) {
+            pack(words, i, width, values[i] - base);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 1 + 8 * words.length);
+        buffer.put(PACKED);
+        buffer.putInt(base);
+        buffer.put((byte) width);
+        for (long word : words) {
+            buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] encodeRle(int[] values, int count, int runs, int base, int valueWidth, int lengthWidth) {
+        long[] valueWords = new long[wordCount(runs, valueWidth)];
+        long[] lengthWords = new long[wordCount(runs, lengthWidth)];
+        int run = 0, start = 0;
+        for (int i = 1; i <= count; i++) {
+            if (i == count || values[i] != values[start]) {
+                pack(valueWords, run, valueWidth, values[start] - base);
+                pack(lengthWords, run, lengthWidth, i - start - 1);
+                run++;
+                start = i;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + 2 + 8 * (valueWords.length + lengthWords.length));
+        buffer.put(RLE);
+        buffer.putInt(runs);
+        buffer.putInt(base);
+        buffer.put((byte) valueWidth);
+        buffer.put((byte) lengthWidth);
+        for (long word : valueWords) {
+            buffer.putLong(word);
+        }
+        for (long word : lengthWords) {
+            buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * decode a chunk
+     *
+     * @param chunk  the encoded chunk
+     * @param count  number of values in the chunk
+     * @param values destination, at least count long
+     */
+    static void decode(ByteBuffer chunk, int count, int[] values) {
+        byte encoding = chunk.get();
+        switch (encoding) {
+            case PLAIN:
+                for (int i = 0; i < count; i++) {
+                    values[i] = chunk.getInt();
+                }
+                break;
+            case PACKED: {
+                int base = chunk.getInt();
+                int width = chunk.get();
+                long[] words = readWords(chunk, wordCount(count, width));
+                for (int i = 0; i < count; i++) {
+                    values[i] = base + unpack(words, i, width);
+                }
+                break;
+            }
+            case RLE: {
+                int runs = chunk.getInt();
+                int base = chunk.getInt();
+                int valueWidth = chunk.get();
+                int lengthWidth = chunk.get();
+                long[] valueWords = readWords(chunk, wordCount(runs, valueWidth));
+                long[] lengthWords = readWords(chunk, wordCount(runs, lengthWidth));
+                int index = 0;
+                for (int run = 0; run < runs; run++) {
+                    int value = base + unpack(valueWords, run, valueWidth);
+                    int end = index + unpack(lengthWords, run, lengthWidth) + 1;
+                    while (index < end) {
+                        values[index++] = value;
+                    }
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown column encoding " + encoding);
+        }
+    }
+
+    /**
+     * @return bits needed by the values of [min, max] once min is subtracted
+     */
+    static int bitWidth(int min, int max) {
+        long range = (long) max - min;
+        return 64 - Long.numberOfLeadingZeros(range);
+    }
+
+    private static long packedBytes(int count, int width) {
+        return 8L * wordCount(count, width);
+    }
+
+    private static int wordCount(int count, int width) {
+        return (int) (((long) count * width + 63) / 64);
+    }
+
+    /**
+     * put the width least bits of value at the index of the packed array
+     */
+    static void pack(long[] words, int index, int width, int value) {
+        if (width == 0) {
+            return;
+        }
+        long bits = value & 0xffffffffL;
+        long position = (long) index * width;
+        int word = (int) (position >>> 6);
+        int shift = (int) (position & 63);
+        words[word] |= bits << shift;
+        if (shift + width > 64) {
+            words[word + 1] |= bits >>> (64 - shift);
+        }
+    }
+
+    /**
+     * @return the value at the index of the packed array
+     */
+    static int unpack(long[] words, int index, int width) {
+        if (width == 0) {
+            return 0;
+        }
+        long position = (long) index * width;
+        int word = (int) (position >>> 6);
+        int shift = (int) (position & 63);
+        long bits = words[word] >>> shift;
+        if (shift + width > 64) {
+            bits |= words[word + 1] << (64 - shift);
+        }
+        return (int) (bits & ((1L << width) - 1));
+    }
+
+    private static long[] readWords(ByteBuffer chunk, int count) {
+        long[] words = new long[count];
+        for (int i = 0; i < count; i++) {
+            words[i] = chunk.getLong();
+        }
+        return words;
+    }
+}
@@ -0,0 +1,321 @@
+package io;
+
+import model.Tuple;
+import model.TupleBatch;
+import util.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Table Reader over a columnar table file
+ * only the chunks of the selected columns are read and decoded, the other
+ * columns of the tuples are 0. The tuples keep the width of the table, so the
+ * column indexes of the schema stay valid.
+ *
+ * The rids are those of the row format file of the same table, so index scans
+ * can jump to a tuple with the rids of a B+ tree.
+ */
+public class ColumnarTupleReader implements PagedTupleReader {
+    private File file;
+    private FileChannel channel;
+    private int width;
+    private int rowPageSize = Constants.PAGE_SIZE;
+    private boolean[] selected;
+
+    // footer
+    private int[] groupRows;
+    private long[] groupStarts;
+    private long[][] chunkOffsets;
+    private int[][] chunkLengths;
+    private int[][] chunkMins;
+    private int[][] chunkMaxs;
+    private long totalRows;
+
+    private int groupIndex = -1;  // index of the decoded group
+    private int[][] decoded;
+    private int[] zeros = new int[0];
+    private long nextRow;  // index of the next row to read
+
+    private long recordRow;
+
+    private int[] rowData;
+    private Tuple view;
+
+    /**
+     * Constructor reading all the columns
+     *
+     * @param file columnar table file
+     */
+    public ColumnarTupleReader(String file) {
+        this(file, null);
+    }
+
+    /**
+     * @param file    columnar table file
+     * @param columns indexes of the columns to read, null for all
+     */
+    public ColumnarTupleReader(String file, int[] columns) {
+        this.file = new File(file);
+        try {
+            open();
+            readFooter();
+            selected = new boolean[width];
+            if (columns == null) {
+                Arrays.fill(selected, true);
+            } else {
+                for (int column : columns) {
+                    selected[column] = true;
+                }
+            }
+            decoded = new int[width][];
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            groupRows = new int[0];
+            groupStarts = new long[]{0};
+            totalRows = 0;
+        }
+    }
+
+    /**
+     * open the channel if it is not opened or has been closed
+     *
+     * @throws IOException
+     */
+    private void open() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = new RandomAccessFile(file, "r").getChannel();
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of columnar file " + file);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void readFooter() throws IOException {
+        ByteBuffer header = read(0, ColumnarFormat.HEADER_SIZE);
+        if (header.getInt() != ColumnarFormat.MAGIC || header.getInt() != ColumnarFormat.VERSION) {
+            throw new IOException("Not a columnar file " + file);
+        }
+        width = header.getInt();
+        rowPageSize = header.getInt();
+        long size = channel.size();
+        ByteBuffer trailer = read(size - ColumnarFormat.TRAILER_SIZE, ColumnarFormat.TRAILER_SIZE);
+        long footerOffset = trailer.getLong();
+        if (trailer.getInt() != ColumnarFormat.MAGIC) {
+            throw new IOException("Truncated columnar file " + file);
+        }
+        ByteBuffer footer = read(footerOffset, (int) (size - ColumnarFormat.TRAILER_SIZE - footerOffset));
+        int groupCount = footer.getInt();
+        groupRows = new int[groupCount];
+        groupStarts = new long[groupCount + 1];
+        chunkOffsets = new long[groupCount][width];
+        chunkLengths = new int[groupCount][width];
+        chunkMins = new int[groupCount][width];
+        chunkMaxs = new int[groupCount][width];
+        for (int group = 0; group < groupCount; group++) {
+            groupRows[group] = footer.getInt();
+            groupStarts[group + 1] = groupStarts[group] + groupRows[group];
+            for (int i = 0; i < width; i++) {
+                chunkOffsets[group][i] = footer.getLong();
+                chunkLengths[group][i] = footer.getInt();
+                chunkMins[group][i] = footer.getInt();
+                chunkMaxs[group][i] = footer.getInt();
+            }
+        }
+        totalRows = groupStarts[groupCount];
+    }
+
+    /**
+     * decode the selected columns of a row group
+     *
+     * @param group index of the row group
+     * @throws IOException
+     */
+    private void loadGroup(int group) throws IOException {
+        if (group == groupIndex) {
+            return;
+        }
+        open();
+        int rows = groupRows[group];
+        if (zeros.length < rows) {
+            zeros = new int[rows];
+        }
+        for (int i = 0; i < width; i++) {
+            if (!selected[i]) {
+                decoded[i] = zeros;
+                continue;
+            }
+            if (decoded[i] == null || decoded[i] == zeros || decoded[i].length < rows) {
+                decoded[i] = new int[Math.max(rows, ColumnarFormat.ROW_GROUP_SIZE)];
+            }
+            ColumnarFormat.decode(read(chunkOffsets[group][i], chunkLengths[group][i]), rows, decoded[i]);
+        }
+        groupIndex = group;
+    }
+
+    /**
+     * @return index of the row group holding the row
+     */
+    private int groupOf(long row) {
+        int index = Arrays.binarySearch(groupStarts, row);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    @Override
+    public Tuple readNextTuple() throws Exception {
+        if (nextRow >= totalRows) {
+            return null;
+        }
+        int group = groupOf(nextRow);
+        loadGroup(group);
+        int row = (int) (nextRow - groupStarts[group]);
+        int[] tupleData = new int[width];
+        for (int i = 0; i < width; i++) {
+            tupleData[i] = decoded[i][row];
+        }
+        nextRow++;
+        return new Tuple(tupleData);
+    }
+
+    /**
+     * the view points to a row buffer of the reader, filled from the decoded columns
+     */
+    @Override
+    public Tuple readNextView() throws Exception {
+        if (nextRow >= totalRows) {
+            return null;
+        }
+        int group = groupOf(nextRow);
+        loadGroup(group);
+        int row = (int) (nextRow - groupStarts[group]);
+        if (view == null) {
+            rowData = new int[width];
+            view = Tuple.view(rowData, 0, width);
+        }
+        for (int i = 0; i < width; i++) {
+            rowData[i] = decoded[i][row];
+        }
+        nextRow++;
+        return view;
+    }
+
+    @Override
+    public int readNextBatch(TupleBatch batch) throws Exception {
+        int[][] columns = batch.getColumns();
+        int start = batch.getSize();
+        int size = start;
+        while (size < batch.getCapacity() && nextRow < totalRows) {
+            int group = groupOf(nextRow);
+            loadGroup(group);
+            int row = (int) (nextRow - groupStarts[group]);
+            int count = Math.min(batch.getCapacity() - size, groupRows[group] - row);
+            for (int i = 0; i < width; i++) {
+                System.arraycopy(decoded[i], row, columns[i], size, count);
+            }
+            size += count;
+            nextRow += count;
+        }
+        batch.setSize(size);
+        return size - start;
+    }
+
+    @Override
+    public void reset() throws Exception {
+        reset(0L);
+    }
+
+    // the next tuple to read is the ith tuple
+    @Override
+    public void reset(long i) throws Exception {
+        if (i < 0) {
+            throw new Exception("Negative tuple position");
+        }
+        nextRow = Math.min(i, totalRows);
+    }
+
+    @Override
+    public void reset(int pageIndex, int tupleIndex) throws Exception {
+        reset((long) pageIndex * getMaxTupleCountPerPage() + tupleIndex);
+    }
+
+    @Override
+    public void moveBack() throws Exception {
+        if (nextRow == 0) {
+            throw new Exception("Unable to move back");
+        }
+        nextRow--;
+    }
+
+    @Override
+    public void recordPosition() {
+        recordRow = nextRow;
+    }
+
+    @Override
+    public void revertToPosition() throws Exception {
+        reset(recordRow);
+    }
+
+    @Override
+    public int getLastReadPageIndex() {
+        return (int) (Math.max(nextRow - 1, 0) / getMaxTupleCountPerPage());
+    }
+
+    @Override
+    public int getLastReadTupleInPageIndex() {
+        return (int) ((nextRow - 1) % getMaxTupleCountPerPage());
+    }
+
+    /**
+     * @return tuples of a page of the row format file
+     */
+    private int getMaxTupleCountPerPage() {
+        return (rowPageSize - 2 * Constants.INT_SIZE) / (Math.max(width, 1) * Constants.INT_SIZE);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public long getTupleCount() {
+        return totalRows;
+    }
+
+    public int getRowGroupCount() {
+        return groupRows.length;
+    }
+
+    /**
+     * @return min of a column in a row group, from the footer
+     */
+    public int getMin(int group, int column) {
+        return chunkMins[group][column];
+    }
+
+    /**
+     * @return max of a column in a row group, from the footer
+     */
+    public int getMax(int group, int column) {
+        return chunkMaxs[group][column];
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        groupIndex = -1;
+    }
+}
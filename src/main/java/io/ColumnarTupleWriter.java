@@ -0,0 +1,138 @@
+package io;
+
+import model.Tuple;
+import util.Constants;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementation of TupleWriter writing a columnar table file
+ * the tuples are buffered into row groups, every column of a row group is
+ * written as its own compressed chunk, see ColumnarFormat for the layout.
+ */
+public class ColumnarTupleWriter implements TupleWriter {
+    private int width;
+    private boolean compress;
+    private int[][] columns;
+    private int rowCount;
+
+    private DataOutputStream output;
+    private long position;
+    private boolean finished = false;
+
+    // footer entries: row count of each group, offset, length, min and max of each chunk
+    private List<Integer> groupRows = new ArrayList<>();
+    private List<long[]> chunkMeta = new ArrayList<>();
+
+    public ColumnarTupleWriter(String path, int width) {
+        this(path, width, true);
+    }
+
+    /**
+     * @param path     file to write
+     * @param width    number of columns
+     * @param compress false to store the columns as plain ints
+     */
+    public ColumnarTupleWriter(String path, int width, boolean compress) {
+        this(path, width, compress, Constants.PAGE_SIZE);
+    }
+
+    /**
+     * @param path        file to write
+     * @param width       number of columns
+     * @param compress    false to store the columns as plain ints
+     * @param rowPageSize page size of the row format file of the table, to give the same rids
+     */
+    public ColumnarTupleWriter(String path, int width, boolean compress, int rowPageSize) {
+        this.width = width;
+        this.compress = compress;
+        this.columns = new int[width][ColumnarFormat.ROW_GROUP_SIZE];
+        try {
+            this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+            output.writeInt(ColumnarFormat.MAGIC);
+            output.writeInt(ColumnarFormat.VERSION);
+            output.writeInt(width);
+            output.writeInt(PageFormat.checkPageSize(rowPageSize));
+            position = ColumnarFormat.HEADER_SIZE;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void writeNextTuple(Tuple tuple) {
+        if (tuple == null) {
+            finish();
+            return;
+        }
+        for (int i = 0; i < width; i++) {
+            columns[i][rowCount] = tuple.getDataAt(i);
+        }
+        rowCount++;
+        if (rowCount == ColumnarFormat.ROW_GROUP_SIZE) {
+            writeRowGroup();
+        }
+    }
+
+    /**
+     * write the buffered rows as a row group
+     */
+    private void writeRowGroup() {
+        try {
+            for (int i = 0; i < width; i++) {
+                int[] column = columns[i];
+                int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+                for (int row = 0; row < rowCount; row++) {
+                    min = Math.min(min, column[row]);
+                    max = Math.max(max, column[row]);
+                }
+                byte[] chunk = ColumnarFormat.encode(column, rowCount, compress);
+                output.write(chunk);
+                chunkMeta.add(new long[]{position, chunk.length, min, max});
+                position += chunk.length;
+            }
+            groupRows.add(rowCount);
+            rowCount = 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * write the last row group, the footer and the trailer
+     */
+    @Override
+    public void finish() {
+        if (finished || output == null) {
+            return;
+        }
+        finished = true;
+        if (rowCount > 0) {
+            writeRowGroup();
+        }
+        try {
+            long footerOffset = position;
+            output.writeInt(groupRows.size());
+            for (int group = 0; group < groupRows.size(); group++) {
+                output.writeInt(groupRows.get(group));
+                for (int i = 0; i < width; i++) {
+                    long[] meta = chunkMeta.get(group * width + i);
+                    output.writeLong(meta[0]);
+                    output.writeInt((int) meta[1]);
+                    output.writeInt((int) meta[2]);
+                    output.writeInt((int) meta[3]);
+                }
+            }
+            output.writeLong(footerOffset);
+            output.writeInt(ColumnarFormat.MAGIC);
+            output.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package io;
+
+import model.Tuple;
+import model.TupleBatch;
+import util.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Table Reader over a memory-mapped table file
+ * The file is mapped in large windows, so reading the next page and jumping
+ * to a certain tuple are pointer arithmetic without any read syscall.
+ * The windows are aligned to the window size and kept once mapped, so jumping
+ * back and forth between pages maps every window only once.
+ */
+public class MappedTupleReader implements PagedTupleReader {
+    // bytes mapped at once, a multiple of every page size
+    private static final long WINDOW_SIZE = 4L * PageFormat.MAX_PAGE_SIZE;
+
+    private final long windowSize;
+
+    private File file;
+    private FileChannel channel;
+    private long fileSize;
+    private int pageSize = Constants.PAGE_SIZE;
+    // windows of the file by index, null until mapped
+    private MappedByteBuffer[] windows;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    private long pageIndex;  // index of the current page
+    private int pageOffset;  // offset of the current page in the window
+    private int tupleSize;
+    private int tupleCount;
+    private int tuplePointer;
+
+    private long recordTupleIndex;
+
+    // ints of the current page, decoded once for the views
+    private int[] pageInts = new int[0];
+    private boolean decoded;
+    private Tuple view;
+
+    public MappedTupleReader(String file) {
+        this(file, WINDOW_SIZE);
+    }
+
+    /**
+     * @param file       table file
+     * @param windowSize bytes mapped at once, a multiple of the page size of the file
+     */
+    MappedTupleReader(String file, long windowSize) {
+        this.file = new File(file);
+        this.windowSize = windowSize;
+        try {
+            reset();
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            tupleCount = 0;
+        }
+    }
+
+    @Override
+    public void recordPosition() {
+        recordTupleIndex = pageIndex * getMaxTupleCountPerPage()
+                + (tuplePointer - 2 * Constants.INT_SIZE) / (Constants.INT_SIZE * tupleSize);
+    }
+
+    @Override
+    public int getLastReadPageIndex() {
+        return (int) pageIndex;
+    }
+
+    @Override
+    public int getLastReadTupleInPageIndex() {
+        return (tuplePointer - 2 * Constants.INT_SIZE) / (Constants.INT_SIZE * tupleSize) - 1;
+    }
+
+    @Override
+    public void revertToPosition() throws Exception {
+        reset(recordTupleIndex);
+    }
+
+    @Override
+    public void reset() throws Exception {
+        open();
+        readPage(0);
+    }
+
+    /**
+     * open the channel if it is not opened or has been closed
+     *
+     * @throws IOException
+     */
+    private void open() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            return;
+        }
+        channel = new RandomAccessFile(file, "r").getChannel();
+        fileSize = channel.size();
+        pageSize = PageFormat.readPageSize(channel);
+        windows = new MappedByteBuffer[(int) ((fileSize + windowSize - 1) / windowSize)];
+        window = null;
+    }
+
+    /**
+     * point to the page, map its window if it is not mapped yet
+     *
+     * @param index of page
+     * @return false if the page is out of the file
+     * @throws IOException
+     */
+    private boolean readPage(long index) throws IOException {
+        long position = index * pageSize;
+        if (position + 2 * Constants.INT_SIZE > fileSize) {
+            tupleCount = 0;
+            return false;
+        }
+        int windowIndex = (int) (position / windowSize);
+        if (windows[windowIndex] == null) {
+            long start = windowIndex * windowSize;
+            windows[windowIndex] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(windowSize, fileSize - start));
+        }
+        window = windows[windowIndex];
+        windowStart = windowIndex * windowSize;
+        pageIndex = index;
+        pageOffset = (int) (position - windowStart);
+        decoded = false;
+        tupleSize = PageFormat.tupleSize(window.getInt(pageOffset));
+        tupleCount = window.getInt(pageOffset + Constants.INT_SIZE);
+        tuplePointer = 2 * Constants.INT_SIZE;
+        return true;
+    }
+
+    @Override
+    public Tuple readNextTuple() throws Exception {
+        if (this.tupleCount <= 0) {
+            return null;
+        }
+        if (tuplePointer >= (2 + tupleCount * tupleSize) * Constants.INT_SIZE) {
+            if (!readPage(pageIndex + 1) || tupleCount <= 0) {
+                return null;
+            }
+        }
+        int[] tupleData = new int[tupleSize];
+        int position = pageOffset + tuplePointer;
+        for (int i = 0; i < tupleSize; ++i) {
+            tupleData[i] = window.getInt(position);
+            position += Constants.INT_SIZE;
+        }
+        tuplePointer += tupleSize * Constants.INT_SIZE;
+        return new Tuple(tupleData);
+    }
+
+    /**
+     * the view points into the current page, which is decoded once
+     */
+    @Override
+    public Tuple readNextView() throws Exception {
+        if (this.tupleCount <= 0) {
+            return null;
+        }
+        if (tuplePointer >= (2 + tupleCount * tupleSize) * Constants.INT_SIZE) {
+            if (!readPage(pageIndex + 1) || tupleCount <= 0) {
+                return null;
+            }
+        }
+        if (!decoded) {
+            pageInts = PageFormat.decode(window, pageOffset, 2 + tupleCount * tupleSize, pageInts);
+            decoded = true;
+        }
+        if (view == null || view.getDataLength() != tupleSize) {
+            view = Tuple.view(pageInts, 0, tupleSize);
+        }
+        view.moveTo(pageInts, tuplePointer / Constants.INT_SIZE);
+        tuplePointer += tupleSize * Constants.INT_SIZE;
+        return view;
+    }
+
+    @Override
+    public int readNextBatch(TupleBatch batch) throws Exception {
+        int[][] columns = batch.getColumns();
+        int row = batch.getSize();
+        int read = 0;
+        while (row < batch.getCapacity() && this.tupleCount > 0) {
+            if (tuplePointer >= (2 + tupleCount * tupleSize) * Constants.INT_SIZE) {
+                if (!readPage(pageIndex + 1) || tupleCount <= 0) {
+                    break;
+                }
+            }
+            int position = pageOffset + tuplePointer;
+            for (int i = 0; i < tupleSize; ++i) {
+                columns[i][row] = window.getInt(position);
+                position += Constants.INT_SIZE;
+            }
+            tuplePointer += tupleSize * Constants.INT_SIZE;
+            row++;
+            read++;
+        }
+        batch.setSize(row);
+        return read;
+    }
+
+    @Override
+    public void moveBack() throws Exception {
+        if (tuplePointer == 0) {
+            throw new Exception("Unable to move back");
+        }
+        if (tuplePointer > 2 * Constants.INT_SIZE) {
+            tuplePointer -= tupleSize * Constants.INT_SIZE;
+        }
+    }
+
+    // the next tuple to read is the ith tuple
+    @Override
+    public void reset(long i) throws Exception {
+        if (i < 0) {
+            throw new Exception("Negative tuple position");
+        }
+        if (tupleSize == 0) {
+            return;
+        }
+        int maxTupleCountPerPage = getMaxTupleCountPerPage();
+        long index = i / maxTupleCountPerPage;
+        if (index != pageIndex || tupleCount == 0) {
+            open();
+            readPage(index);
+        }
+        tuplePointer = (int) (((i % maxTupleCountPerPage) * tupleSize + 2) * Constants.INT_SIZE);
+    }
+
+    @Override
+    public void reset(int pageIndex, int tupleIndex) throws Exception {
+        reset((long) pageIndex * getMaxTupleCountPerPage() + tupleIndex);
+    }
+
+    private int getMaxTupleCountPerPage() {
+        return (pageSize - 2 * Constants.INT_SIZE) / (tupleSize * Constants.INT_SIZE);
+    }
+
+    /**
+     * @return size of the pages of the file
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * close the channel, the mapped windows are released by gc
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        windows = null;
+        window = null;
+        tupleCount = 0;
+    }
+}
@@ -0,0 +1,94 @@
+package io;
+
+import util.Constants;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Page size of the row format files
+ * every page starts with the tuple size and the tuple count. The page size is
+ * kept in the high byte of the tuple size as the power of two it is above the
+ * default page size, so files of the default page size are the same as before
+ * and a reader learns the page size from the first page of a file.
+ */
+public final class PageFormat {
+    // largest page, 16 MB
+    public static final int MAX_PAGE_SIZE = Constants.PAGE_SIZE << 12;
+    private static final int SIZE_SHIFT = 24;
+    private static final int TUPLE_SIZE_MASK = (1 << SIZE_SHIFT) - 1;
+
+    private PageFormat() {
+    }
+
+    /**
+     * @param pageSize a power of two between the default page size and MAX_PAGE_SIZE
+     * @return the page size
+     */
+    public static int checkPageSize(int pageSize) {
+        if (pageSize < Constants.PAGE_SIZE || pageSize > MAX_PAGE_SIZE || Integer.bitCount(pageSize) != 1) {
+            throw new IllegalArgumentException("Unsupported page size " + pageSize);
+        }
+        return pageSize;
+    }
+
+    /**
+     * @return first int of a page header
+     */
+    static int encode(int tupleSize, int pageSize) {
+        int code = Integer.numberOfTrailingZeros(pageSize / Constants.PAGE_SIZE);
+        return tupleSize | (code << SIZE_SHIFT);
+    }
+
+    /**
+     * @param header first int of a page header
+     * @return tuple size
+     */
+    static int tupleSize(int header) {
+        return header & TUPLE_SIZE_MASK;
+    }
+
+    /**
+     * @param header first int of a page header
+     * @return page size
+     */
+    static int pageSize(int header) {
+        return Constants.PAGE_SIZE << (header >>> SIZE_SHIFT);
+    }
+
+    /**
+     * copy the ints of a page into an array, the views of the readers point into it
+     *
+     * @param page   buffer holding the page
+     * @param offset offset of the page in the buffer
+     * @param count  number of ints
+     * @param into   array to reuse
+     * @return into, or a larger array if it is too short
+     */
+    static int[] decode(ByteBuffer page, int offset, int count, int[] into) {
+        if (into.length < count) {
+            into = new int[Math.max(count, into.length * 2)];
+        }
+        ByteBuffer ints = page.duplicate();
+        ints.position(offset);
+        ints.asIntBuffer().get(into, 0, count);
+        return into;
+    }
+
+    /**
+     * read the page size from the first page of a file
+     *
+     * @return page size, the default one for an empty file
+     * @throws IOException
+     */
+    static int readPageSize(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Constants.INT_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                return Constants.PAGE_SIZE;
+            }
+        }
+        return pageSize(header.getInt(0));
+    }
+}
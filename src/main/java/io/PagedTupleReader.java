@@ -0,0 +1,45 @@
+package io;
+
+import model.Tuple;
+import model.TupleBatch;
+
+/**
+ * A tuple reader over the binary page format, which could address a tuple
+ * directly by its page and its position in the page (a Rid)
+ */
+public interface PagedTupleReader extends TupleReader {
+    /**
+     * move the pointer to certain page and tuple
+     *
+     * @param pageIndex
+     * @param tupleIndex
+     * @throws Exception unexpected position
+     */
+    void reset(int pageIndex, int tupleIndex) throws Exception;
+
+    /**
+     * @return the page index of last read tuple
+     */
+    int getLastReadPageIndex();
+
+    /**
+     * @return the tuple index of the last read tuple
+     */
+    int getLastReadTupleInPageIndex();
+
+    /**
+     * read the next tuples into the batch, until the batch is full or the file ends
+     *
+     * @param batch to append the tuples to
+     * @return number of tuples read
+     */
+    int readNextBatch(TupleBatch batch) throws Exception;
+
+    /**
+     * read the next tuple as a view owned by the reader, valid until the next read
+     *
+     * @return the view, null at the end
+     * @throws Exception
+     */
+    Tuple readNextView() throws Exception;
+}
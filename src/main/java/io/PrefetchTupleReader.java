@@ -0,0 +1,404 @@
+package io;
+
+import model.Tuple;
+import model.TupleBatch;
+import util.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Table Reader reading ahead of the consumer
+ * the file is read in extents of one or more pages by background I/O threads,
+ * a number of extents after the current one are always requested, so the
+ * reads overlap with the work done on the tuples. The direct buffers of the
+ * extents are recycled once the consumer leaves them.
+ *
+ * Jumping to another position drops the extents read ahead, so this reader
+ * suits sequential scans; moving back inside the current page is free.
+ *
+ * A reader holds depth + 1 extents, the one being read and the ones read ahead.
+ */
+public class PrefetchTupleReader implements PagedTupleReader {
+    // shared by all the readers, the threads only wait for the disk
+    private static final ThreadPoolExecutor ioThreads = new ThreadPoolExecutor(
+            Constants.DEFAULT_IO_THREAD_COUNT, Constants.DEFAULT_IO_THREAD_COUNT, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private File file;
+    // bytes read by one request, rounded down to whole pages of the file, at least one page
+    private int extentSize;
+    private FileChannel channel;
+    private long fileSize;
+    private int pageSize = Constants.PAGE_SIZE;
+    private int extentPages = 1;
+    private int depth;
+
+    private Deque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+    private Deque<Future<ByteBuffer>> pending = new ArrayDeque<>();
+    private long nextExtent;  // next extent to request
+
+    private ByteBuffer extent;  // extent of the current page
+    private long extentIndex;
+    private int extentPageCount;
+
+    private long pageIndex;  // index of the current page
+    private int pageOffset;  // offset of the current page in the extent
+    private int tupleSize;
+    private int tupleCount;
+    private int tuplePointer;
+
+    private long recordTupleIndex;
+
+    // ints of the current page, decoded once for the views
+    private int[] pageInts = new int[0];
+    private boolean decoded;
+    private Tuple view;
+
+    /**
+     * read ahead one page at a time
+     *
+     * @param file  table file
+     * @param depth number of extents read ahead
+     */
+    public PrefetchTupleReader(String file, int depth) {
+        this(file, depth, Constants.PAGE_SIZE);
+    }
+
+    /**
+     * @param file       table file
+     * @param depth      number of extents read ahead
+     * @param extentSize bytes read by one request
+     */
+    public PrefetchTupleReader(String file, int depth, int extentSize) {
+        this.file = new File(file);
+        this.depth = Math.max(depth, 1);
+        this.extentSize = extentSize;
+        try {
+            reset();
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            tupleCount = 0;
+        }
+    }
+
+    /**
+     * @return number of threads reading ahead for all the readers
+     */
+    public static int getIoThreadCount() {
+        return ioThreads.getMaximumPoolSize();
+    }
+
+    /**
+     * set the number of threads reading ahead for all the readers
+     *
+     * @param threadCount at least 1
+     */
+    public static synchronized void setIoThreadCount(int threadCount) {
+        threadCount = Math.max(threadCount, 1);
+        if (threadCount > ioThreads.getMaximumPoolSize()) {
+            ioThreads.setMaximumPoolSize(threadCount);
+            ioThreads.setCorePoolSize(threadCount);
+        } else {
+            ioThreads.setCorePoolSize(threadCount);
+            ioThreads.setMaximumPoolSize(threadCount);
+        }
+    }
+
+    /**
+     * open the channel if it is not opened or has been closed
+     *
+     * @throws IOException
+     */
+    private void open() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = new RandomAccessFile(file, "r").getChannel();
+            fileSize = channel.size();
+            pageSize = PageFormat.readPageSize(channel);
+            extentPages = Math.max(extentSize / pageSize, 1);
+        }
+    }
+
+    /**
+     * drop the extents read ahead and request the extents from a position
+     *
+     * @param first index of the first extent
+     */
+    private void start(long first) throws IOException {
+        drain();
+        if (extent != null) {
+            freeBuffers.push(extent);
+            extent = null;
+        }
+        nextExtent = first;
+        extentIndex = first - 1;
+        extentPageCount = 0;
+        for (int i = 0; i < depth; i++) {
+            request();
+        }
+    }
+
+    /**
+     * wait for the requested extents and take their buffers back
+     */
+    private void drain() throws IOException {
+        while (!pending.isEmpty()) {
+            freeBuffers.push(await(pending.poll()));
+        }
+    }
+
+    /**
+     * request the next extent to the I/O threads
+     */
+    private void request() {
+        int extentSize = extentPages * pageSize;
+        long position = nextExtent * extentSize;
+        if (position >= fileSize) {
+            return;
+        }
+        nextExtent++;
+        ByteBuffer buffer = freeBuffers.isEmpty() || freeBuffers.peek().capacity() != extentSize
+                ? ByteBuffer.allocateDirect(extentSize) : freeBuffers.pop();
+        buffer.clear();
+        FileChannel source = channel;
+        pending.add(ioThreads.submit(() -> {
+            while (buffer.hasRemaining() && source.read(buffer, position + buffer.position()) >= 0) ;
+            buffer.flip();
+            return buffer;
+        }));
+    }
+
+    private static ByteBuffer await(Future<ByteBuffer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted read ahead", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed read ahead", e.getCause());
+        }
+    }
+
+    /**
+     * move to the next extent, its buffer is handed to the consumer and one more extent is requested
+     *
+     * @return false if there is no more extent
+     */
+    private boolean nextExtent() throws IOException {
+        if (pending.isEmpty()) {
+            return false;
+        }
+        ByteBuffer next = await(pending.poll());
+        if (extent != null) {
+            freeBuffers.push(extent);
+        }
+        extent = next;
+        extentIndex++;
+        extentPageCount = extent.limit() / pageSize;
+        request();
+        return extentPageCount > 0;
+    }
+
+    /**
+     * point to a page of the current extent
+     */
+    private void setPage(int pageInExtent) {
+        pageIndex = extentIndex * extentPages + pageInExtent;
+        pageOffset = pageInExtent * pageSize;
+        decoded = false;
+        tupleSize = PageFormat.tupleSize(extent.getInt(pageOffset));
+        tupleCount = extent.getInt(pageOffset + Constants.INT_SIZE);
+        tuplePointer = 2 * Constants.INT_SIZE;
+    }
+
+    /**
+     * move to the next page
+     *
+     * @return false if the file is done
+     */
+    private boolean readPage() throws IOException {
+        int pageInExtent = (int) (pageIndex - extentIndex * extentPages) + 1;
+        if (extent == null || pageInExtent >= extentPageCount) {
+            if (!nextExtent()) {
+                tupleCount = 0;
+                return false;
+            }
+            pageInExtent = 0;
+        }
+        setPage(pageInExtent);
+        return true;
+    }
+
+    @Override
+    public void reset() throws Exception {
+        open();
+        start(0);
+        pageIndex = -1;
+        readPage();
+    }
+
+    @Override
+    public Tuple readNextTuple() throws Exception {
+        if (this.tupleCount <= 0) {
+            return null;
+        }
+        if (tuplePointer >= (2 + tupleCount * tupleSize) * Constants.INT_SIZE) {
+            if (!readPage() || tupleCount <= 0) {
+                return null;
+            }
+        }
+        int[] tupleData = new int[tupleSize];
+        int position = pageOffset + tuplePointer;
+        for (int i = 0; i < tupleSize; ++i) {
+            tupleData[i] = extent.getInt(position);
+            position += Constants.INT_SIZE;
+        }
+        tuplePointer += tupleSize * Constants.INT_SIZE;
+        return new Tuple(tupleData);
+    }
+
+    /**
+     * the view points into the current page, which is decoded once
+     */
+    @Override
+    public Tuple readNextView() throws Exception {
+        if (this.tupleCount <= 0) {
+            return null;
+        }
+        if (tuplePointer >= (2 + tupleCount * tupleSize) * Constants.INT_SIZE) {
+            if (!readPage() || tupleCount <= 0) {
+                return null;
+            }
+        }
+        if (!decoded) {
+            pageInts = PageFormat.decode(extent, pageOffset, 2 + tupleCount * tupleSize, pageInts);
+            decoded = true;
+        }
+        if (view == null || view.getDataLength() != tupleSize) {
+            view = Tuple.view(pageInts, 0, tupleSize);
+        }
+        view.moveTo(pageInts, tuplePointer / Constants.INT_SIZE);
+        tuplePointer += tupleSize * Constants.INT_SIZE;
+        return view;
+    }
+
+    @Override
+    public int readNextBatch(TupleBatch batch) throws Exception {
+        int[][] columns = batch.getColumns();
+        int row = batch.getSize();
+        int read = 0;
+        while (row < batch.getCapacity() && this.tupleCount > 0) {
+            if (tuplePointer >= (2 + tupleCount * tupleSize) * Constants.INT_SIZE) {
+                if (!readPage() || tupleCount <= 0) {
+                    break;
+                }
+            }
+            int position = pageOffset + tuplePointer;
+            for (int i = 0; i < tupleSize; ++i) {
+                columns[i][row] = extent.getInt(position);
+                position += Constants.INT_SIZE;
+            }
+            tuplePointer += tupleSize * Constants.INT_SIZE;
+            row++;
+            read++;
+        }
+        batch.setSize(row);
+        return read;
+    }
+
+    @Override
+    public void moveBack() throws Exception {
+        if (tuplePointer == 0) {
+            throw new Exception("Unable to move back");
+        }
+        if (tuplePointer > 2 * Constants.INT_SIZE) {
+            tuplePointer -= tupleSize * Constants.INT_SIZE;
+        }
+    }
+
+    @Override
+    public void recordPosition() {
+        recordTupleIndex = pageIndex * getMaxTupleCountPerPage()
+                + (tuplePointer - 2 * Constants.INT_SIZE) / (Constants.INT_SIZE * tupleSize);
+    }
+
+    @Override
+    public void revertToPosition() throws Exception {
+        reset(recordTupleIndex);
+    }
+
+    // the next tuple to read is the ith tuple
+    @Override
+    public void reset(long i) throws Exception {
+        if (i < 0) {
+            throw new Exception("Negative tuple position");
+        }
+        if (tupleSize == 0) {
+            return;
+        }
+        int maxTupleCountPerPage = getMaxTupleCountPerPage();
+        long index = i / maxTupleCountPerPage;
+        if (index != pageIndex || tupleCount == 0) {
+            open();
+            start(index / extentPages);
+            if (!nextExtent() || index % extentPages >= extentPageCount) {
+                tupleCount = 0;
+                return;
+            }
+            setPage((int) (index % extentPages));
+        }
+        tuplePointer = (int) (((i % maxTupleCountPerPage) * tupleSize + 2) * Constants.INT_SIZE);
+    }
+
+    @Override
+    public void reset(int pageIndex, int tupleIndex) throws Exception {
+        reset((long) pageIndex * getMaxTupleCountPerPage() + tupleIndex);
+    }
+
+    @Override
+    public int getLastReadPageIndex() {
+        return (int) pageIndex;
+    }
+
+    @Override
+    public int getLastReadTupleInPageIndex() {
+        return (tuplePointer - 2 * Constants.INT_SIZE) / (Constants.INT_SIZE * tupleSize) - 1;
+    }
+
+    private int getMaxTupleCountPerPage() {
+        return (pageSize - 2 * Constants.INT_SIZE) / (tupleSize * Constants.INT_SIZE);
+    }
+
+    /**
+     * @return size of the pages of the file
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * wait for the reads in flight and close the channel
+     */
+    @Override
+    public void close() throws IOException {
+        drain();
+        if (channel != null) {
+            channel.close();
+        }
+        tupleCount = 0;
+    }
+}
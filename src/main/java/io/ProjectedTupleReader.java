@@ -0,0 +1,130 @@
+package io;
+
+import model.Tuple;
+import model.TupleBatch;
+
+/**
+ * Table Reader returning only some columns of the tuples of another reader
+ * the positions and rids are those of the underlying reader.
+ *
+ * Batches are read without copying: the underlying reader fills a full width
+ * batch sharing its column vectors with the narrow batch.
+ */
+public class ProjectedTupleReader implements PagedTupleReader {
+    private PagedTupleReader reader;
+    private int[] columns;
+    private int width;
+
+    private TupleBatch narrowBatch;
+    private TupleBatch wideBatch;
+
+    private int[] viewData;
+    private Tuple view;
+
+    /**
+     * @param reader  reader of the full tuples
+     * @param columns indexes of the columns to keep, in the order of the output
+     * @param width   number of columns of the full tuples
+     */
+    public ProjectedTupleReader(PagedTupleReader reader, int[] columns, int width) {
+        this.reader = reader;
+        this.columns = columns;
+        this.width = width;
+    }
+
+    @Override
+    public Tuple readNextTuple() throws Exception {
+        Tuple tuple = reader.readNextTuple();
+        if (tuple == null) {
+            return null;
+        }
+        int[] data = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            data[i] = tuple.getDataAt(columns[i]);
+        }
+        return new Tuple(data);
+    }
+
+    @Override
+    public Tuple readNextView() throws Exception {
+        Tuple tuple = reader.readNextView();
+        if (tuple == null) {
+            return null;
+        }
+        if (view == null) {
+            viewData = new int[columns.length];
+            view = Tuple.view(viewData, 0, columns.length);
+        }
+        for (int i = 0; i < columns.length; i++) {
+            viewData[i] = tuple.getDataAt(columns[i]);
+        }
+        return view;
+    }
+
+    @Override
+    public int readNextBatch(TupleBatch batch) throws Exception {
+        if (batch != narrowBatch) {
+            // the columns not kept are read into scratch vectors
+            int[][] wide = new int[width][];
+            for (int i = 0; i < columns.length; i++) {
+                wide[columns[i]] = batch.getColumn(i);
+            }
+            for (int i = 0; i < width; i++) {
+                if (wide[i] == null) {
+                    wide[i] = new int[batch.getCapacity()];
+                }
+            }
+            narrowBatch = batch;
+            wideBatch = new TupleBatch(wide, 0);
+        }
+        wideBatch.setSize(batch.getSize());
+        int read = reader.readNextBatch(wideBatch);
+        batch.setSize(wideBatch.getSize());
+        return read;
+    }
+
+    @Override
+    public void reset() throws Exception {
+        reader.reset();
+    }
+
+    @Override
+    public void reset(long i) throws Exception {
+        reader.reset(i);
+    }
+
+    @Override
+    public void reset(int pageIndex, int tupleIndex) throws Exception {
+        reader.reset(pageIndex, tupleIndex);
+    }
+
+    @Override
+    public void moveBack() throws Exception {
+        reader.moveBack();
+    }
+
+    @Override
+    public void recordPosition() {
+        reader.recordPosition();
+    }
+
+    @Override
+    public void revertToPosition() throws Exception {
+        reader.revertToPosition();
+    }
+
+    @Override
+    public int getLastReadPageIndex() {
+        return reader.getLastReadPageIndex();
+    }
+
+    @Override
+    public int getLastReadTupleInPageIndex() {
+        return reader.getLastReadTupleInPageIndex();
+    }
+
+    @Override
+    public void close() throws Exception {
+        reader.close();
+    }
+}
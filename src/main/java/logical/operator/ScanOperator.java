@@ -2,7 +2,8 @@ package logical.operator;
 
 import PlanBuilder.LogicalOperatorVisitor;
 import PlanBuilder.PhysicalPlanBuilder;
-import io.BinaryTupleReader;
+import io.PagedTupleReader;
+import io.ProjectedTupleReader;
 import model.TableStat;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import util.Catalog;
@@ -11,6 +12,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 /**
@@ -19,11 +21,13 @@ import java.util.Map;
  */
 public class ScanOperator extends Operator {
     private Operator op;
-    private BinaryTupleReader binaryTupleReader;
+    private PagedTupleReader tupleReader;
     private Map<String, Integer> schema;
     private TableStat tableStat;
     private String table;
     private int tableIndex;
+    // indexes of the table columns kept by the scan, null for all
+    private int[] columns;
 
 
     /**
@@ -31,6 +35,15 @@ public class ScanOperator extends Operator {
      * @param tableIndex  is the index of the table in FROM section, start by 0
      */
     public ScanOperator(PlainSelect plainSelect, int tableIndex) {
+        this(plainSelect, tableIndex, null);
+    }
+
+    /**
+     * @param plainSelect     is the statement of sql
+     * @param tableIndex      is the index of the table in FROM section, start by 0
+     * @param requiredColumns columns the query needs, alias.column, null for all
+     */
+    public ScanOperator(PlainSelect plainSelect, int tableIndex, Set<String> requiredColumns) {
         this.op = null;
         this.tableIndex = tableIndex;
         String item;
@@ -42,7 +55,7 @@ public class ScanOperator extends Operator {
 
         String[] strs = item.split("\\s+");
         if (strs.length < 0) {
-            this.binaryTupleReader = null;
+            this.tupleReader = null;
             return;
         }
         String tableName = strs[0];
@@ -54,17 +67,57 @@ public class ScanOperator extends Operator {
         Catalog.getInstance().updateCurrentSchema(aliasName);
 
         this.schema = Catalog.getInstance().getCurrentSchema();
+        int width = schema.size();
+        if (requiredColumns != null) {
+            narrowSchema(requiredColumns);
+        }
 
         tableStat = new TableStat(aliasName);
         tableStat.paserFromStatString(Catalog.getInstance().getStatsConfig(tableName));
 
         try {
-            binaryTupleReader = new BinaryTupleReader(Catalog.getInstance().getDataPath(tableName));
+            tupleReader = Catalog.getInstance().getTableReader(tableName, columns);
+            if (columns != null) {
+                tupleReader = new ProjectedTupleReader(tupleReader, columns, width);
+            }
         } catch (Exception e) {
 
         }
     }
 
+    /**
+     * keep only the required columns in the schema, in the order of the table
+     * at least one column is kept so the tuples still count the rows
+     *
+     * @param requiredColumns
+     */
+    private void narrowSchema(Set<String> requiredColumns) {
+        String[] names = new String[schema.size()];
+        for (Map.Entry<String, Integer> entry : schema.entrySet()) {
+            names[entry.getValue()] = entry.getKey();
+        }
+        List<Integer> kept = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            if (requiredColumns.contains(names[i])) {
+                kept.add(i);
+            }
+        }
+        if (kept.size() == names.length) {
+            return;
+        }
+        if (kept.isEmpty()) {
+            kept.add(0);
+        }
+        columns = new int[kept.size()];
+        Map<String, Integer> narrowed = new HashMap<>();
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = kept.get(i);
+            narrowed.put(names[columns[i]], i);
+        }
+        schema = narrowed;
+        Catalog.getInstance().setCurrentSchema(schema);
+    }
+
     /**
      * get the schema
      */
@@ -73,8 +126,15 @@ public class ScanOperator extends Operator {
         return this.schema;
     }
 
-    public BinaryTupleReader getBinaryTupleReader() {
-        return binaryTupleReader;
+    public PagedTupleReader getTupleReader() {
+        return tupleReader;
+    }
+
+    /**
+     * @return indexes of the table columns kept by the scan, null for all
+     */
+    public int[] getColumns() {
+        return columns;
     }
 
     public String getTable() {
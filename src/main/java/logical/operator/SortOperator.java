@@ -34,6 +34,16 @@ public class SortOperator extends Operator {
         this.order = plainSelect.getOrderByElements();
     }
 
+    /**
+     * @param operator
+     * @param order
+     */
+    public SortOperator(Operator operator, List<OrderByElement> order) {
+        this.operator = operator;
+        this.schema = operator.getSchema();
+        this.order = order;
+    }
+
     /**
      * get the schema
      */
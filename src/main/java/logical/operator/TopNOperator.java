@@ -0,0 +1,110 @@
+package logical.operator;
+
+import PlanBuilder.LogicalOperatorVisitor;
+import PlanBuilder.PhysicalPlanBuilder;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Top-N operator, the rows [offset, offset + limit) of its child in the order,
+ * or in the order of the child if there is no order
+ */
+public class TopNOperator extends Operator {
+
+    private Map<String, Integer> schema;
+    private Operator operator;
+    private List<OrderByElement> order;
+    private long limit;
+    private long offset;
+
+    /**
+     * @param operator child
+     * @param order    order of the rows, null to keep the order of the child
+     * @param limit    limit of the query, the parser reads a lone OFFSET as a row count of 0,
+     *                 which is no limit, only LIMIT 0 has no offset and returns no row
+     */
+    public TopNOperator(Operator operator, List<OrderByElement> order, Limit limit) {
+        this.operator = operator;
+        this.schema = operator.getSchema();
+        this.order = order;
+        if (limit.isLimitAll() || (limit.getRowCount() <= 0 && limit.getOffset() > 0)) {
+            this.limit = Long.MAX_VALUE;
+        } else {
+            this.limit = Math.max(limit.getRowCount(), 0);
+        }
+        this.offset = Math.max(limit.getOffset(), 0);
+    }
+
+    /**
+     * @param limit limit of the query, may be null
+     * @return true if the limit drops any row
+     */
+    public static boolean isLimited(Limit limit) {
+        return limit != null && (!limit.isLimitAll() || limit.getOffset() > 0);
+    }
+
+    /**
+     * get the schema
+     */
+    @Override
+    public Map<String, Integer> getSchema() {
+        return this.schema;
+    }
+
+    /**
+     * @return the order, null if the rows keep the order of the child
+     */
+    public List<OrderByElement> getOrder() {
+        return this.order;
+    }
+
+    /**
+     * @return max number of rows returned
+     */
+    public long getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * @return number of rows skipped
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * @return number of rows read in the order, offset + limit
+     */
+    public long getRowCount() {
+        return limit > Long.MAX_VALUE - offset ? Long.MAX_VALUE : offset + limit;
+    }
+
+    /**
+     * method to get children
+     */
+    @Override
+    public List<Operator> getChildren() {
+        if (this.operator == null) {
+            return null;
+        } else {
+            List<Operator> children = new ArrayList<>();
+            children.add(this.operator);
+            return children;
+        }
+    }
+
+    @Override
+    public void accept(PhysicalPlanBuilder visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public void accept(LogicalOperatorVisitor visitor) {
+        visitor.visit(this);
+    }
+
+}
@@ -63,7 +63,7 @@ public class Block {
      */
     public Boolean setNextTuple(Tuple tuple) {
         if (setIndex < getMaximumSize()) {
-            outerBlock[setIndex++] = tuple;
+            outerBlock[setIndex++] = tuple.materialize();
             if (setIndex == getMaximumSize()) {
                 setIndex = 0;
                 return false;
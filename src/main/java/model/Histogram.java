@@ -1,47 +1,276 @@
 package model;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.Set;
+import java.util.TreeMap;
 
+/**
+ * Compressed histogram of a column
+ * the most frequent values are kept exactly with their counts, the other values
+ * are spread over equi-depth buckets keeping their range, count and number of
+ * distinct values, a value of a bucket is assumed to have the average count.
+ * A column with few distinct values is kept exactly.
+ *
+ * The size is bounded by MAX_SINGLETONS values and MAX_BUCKETS buckets,
+ * whatever the number of rows.
+ */
 public class Histogram {
-    Map <Integer, Integer> histogram;
+    public static final int MAX_SINGLETONS = 256;
+    public static final int MAX_BUCKETS = 64;
+
     String columnName;
     long count;
 
-    public Histogram(String columnName) {
-        this.histogram = new HashMap<>();
+    // values kept exactly, sorted
+    private int[] values;
+    private long[] valueCounts;
+
+    // equi-depth buckets of the other values, sorted
+    private int[] bucketLows;
+    private int[] bucketHighs;
+    private long[] bucketCounts;
+    private long[] bucketDistincts;
+
+    private Histogram(String columnName) {
         this.columnName = columnName;
-        count = 0;
     }
 
-    public String getColumnName() {
-        return this.columnName;
+    /**
+     * build the histogram from the exact count of every value
+     *
+     * @param columnName
+     * @param counts     count of each value
+     * @return histogram
+     */
+    public static Histogram fromCounts(String columnName, Map<Integer, Long> counts) {
+        return build(columnName, new TreeMap<>(counts), 1.0, -1);
     }
 
-    public void add(int key) {
-        if (!histogram.containsKey(key)) {
-            histogram.put(key, 1);
+    /**
+     * build the histogram from a uniform sample of the column
+     *
+     * @param columnName
+     * @param sample     values of the sampled rows
+     * @param rowCount   rows of the table
+     * @param distinct   estimated number of distinct values of the column
+     * @param min        min of the column
+     * @param max        max of the column
+     * @return histogram, a single bucket over [min, max] if the sample is empty
+     */
+    public static Histogram fromSample(String columnName, int[] sample, long rowCount, long distinct,
+                                       int min, int max) {
+        if (sample.length == 0) {
+            Histogram histogram = new Histogram(columnName);
+            histogram.count = rowCount;
+            histogram.values = new int[0];
+            histogram.valueCounts = new long[0];
+            if (rowCount == 0) {
+                histogram.setBuckets(new ArrayList<>());
+            } else {
+                List<long[]> buckets = new ArrayList<>();
+                buckets.add(new long[]{min, max, rowCount, Math.max(distinct, 1)});
+                histogram.setBuckets(buckets);
+            }
+            return histogram;
+        }
+        TreeMap<Integer, Long> counts = new TreeMap<>();
+        for (int value : sample) {
+            counts.merge(value, 1L, Long::sum);
+        }
+        return build(columnName, counts, (double) rowCount / sample.length, distinct);
+    }
+
+    /**
+     * @param counts   count of each value, exact or in the sample
+     * @param scale    rows per counted row
+     * @param distinct distinct values of the column, -1 if the counts are exact
+     */
+    private static Histogram build(String columnName, TreeMap<Integer, Long> counts, double scale, long distinct) {
+        Histogram histogram = new Histogram(columnName);
+        long total = 0;
+        for (long c : counts.values()) {
+            total += c;
+        }
+        histogram.count = Math.round(total * scale);
+
+        // the values heavier than a bucket are kept exactly, all of them if they fit
+        Set<Integer> singletons = new HashSet<>();
+        if (counts.size() <= MAX_SINGLETONS && distinct < 0) {
+            singletons.addAll(counts.keySet());
+        } else {
+            List<Map.Entry<Integer, Long>> entries = new ArrayList<>(counts.entrySet());
+            entries.sort((e1, e2) -> Long.compare(e2.getValue(), e1.getValue()));
+            long heavy = Math.max(total / MAX_BUCKETS, 2);
+            for (Map.Entry<Integer, Long> entry : entries) {
+                if (singletons.size() == MAX_SINGLETONS || entry.getValue() < heavy) {
+                    break;
+                }
+                singletons.add(entry.getKey());
+            }
         }
-        else {
-            histogram.replace(key, histogram.get(key) + 1);
+        histogram.values = new int[singletons.size()];
+        histogram.valueCounts = new long[singletons.size()];
+        int index = 0;
+        long rest = 0;
+        int restValues = 0;
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            if (singletons.contains(entry.getKey())) {
+                histogram.values[index] = entry.getKey();
+                histogram.valueCounts[index++] = Math.round(entry.getValue() * scale);
+            } else {
+                rest += entry.getValue();
+                restValues++;
+            }
         }
-        count ++;
+
+        // the distinct values not kept exactly, spread over the buckets by their share in the counts
+        long restDistinct = distinct < 0 ? restValues : Math.max(distinct - singletons.size(), restValues);
+        double distinctScale = restValues == 0 ? 0 : (double) restDistinct / restValues;
+        List<long[]> buckets = new ArrayList<>();
+        long depth = Math.max((rest + MAX_BUCKETS - 1) / MAX_BUCKETS, 1);
+        long[] bucket = null;
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            if (singletons.contains(entry.getKey())) {
+                continue;
+            }
+            if (bucket == null) {
+                bucket = new long[]{entry.getKey(), entry.getKey(), 0, 0};
+            }
+            bucket[1] = entry.getKey();
+            bucket[2] += entry.getValue();
+            bucket[3]++;
+            if (bucket[2] >= depth) {
+                buckets.add(bucket);
+                bucket = null;
+            }
+        }
+        if (bucket != null) {
+            buckets.add(bucket);
+        }
+        for (long[] b : buckets) {
+            b[2] = Math.round(b[2] * scale);
+            b[3] = Math.max(Math.round(b[3] * distinctScale), 1);
+        }
+        histogram.setBuckets(buckets);
+        return histogram;
+    }
+
+    private void setBuckets(List<long[]> buckets) {
+        int size = buckets.size();
+        bucketLows = new int[size];
+        bucketHighs = new int[size];
+        bucketCounts = new long[size];
+        bucketDistincts = new long[size];
+        for (int i = 0; i < size; i++) {
+            long[] bucket = buckets.get(i);
+            bucketLows[i] = (int) bucket[0];
+            bucketHighs[i] = (int) bucket[1];
+            bucketCounts[i] = bucket[2];
+            bucketDistincts[i] = bucket[3];
+        }
+    }
+
+    public String getColumnName() {
+        return this.columnName;
     }
 
     public double getProbability(int key) {
-        if (!histogram.containsKey(key)) {
+        if (count == 0) {
             return 0;
         }
-        return (double)histogram.get(key) / (double)count;
+        return (double) getCount(key) / (double) count;
     }
 
+    /**
+     * @return the count of the value, exact if it is kept exactly, the average of its bucket otherwise
+     */
     public long getCount(int key) {
-        if (!histogram.containsKey(key)) { return 0; }
-        return histogram.get(key);
+        int index = Arrays.binarySearch(values, key);
+        if (index >= 0) {
+            return valueCounts[index];
+        }
+        int bucket = Arrays.binarySearch(bucketLows, key);
+        if (bucket < 0) {
+            bucket = -bucket - 2;
+        }
+        if (bucket < 0 || key > bucketHighs[bucket]) {
+            return 0;
+        }
+        return Math.round((double) bucketCounts[bucket] / bucketDistincts[bucket]);
     }
 
+    /**
+     * @return the values kept exactly
+     */
     public Set<Integer> getKeySet() {
-        return histogram.keySet();
+        Set<Integer> keys = new HashSet<>();
+        for (int value : values) {
+            keys.add(value);
+        }
+        return keys;
+    }
+
+    /**
+     * @return number of rows
+     */
+    public long getTotalCount() {
+        return count;
+    }
+
+    /**
+     * @return estimated number of distinct values
+     */
+    public long getDistinctCount() {
+        long distinct = values.length;
+        for (long d : bucketDistincts) {
+            distinct += d;
+        }
+        return distinct;
+    }
+
+    public int getBucketCount() {
+        return bucketLows.length;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(count);
+        out.writeInt(values.length);
+        for (int i = 0; i < values.length; i++) {
+            out.writeInt(values[i]);
+            out.writeLong(valueCounts[i]);
+        }
+        out.writeInt(bucketLows.length);
+        for (int i = 0; i < bucketLows.length; i++) {
+            out.writeInt(bucketLows[i]);
+            out.writeInt(bucketHighs[i]);
+            out.writeLong(bucketCounts[i]);
+            out.writeLong(bucketDistincts[i]);
+        }
+    }
+
+    public static Histogram read(DataInput in, String columnName) throws IOException {
+        Histogram histogram = new Histogram(columnName);
+        histogram.count = in.readLong();
+        int size = in.readInt();
+        histogram.values = new int[size];
+        histogram.valueCounts = new long[size];
+        for (int i = 0; i < size; i++) {
+            histogram.values[i] = in.readInt();
+            histogram.valueCounts[i] = in.readLong();
+        }
+        size = in.readInt();
+        List<long[]> buckets = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            buckets.add(new long[]{in.readInt(), in.readInt(), in.readLong(), in.readLong()});
+        }
+        histogram.setBuckets(buckets);
+        return histogram;
     }
-} 
\ No newline at end of file
+}
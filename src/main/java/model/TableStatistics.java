@@ -0,0 +1,118 @@
+package model;
+
+import util.ReservoirSample;
+
+import java.util.Map;
+
+/**
+ * Statistics of a table kept in the stats file
+ * the row count, the min, max, distinct count and histogram of every column,
+ * an optional sample of the rows, and the fingerprint of the table file they
+ * were computed from, so they are computed again only if the file changes.
+ */
+public class TableStatistics {
+    private String table;
+    private long[] fingerprint;
+    private long count;
+    private String[] columns;
+    private int[] min;
+    private int[] max;
+    private long[] distinct;
+    private Histogram[] histograms;
+    private ReservoirSample sample;
+
+    /**
+     * @param table       table name
+     * @param fingerprint fingerprint of the table file
+     * @param count       number of rows
+     * @param columns     column names without the table, in the order of the schema
+     * @param min         min of each column
+     * @param max         max of each column
+     * @param distinct    distinct count of each column
+     * @param histograms  histogram of each column
+     * @param sample      sample of the rows, null if sampling is off
+     */
+    public TableStatistics(String table, long[] fingerprint, long count, String[] columns, int[] min, int[] max,
+                           long[] distinct, Histogram[] histograms, ReservoirSample sample) {
+        this.table = table;
+        this.fingerprint = fingerprint;
+        this.count = count;
+        this.columns = columns;
+        this.min = min;
+        this.max = max;
+        this.distinct = distinct;
+        this.histograms = histograms;
+        this.sample = sample;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public long[] getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(long[] fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    public int getMin(int column) {
+        return min[column];
+    }
+
+    public int getMax(int column) {
+        return max[column];
+    }
+
+    public long getDistinct(int column) {
+        return distinct[column];
+    }
+
+    public Histogram getHistogram(int column) {
+        return histograms[column];
+    }
+
+    public ReservoirSample getSample() {
+        return sample;
+    }
+
+    /**
+     * @param schema column indexes by full column name
+     * @return the histograms by full column name
+     */
+    public TableHistogram getTableHistogram(Map<String, Integer> schema) {
+        TableHistogram tableHistogram = new TableHistogram();
+        for (Map.Entry<String, Integer> entry : schema.entrySet()) {
+            tableHistogram.put(entry.getKey(), histograms[entry.getValue()]);
+        }
+        return tableHistogram;
+    }
+
+    /**
+     * @return the line of the table in stats.txt: table, count, then column,min,max for every column
+     */
+    public String toStatsLine() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(table);
+        sb.append(' ');
+        sb.append(count);
+        for (int i = 0; i < columns.length; i++) {
+            sb.append(' ');
+            sb.append(columns[i]);
+            sb.append(',');
+            sb.append(min[i]);
+            sb.append(',');
+            sb.append(max[i]);
+        }
+        return sb.toString();
+    }
+}
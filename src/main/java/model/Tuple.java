@@ -5,9 +5,18 @@ import java.util.Arrays;
 /**
  * Tuple class
  * Created by Yufu Mo
+ *
+ * A tuple is either owned, its data is its own, or a view: a flyweight over
+ * length ints of a buffer from an offset, e.g. a decoded page of a reader or
+ * the output buffer of an operator. The producer of a view moves it onto the
+ * next row on its next call, so a consumer keeping a row across calls keeps
+ * materialize() of it.
  */
 public class Tuple {
     private int[] data; // string array to store data
+    private int offset;
+    private int length;
+    private boolean view;
 
     /**
      * Constructor for tuple
@@ -20,6 +29,7 @@ public class Tuple {
         for (int i = 0; i < sData.length; ++i) {
             data[i] = Integer.parseInt(sData[i]);
         }
+        length = data.length;
     }
 
     /**
@@ -29,6 +39,7 @@ public class Tuple {
      */
     public Tuple(int length) {
         data = new int[length];
+        this.length = length;
     }
 
     /**
@@ -38,6 +49,56 @@ public class Tuple {
      */
     public Tuple(int[] data) {
         this.data = data;
+        this.length = data.length;
+    }
+
+    private Tuple(int[] base, int offset, int length) {
+        this.data = base;
+        this.offset = offset;
+        this.length = length;
+        this.view = true;
+    }
+
+    /**
+     * create a view over length ints of base from offset
+     *
+     * @param base   buffer of the producer
+     * @param offset
+     * @param length
+     * @return the view
+     */
+    public static Tuple view(int[] base, int offset, int length) {
+        return new Tuple(base, offset, length);
+    }
+
+    /**
+     * move a view onto another row, of the same length
+     *
+     * @param base
+     * @param offset
+     * @return this view
+     */
+    public Tuple moveTo(int[] base, int offset) {
+        this.data = base;
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * @return true if the tuple is only valid until the next call of its producer
+     */
+    public boolean isView() {
+        return view;
+    }
+
+    /**
+     * @return this tuple if it is owned, a copy of its data if it is a view
+     */
+    public Tuple materialize() {
+        if (!view) {
+            return this;
+        }
+        return new Tuple(Arrays.copyOfRange(data, offset, offset + length));
     }
 
     /**
@@ -47,7 +108,7 @@ public class Tuple {
      * @return int
      */
     public int getDataAt(int index) {
-        return data[index];
+        return data[offset + index];
     }
 
     /**
@@ -56,7 +117,7 @@ public class Tuple {
      * @return int
      */
     public int getDataLength() {
-        return data.length;
+        return length;
     }
 
     @Override
@@ -68,13 +129,20 @@ public class Tuple {
             return false;
         }
         Tuple tuple = (Tuple) o;
-
-        return Arrays.equals(data, tuple.data);
+        if (length != tuple.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (data[offset + i] != tuple.data[tuple.offset + i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public String toString() {
-        StringBuilder res = new StringBuilder(Arrays.toString(data));
+        StringBuilder res = new StringBuilder(Arrays.toString(Arrays.copyOfRange(data, offset, offset + length)));
         return res.toString().replaceAll("\\[", "")
                 .replaceAll("\\]", "")
                 .replaceAll("\\s+", "");
@@ -0,0 +1,153 @@
+package model;
+
+/**
+ * A batch of tuples stored column by column
+ * each column is a primitive int vector, row i of the batch is the ith
+ * element of all the columns
+ *
+ * A batch returned by an operator is only valid until the next call
+ * of getNextBatch, operators reuse and overwrite their batches.
+ */
+public class TupleBatch {
+    private int[][] columns;
+    private int size;
+    private int capacity;
+
+    /**
+     * Constructor of an empty batch
+     *
+     * @param width    number of columns
+     * @param capacity maximum number of rows
+     */
+    public TupleBatch(int width, int capacity) {
+        this.columns = new int[width][capacity];
+        this.capacity = capacity;
+        this.size = 0;
+    }
+
+    /**
+     * Constructor of a batch over existing column vectors, the vectors are not copied
+     *
+     * @param columns column vectors
+     * @param size    number of valid rows
+     */
+    public TupleBatch(int[][] columns, int size) {
+        this.columns = columns;
+        this.size = size;
+        this.capacity = columns.length == 0 ? size : columns[0].length;
+    }
+
+    /**
+     * @return number of columns
+     */
+    public int getWidth() {
+        return columns.length;
+    }
+
+    /**
+     * @return number of valid rows
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * set the number of valid rows, used after filling the columns directly
+     *
+     * @param size
+     */
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isFull() {
+        return size >= capacity;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index of column
+     * @return the column vector
+     */
+    public int[] getColumn(int index) {
+        return columns[index];
+    }
+
+    public int[][] getColumns() {
+        return columns;
+    }
+
+    /**
+     * @param row
+     * @param column
+     * @return the value at certain row and column
+     */
+    public int getDataAt(int row, int column) {
+        return columns[column][row];
+    }
+
+    /**
+     * append a tuple at the end of the batch
+     *
+     * @param tuple
+     */
+    public void addTuple(Tuple tuple) {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i][size] = tuple.getDataAt(i);
+        }
+        size++;
+    }
+
+    /**
+     * copy a row to another position of the batch, used to compact a filtered batch
+     *
+     * @param from row to copy
+     * @param to   target row
+     */
+    public void copyRow(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        for (int[] column : columns) {
+            column[to] = column[from];
+        }
+    }
+
+    /**
+     * copy a row into the given array
+     *
+     * @param row
+     * @param data array with at least width elements
+     */
+    public void readRow(int row, int[] data) {
+        for (int i = 0; i < columns.length; i++) {
+            data[i] = columns[i][row];
+        }
+    }
+
+    /**
+     * materialize a row into a new tuple
+     *
+     * @param row
+     * @return tuple
+     */
+    public Tuple getTuple(int row) {
+        int[] data = new int[columns.length];
+        readRow(row, data);
+        return new Tuple(data);
+    }
+
+    /**
+     * drop all rows, the column vectors are kept for reuse
+     */
+    public void clear() {
+        size = 0;
+    }
+}
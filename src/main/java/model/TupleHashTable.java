@@ -0,0 +1,248 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Hash table of the build side of a hash join
+ * open addressing over int keys, everything is kept in primitive arrays:
+ * the rows are appended to one int arena, each distinct key is a group in
+ * the slot table and the rows of a group are chained by their row number.
+ *
+ * Keys may span several columns, the hash mixes every key column with a seed,
+ * so the same function with another seed can be used to partition the input.
+ */
+public class TupleHashTable {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int rowWidth;
+    private final int[] keyColumns;
+    private final int seed;
+
+    // rows, rowWidth ints each
+    private int[] arena;
+    private int rowCount;
+    // previous row of the same key, -1 at the end of the chain
+    private int[] rowNext;
+
+    // group + 1 of each slot, 0 for an empty slot
+    private int[] slots;
+    private int[] slotHashes;
+    private int mask;
+
+    // keys of the groups, keyColumns.length ints each, and their last rows
+    private int[] groupKeys;
+    private int[] groupHeads;
+    private int groupCount;
+
+    /**
+     * @param rowWidth   number of columns of a row
+     * @param keyColumns columns of the key in a row
+     * @param seed       seed of the hash function
+     */
+    public TupleHashTable(int rowWidth, int[] keyColumns, int seed) {
+        this.rowWidth = rowWidth;
+        this.keyColumns = keyColumns;
+        this.seed = seed;
+        this.arena = new int[INITIAL_CAPACITY * Math.max(rowWidth, 1)];
+        this.rowNext = new int[INITIAL_CAPACITY];
+        this.slots = new int[INITIAL_CAPACITY * 2];
+        this.slotHashes = new int[INITIAL_CAPACITY * 2];
+        this.mask = slots.length - 1;
+        this.groupKeys = new int[INITIAL_CAPACITY * Math.max(keyColumns.length, 1)];
+        this.groupHeads = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * hash the key columns of a tuple, murmur3 mixing
+     *
+     * @param tuple
+     * @param columns key columns of the tuple
+     * @param seed
+     * @return hash of the key
+     */
+    public static int hash(Tuple tuple, int[] columns, int seed) {
+        int h = seed;
+        for (int column : columns) {
+            h = mix(h, tuple.getDataAt(column));
+        }
+        return finish(h, columns.length);
+    }
+
+    private static int mix(int h, int k) {
+        k *= 0xcc9e2d51;
+        k = Integer.rotateLeft(k, 15);
+        k *= 0x1b873593;
+        h ^= k;
+        h = Integer.rotateLeft(h, 13);
+        return h * 5 + 0xe6546b64;
+    }
+
+    private static int finish(int h, int length) {
+        h ^= length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * copy a tuple into the table
+     *
+     * @param tuple
+     */
+    public void put(Tuple tuple) {
+        if (rowCount == rowNext.length) {
+            rowNext = Arrays.copyOf(rowNext, rowCount * 2);
+            arena = Arrays.copyOf(arena, rowCount * 2 * rowWidth);
+        }
+        int row = rowCount++;
+        int offset = row * rowWidth;
+        for (int i = 0; i < rowWidth; i++) {
+            arena[offset + i] = tuple.getDataAt(i);
+        }
+
+        int h = hash(tuple, keyColumns, seed);
+        int slot = findSlot(h, tuple, keyColumns);
+        int group;
+        if (slots[slot] == 0) {
+            group = addGroup(tuple);
+            slots[slot] = group + 1;
+            slotHashes[slot] = h;
+            rowNext[row] = -1;
+            if (groupCount * 2 > slots.length) {
+                rehash();
+            }
+        } else {
+            group = slots[slot] - 1;
+            rowNext[row] = groupHeads[group];
+        }
+        groupHeads[group] = row;
+    }
+
+    private int addGroup(Tuple tuple) {
+        if (groupCount == groupHeads.length) {
+            groupHeads = Arrays.copyOf(groupHeads, groupCount * 2);
+            groupKeys = Arrays.copyOf(groupKeys, groupCount * 2 * keyColumns.length);
+        }
+        int offset = groupCount * keyColumns.length;
+        for (int i = 0; i < keyColumns.length; i++) {
+            groupKeys[offset + i] = tuple.getDataAt(keyColumns[i]);
+        }
+        return groupCount++;
+    }
+
+    /**
+     * linear probing for the slot of the key, or the empty slot to put it
+     *
+     * @param h       hash of the key
+     * @param tuple   tuple holding the key
+     * @param columns key columns in the tuple
+     * @return slot index
+     */
+    private int findSlot(int h, Tuple tuple, int[] columns) {
+        int slot = h & mask;
+        while (slots[slot] != 0) {
+            if (slotHashes[slot] == h && keyEquals(slots[slot] - 1, tuple, columns)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean keyEquals(int group, Tuple tuple, int[] columns) {
+        int offset = group * keyColumns.length;
+        for (int i = 0; i < columns.length; i++) {
+            if (groupKeys[offset + i] != tuple.getDataAt(columns[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * double the slot table, the groups keep their numbers
+     */
+    private void rehash() {
+        int[] oldSlots = slots;
+        int[] oldHashes = slotHashes;
+        slots = new int[oldSlots.length * 2];
+        slotHashes = new int[oldSlots.length * 2];
+        mask = slots.length - 1;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != 0) {
+                int slot = oldHashes[i] & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = oldSlots[i];
+                slotHashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    /**
+     * find the rows whose key equals the key of the probe tuple
+     *
+     * @param probe        tuple of the probe side
+     * @param probeColumns key columns of the probe tuple, in the order of the key columns of the table
+     * @return the first matching row, -1 if there is none
+     */
+    public int find(Tuple probe, int[] probeColumns) {
+        if (groupCount == 0) {
+            return -1;
+        }
+        int slot = findSlot(hash(probe, probeColumns, seed), probe, probeColumns);
+        return slots[slot] == 0 ? -1 : groupHeads[slots[slot] - 1];
+    }
+
+    /**
+     * @param row a matching row
+     * @return the next row with the same key, -1 if there is none
+     */
+    public int next(int row) {
+        return rowNext[row];
+    }
+
+    /**
+     * @param row
+     * @param column
+     * @return the value at certain row and column
+     */
+    public int getDataAt(int row, int column) {
+        return arena[row * rowWidth + column];
+    }
+
+    /**
+     * copy a row into the given array at the given position
+     *
+     * @param row
+     * @param data   target array
+     * @param offset position in the target array
+     */
+    public void readRow(int row, int[] data, int offset) {
+        System.arraycopy(arena, row * rowWidth, data, offset, rowWidth);
+    }
+
+    public int getRowWidth() {
+        return rowWidth;
+    }
+
+    /**
+     * @return number of rows in the table
+     */
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * drop all the rows, the arrays are kept for reuse
+     */
+    public void clear() {
+        Arrays.fill(slots, 0);
+        rowCount = 0;
+        groupCount = 0;
+    }
+}
@@ -57,7 +57,8 @@ public class PhysicalDuplicateEliminationOperator extends PhysicalOperator {
 
             tuple = operator.getNextTuple();
         }
-        prevTuple = tuple;
+        // the child may move a view on its next call
+        prevTuple = tuple == null ? null : tuple.materialize();
         return tuple;
     }
 
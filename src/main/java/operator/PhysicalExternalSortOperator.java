@@ -3,6 +3,7 @@ package operator;
 import PlanBuilder.PhysicalOperatorVisitor;
 import io.BinaryTupleReader;
 import io.BinaryTupleWriter;
+import io.PagedTupleReader;
 import io.TupleReader;
 import io.TupleWriter;
 import logical.operator.SortOperator;
@@ -13,28 +14,54 @@ import util.Catalog;
 import util.Constants;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * External sort operator
+ * the child is read into blocks on the calling thread while the full blocks are
+ * sorted and written as runs by the sort threads, the groups of runs of a merge
+ * pass are merged in parallel too, by at most sortThreadCount threads. The pages
+ * of the sort are split across the blocks in memory at once, and across the
+ * groups merged at once, so the sort holds no more than its block size. The
+ * split is only made while every block keeps a few pages and the narrower
+ * merges add no pass, otherwise the sort runs on the calling thread.
+ *
+ * The child is sorted on the first call. The last merge is streamed to the
+ * parent, a sort under a sort merge join is merged into one file instead, the
+ * join moves back in it.
  *
  * @author Xinghe Li
  */
 public class PhysicalExternalSortOperator extends PhysicalSortOperator {
     private final String id = UUID.randomUUID().toString().substring(0, 8); // the identifier for the temp file serial
 
-    private List<TupleReader> buffer; // (blocksize - 1) tuple readers to read several temp files(runs)
-    private BinaryTupleWriter outputBuffer; // output buffer to merge sort
+    // fewest pages of a block sorted on a sort thread
+    private static final int MIN_RUN_PAGES = 4;
+
     int blockSize;
+    private int mergePages; // pages of a group merged, a share of the block size
     int index = 0; // index of run
     int prePass = 0;
     String finalTemp; // the name of sorted temp file
     TupleReader tr; // tuple reader to read the final temp file
 
+    private boolean streamFinalMerge = true;
+    private PriorityQueue<RunHead> heads; // runs of the streamed merge
+    private boolean sorted = false; // the child is sorted on the first call
+    private volatile boolean closed = false;
+    private ExecutorService threadPool; // sort threads, while the child is sorted
+
     /**
      * used for simply test skipping the logical plan tree
      *
@@ -43,7 +70,6 @@ public class PhysicalExternalSortOperator extends PhysicalSortOperator {
      */
     public PhysicalExternalSortOperator(PhysicalOperator operator, PlainSelect plainSelect) {
         super(operator, plainSelect);
-        init();
     }
 
     /**
@@ -54,8 +80,6 @@ public class PhysicalExternalSortOperator extends PhysicalSortOperator {
      */
     public PhysicalExternalSortOperator(SortOperator logSortOp, PhysicalOperator child) {
         super(logSortOp, child);
-        init();
-
     }
 
     /**
@@ -66,105 +90,348 @@ public class PhysicalExternalSortOperator extends PhysicalSortOperator {
      */
     public PhysicalExternalSortOperator(List<OrderByElement> order, PhysicalOperator child) {
         super(order, child);
-        init();
+        this.streamFinalMerge = false;
+    }
+
+    /**
+     * sort the child on the first call, so building the plan reads nothing
+     *
+     * @return false once the sort is closed
+     */
+    private boolean sort() {
+        if (!sorted && !closed) {
+            sorted = true;
+            init();
+        }
+        return !closed;
     }
 
     /**
      * implements external merge sort
-     * write the final sorted tuple list into the temp file named "temp_{id}_{pass}_0"
+     * merge the runs until the last merge is streamed, or into the temp file named "temp_{id}_{pass}_0"
      */
     private void init() {
         new File(Catalog.getInstance().getTempPath()).mkdirs();
-        this.blockSize = Catalog.getInstance().getSortBlockSize();
-        buffer = new ArrayList<>(blockSize - 1);
+        this.blockSize = Math.max(Catalog.getInstance().getSortBlockSize(), 1);
+        // the threads are started by the first tasks, the semaphores bound the tasks in flight
+        int threads = Math.max(Catalog.getInstance().getSortThreadCount(), 1);
+        if (threads > 1) {
+            threadPool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "sort");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
         try {
             firstPass();
             mergeSort();
+            if (streamFinalMerge) {
+                openFinalMerge();
+                return;
+            }
         } catch (Exception e) {
+            if (closed) {
+                deleteTempFiles();
+                return;
+            }
             e.printStackTrace();
+        } finally {
+            if (threadPool != null) {
+                threadPool.shutdown();
+                threadPool = null;
+            }
         }
         finalTemp = getTempFileName(id, prePass, 0);
-        tr = new BinaryTupleReader(finalTemp);
+        tr = new BinaryTupleReader(finalTemp, false);
     }
 
-    private void firstPass() throws IOException {
+    /**
+     * stop a sort closed by another thread
+     */
+    private void checkClosed() {
+        if (closed) {
+            throw new CancellationException("Sort closed");
+        }
+    }
+
+    /**
+     * sort the blocks of the child into runs, the block being read and the blocks being
+     * sorted share the pages of the sort
+     */
+    private void firstPass() throws Exception {
         index = 0;
-        while (true) {
-            int tupleCount = blockSize
-                    * ((Constants.PAGE_SIZE - 2 * Constants.INT_SIZE)
-                    / (schema.size() * Constants.INT_SIZE));
-            List<Tuple> tupleList = new ArrayList<>();
-            for (int i = 0; i < tupleCount; ++i) {
-                Tuple tuple = physChild.getNextTuple();
-                if (tuple == null) break;
-                tupleList.add(tuple);
-            }
-            if (tupleList.size() == 0) {
-                break;
-            }
-            Collections.sort(tupleList, new TupleComparator());
-            TupleWriter tupleWriter = new BinaryTupleWriter(
-                    getTempFileName(id, 0, index), schema.size());
-            index++;
-            for (Tuple tuple : tupleList) {
-                tupleWriter.writeNextTuple(tuple);
+        int sortBlocks = getSortBlocks(blockSize);
+        int tupleCount = blockSize / (sortBlocks + 1)
+                * ((Constants.PAGE_SIZE - 2 * Constants.INT_SIZE)
+                / (schema.size() * Constants.INT_SIZE));
+        Semaphore blocks = sortBlocks > 0 ? new Semaphore(sortBlocks) : null;
+        List<Future<Void>> runs = new ArrayList<>();
+        try {
+            while (true) {
+                checkClosed();
+                List<Tuple> tupleList = new ArrayList<>();
+                for (int i = 0; i < tupleCount; ++i) {
+                    Tuple tuple = physChild.getNextTuple();
+                    if (tuple == null) break;
+                    tupleList.add(tuple.materialize());
+                }
+                if (tupleList.size() == 0) {
+                    break;
+                }
+                String run = getTempFileName(id, 0, index++);
+                getKeyColumns(); // computed here, before the sort threads read them
+                runs.add(submit(blocks, () -> {
+                    sortTuples(tupleList);
+                    TupleWriter tupleWriter = new BinaryTupleWriter(
+                            run, schema.size(), Catalog.getInstance().getExtentSize());
+                    for (Tuple tuple : tupleList) {
+                        tupleWriter.writeNextTuple(tuple);
+                    }
+                    tupleWriter.finish();
+                    return null;
+                }));
             }
-            tupleWriter.finish();
+        } finally {
+            waitFor(runs);
         }
     }
 
+    /**
+     * merge the runs fanIn at a time until the runs left are merged at once, or until
+     * one is left if the last merge is not streamed, the groups of a pass are merged in
+     * parallel, each with its share of the pages
+     */
     private void mergeSort() throws Exception {
         int indexTemp = index;
+        int mergeGroups = getMergeGroups(blockSize, index, streamFinalMerge);
+        mergePages = blockSize / mergeGroups;
+        int fanIn = getMergeFanIn(mergePages);
+        int last = streamFinalMerge ? fanIn : 1;
+        Semaphore blocks = mergeGroups > 1 ? new Semaphore(mergeGroups) : null;
         prePass = 0;
-        while (indexTemp > 1) {
+        while (indexTemp > last) {
             index = 0;
-
-            for (int i = 0; i < indexTemp; i += (blockSize - 1)) {
-                buffer = new ArrayList<>();
-                for (int j = 0; j < blockSize - 1 && (j < indexTemp - i); ++j) {
-                    buffer.add(
-                            new BinaryTupleReader(getTempFileName(id, prePass, i + j))
-                    );
-                }
-                outputBuffer = new BinaryTupleWriter(getTempFileName(id, prePass + 1, index), schema.size());
-                while (buffer.size() > 0) {
-                    // find the minimum tuple
-                    Tuple minimum_tuple = null;
-                    int pos = -1;
-                    for (int j = 0; j < buffer.size(); ++j) {
-                        Tuple tuple = buffer.get(j).readNextTuple();
-                        if (tuple == null) {
-                            buffer.remove(j);
-                            j--;
-                            continue;
-                        }
-                        if (minimum_tuple == null) {
-                            minimum_tuple = tuple;
-                            pos = j;
-                            continue;
-                        }
-                        if (new TupleComparator().compare(minimum_tuple, tuple) == 1) {
-                            minimum_tuple = tuple;
-                            pos = j;
-                        }
-                    }
-
-                    outputBuffer.writeNextTuple(minimum_tuple);
-                    // reset all unused buffer page
-                    for (int j = 0; j < buffer.size(); ++j) {
-                        if (j == pos) {
-                            continue;
-                        }
-                        buffer.get(j).moveBack();
-                    }
+            List<Future<Void>> groups = new ArrayList<>();
+            try {
+                for (int i = 0; i < indexTemp; i += fanIn) {
+                    checkClosed();
+                    int pass = prePass;
+                    int first = i;
+                    int end = Math.min(i + fanIn, indexTemp);
+                    String output = getTempFileName(id, prePass + 1, index++);
+                    groups.add(submit(blocks, () -> {
+                        mergeRuns(pass, first, end, output);
+                        return null;
+                    }));
                 }
-                outputBuffer.finish();
-                index++;
+            } finally {
+                waitFor(groups);
             }
             indexTemp = index;
             deletePrePassExtraTemp(prePass);
             prePass += 1;
         }
+        index = indexTemp;
+    }
+
+    /**
+     * merge the runs [first, end) of a pass into one run, the next tuple of every run
+     * is kept in a heap, so each run is read once
+     */
+    private void mergeRuns(int pass, int first, int end, String output) throws Exception {
+        PriorityQueue<RunHead> heads = openRuns(pass, first, end, mergePages);
+        BinaryTupleWriter outputBuffer = new BinaryTupleWriter(output, schema.size(),
+                Catalog.getInstance().getExtentSize());
+        while (!heads.isEmpty()) {
+            RunHead head = heads.poll();
+            outputBuffer.writeNextTuple(head.tuple);
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        outputBuffer.finish();
+    }
+
+    /**
+     * @param pages pages of memory of the merge, the runs read ahead in what is left of them
+     * @return the heap of the runs [first, end) of a pass not empty, by their next tuple
+     */
+    private PriorityQueue<RunHead> openRuns(int pass, int first, int end, int pages) throws Exception {
+        int readAhead = getRunReadAhead(pages, end - first);
+        TupleComparator comparator = new TupleComparator();
+        PriorityQueue<RunHead> heads = new PriorityQueue<>(Math.max(end - first, 1),
+                (h1, h2) -> comparator.compare(h1.tuple, h2.tuple));
+        for (int i = first; i < end; ++i) {
+            RunHead head = new RunHead(Catalog.getInstance().getSequentialReader(getTempFileName(id, pass, i),
+                    readAhead));
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        return heads;
+    }
+
+    /**
+     * start the streamed merge of the runs of the last pass
+     */
+    private void openFinalMerge() throws Exception {
+        heads = openRuns(prePass, 0, index, blockSize);
+    }
+
+    /**
+     * run the task on the sort threads once one of the blocks is free,
+     * or on the calling thread if there are no blocks to share
+     */
+    private Future<Void> submit(Semaphore blocks, Callable<Void> task) throws Exception {
+        if (blocks == null) {
+            task.call();
+            return CompletableFuture.completedFuture(null);
+        }
+        blocks.acquire();
+        try {
+            return threadPool.submit(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    blocks.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            blocks.release();
+            throw e;
+        }
+    }
+
+    /**
+     * wait for all the tasks, then throw the failure of the first one failed
+     */
+    private static void waitFor(List<Future<Void>> tasks) throws Exception {
+        Exception failure = null;
+        for (Future<Void> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * number of runs merged at once, as many as the sort memory holds one page of
+     * besides the output page, the pages left are read ahead
+     *
+     * @param blockSize pages of memory of the sort
+     * @return fan-in, at least 2
+     */
+    static int getMergeFanIn(int blockSize) {
+        return (int) Math.max(2, Math.min(Integer.MAX_VALUE, getRunsInMemory(blockSize)));
+    }
+
+    /**
+     * @param blockSize pages of memory
+     * @return number of runs the pages hold besides the output page, may be less than 2
+     */
+    private static long getRunsInMemory(int blockSize) {
+        long memory = (long) blockSize * Constants.PAGE_SIZE;
+        int extentSize = Catalog.getInstance().getExtentSize();
+        return (memory - extentSize) / Catalog.getInstance().getSequentialReaderSize(0);
+    }
+
+    /**
+     * extents read ahead of each run of a merge, from the pages the runs leave besides
+     * one page each and the output page, at most the read ahead of the Catalog
+     *
+     * @param blockSize pages of memory of the merge
+     * @param runs      number of runs merged
+     * @return read ahead of a run, 0 to read the runs synchronously
+     */
+    static int getRunReadAhead(int blockSize, int runs) {
+        long memory = (long) blockSize * Constants.PAGE_SIZE;
+        int extentSize = Catalog.getInstance().getExtentSize();
+        long perRun = (memory - extentSize) / Math.max(runs, 1);
+        long readAhead = perRun / extentSize - 1;
+        return (int) Math.max(0, Math.min(Catalog.getInstance().getReadAhead(), readAhead));
+    }
+
+    /**
+     * number of blocks sorted by the sort threads while the calling thread reads the next one,
+     * the calling thread counts as one of the sortThreadCount threads, each block gets
+     * blockSize / (sort blocks + 1) pages, at least MIN_RUN_PAGES, so a small sort memory
+     * writes runs of the whole block size on the calling thread
+     *
+     * @param blockSize pages of memory of the sort
+     * @return sort blocks, 0 to sort every block on the calling thread
+     */
+    static int getSortBlocks(int blockSize) {
+        return Math.max(0, Math.min(Catalog.getInstance().getSortThreadCount() - 1,
+                blockSize / MIN_RUN_PAGES - 1));
+    }
+
+    /**
+     * number of groups of runs merged at once, as many as share the pages of the sort
+     * without a narrower fan-in adding a merge pass
+     *
+     * @param blockSize pages of memory of the sort
+     * @param runs      number of runs of the first pass
+     * @param streamed  true if the last merge is streamed
+     * @return merge groups, 1 to merge every group on the calling thread
+     */
+    static int getMergeGroups(int blockSize, int runs, boolean streamed) {
+        int threads = Math.max(Catalog.getInstance().getSortThreadCount(), 1);
+        int passes = getMergePasses(runs, getMergeFanIn(blockSize), streamed);
+        int groups = 1;
+        while (groups < threads && getRunsInMemory(blockSize / (groups + 1)) >= 2
+                && getMergePasses(runs, getMergeFanIn(blockSize / (groups + 1)), streamed) <= passes) {
+            groups++;
+        }
+        return groups;
+    }
+
+    /**
+     * @param runs     number of runs of the first pass
+     * @param fanIn    runs merged at once
+     * @param streamed true if the last merge is streamed
+     * @return number of merge passes written to files
+     */
+    static int getMergePasses(int runs, int fanIn, boolean streamed) {
+        int last = streamed ? fanIn : 1;
+        int passes = 0;
+        while (runs > last) {
+            runs = (runs + fanIn - 1) / fanIn;
+            passes++;
+        }
+        return passes;
+    }
+
+    /**
+     * a run being merged and its next tuple, a view valid until the run is read again
+     */
+    private static class RunHead {
+        private final PagedTupleReader reader;
+        private Tuple tuple;
+
+        RunHead(PagedTupleReader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * read the next tuple of the run, the run is closed at its end
+         *
+         * @return false at the end of the run
+         */
+        boolean advance() throws Exception {
+            tuple = reader.readNextView();
+            if (tuple == null) {
+                reader.close();
+                return false;
+            }
+            return true;
+        }
     }
 
     private String getTempFileName(String id, int pass, int index) {
@@ -183,12 +450,41 @@ public class PhysicalExternalSortOperator extends PhysicalSortOperator {
     }
 
     /**
-     * read the final sorted temp
+     * delete the runs of the sort
+     */
+    private void deleteTempFiles() {
+        File[] files = new File(Catalog.getInstance().getTempPath()).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith("temp_" + id + '_')) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * read the next tuple of the streamed merge, or of the final sorted temp
      */
     @Override
     public Tuple getNextTuple() {
+        if (!sort()) {
+            return null;
+        }
         try {
-            return tr.readNextTuple();
+            if (heads == null) {
+                return tr.readNextTuple();
+            }
+            RunHead head = heads.poll();
+            if (head == null) {
+                return null;
+            }
+            Tuple tuple = head.tuple.materialize();
+            if (head.advance()) {
+                heads.add(head);
+            }
+            return tuple;
         } catch (Exception e) {
             e.printStackTrace();
             return null;
@@ -197,8 +493,16 @@ public class PhysicalExternalSortOperator extends PhysicalSortOperator {
 
     @Override
     public void reset() {
+        if (!sorted || closed) {
+            return;
+        }
         try {
-            tr.reset();
+            if (heads == null) {
+                tr.reset();
+                return;
+            }
+            closeTupleReader();
+            openFinalMerge();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -214,6 +518,12 @@ public class PhysicalExternalSortOperator extends PhysicalSortOperator {
      */
     @Override
     public void recordTupleReader() {
+        if (!sort()) {
+            return;
+        }
+        if (heads != null) {
+            throw new IllegalStateException("The streamed merge of a sort cannot move back");
+        }
         tr.recordPosition();
     }
 
@@ -222,11 +532,47 @@ public class PhysicalExternalSortOperator extends PhysicalSortOperator {
      */
     @Override
     public void revertToRecord() throws Exception {
+        if (!sort()) {
+            return;
+        }
+        if (heads != null) {
+            throw new IllegalStateException("The streamed merge of a sort cannot move back");
+        }
         tr.revertToPosition();
     }
 
     @Override
     public void closeTupleReader() throws Exception {
-        tr.close();
+        if (!sorted) {
+            return;
+        }
+        if (heads == null) {
+            if (tr != null) {
+                tr.close();
+            }
+            return;
+        }
+        for (RunHead head : heads) {
+            head.reader.close();
+        }
+        heads.clear();
+    }
+
+    /**
+     * close the runs and delete them, then close the child
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            closeTupleReader();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        deleteTempFiles();
+        super.close();
     }
-}
\ No newline at end of file
+}
@@ -1,19 +1,23 @@
 package operator;
 
 import PlanBuilder.PhysicalOperatorVisitor;
-import io.BinaryTupleReader;
 import io.BinaryTupleWriter;
 import io.TupleReader;
 import io.TupleWriter;
 import logical.operator.JoinOperator;
 import model.Tuple;
+import model.TupleHashTable;
+import model.TupleBatch;
 import net.sf.jsqlparser.statement.select.OrderByElement;
 import util.Catalog;
+import util.Constants;
+import util.RingBuffer;
 
 import java.io.File;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * PhysicalHashJoinOperator extended from PhysicalJoinOperator
@@ -22,17 +26,19 @@ import java.util.concurrent.Executors;
  */
 public class PhysicalHashJoinOperator extends PhysicalJoinOperator {
 
-    private final static int THREAD_POOL_SIZE = 3;
+    // seeds of the hash functions partitioning the inputs and building the hash tables
+    private final static int PARTITION_SEED = 0x9747b28c;
+    private final static int TABLE_SEED = 0x5bd1e995;
+    // ints a hash table keeps per row besides the row itself
+    private final static int ROW_OVERHEAD = 5;
+    // deepest level of recursive repartitioning
+    private final static int MAX_DEPTH = 4;
 
-    // first hash function bucket size
-    private final static int BUCKET_SIZE = 5;
-    // second hash function bucket size
-    private final static int INNER_BUCKET_SIZE = 43;
-
-    // joint tuple queue, main thread as consumer
+    // batches of joint tuples, main thread as consumer
     // Task threads as producers
-    Deque<Tuple> queue;
-    private final static int QUEUE_MAX_SIZE = 400;
+    private RingBuffer<TupleBatch> ring;
+    private final static int RING_CAPACITY = 16;
+    private final static int OUTPUT_BATCH_SIZE = 256;
 
     // temp files
     private final String LEFT_BUCKETS_NAME =
@@ -40,148 +46,403 @@ public class PhysicalHashJoinOperator extends PhysicalJoinOperator {
     private final String RIGHT_BUCKETS_NAME =
             Catalog.getInstance().getTempPath() + "hash_bucket_right_" + this.hashCode() + "_";
 
-    // count of finished threads
-    private int finishCount = 0;
-
-    // left and right temp file writers
-    private Map<Integer, TupleWriter> leftBucketWriters;
-    private Map<Integer, TupleWriter> rightBucketWriters;
+    // count of the buckets spilled to files for the threads
+    private int spillCount = 0;
+    // estimated count of tuple of the left side, hashed on the first call
+    private long leftCount;
+    private boolean initialized = false;
+    private volatile boolean closed = false;
+    private ExecutorService threadPool;
+    // threads joining the spilled buckets, each holds the hash table of a task
+    private final int threadCount;
+
+    // number of buckets the inputs are partitioned into
+    private int partitionCount;
+    // bytes of memory for the hash table of one task
+    private long taskMemory;
+    // most buckets to write at once, each bucket writer holds a page
+    private int maxFanOut;
+    // page size of the bucket files, every open bucket writer holds one page
+    private int extentSize;
+    private int leftWidth;
+    // bytes of memory for the resident hash tables of the hybrid hash join
+    private long residentMemory;
+
+    // hash tables of the buckets kept in memory, null for the spilled buckets
+    private TupleHashTable[] residentTables;
+    private TupleWriter[] rightBucketWriters;
+    // true while the right side is streamed against the resident tables
+    private boolean probing;
+    // right tuple being probed and the next matching row of its table
+    private Tuple probeTuple;
+    private TupleHashTable probeTable;
+    private int probeRow = -1;
 
     // index of columns in join condition
-    List<Integer> leftOrder;
-    List<Integer> rightOrder;
+    int[] leftOrder;
+    int[] rightOrder;
 
+    // output batch of the resident buckets
+    private TupleBatch batch;
+    // batch taken from the ring by crossProduction and its next row
+    private TupleBatch current;
+    private int currentRow;
+    // buffer of the joint tuples returned one by one
+    private int[] outputData;
+    private Tuple outputView;
+    // reused tuple to check the join condition on a row of a batch
+    private int[] data;
+    private Tuple row;
 
 
+
+    /**
+     * @param logicalJoinOp
+     * @param opLeft        build side
+     * @param opRight       probe side
+     * @param orders        join columns of the right and the left side
+     * @param leftCount     estimated count of tuple of the left side
+     */
     public PhysicalHashJoinOperator(JoinOperator logicalJoinOp,
                                     PhysicalOperator opLeft,
                                     PhysicalOperator opRight,
-                                    List<List<OrderByElement>> orders) {
+                                    List<List<OrderByElement>> orders,
+                                    long leftCount) {
         super(opLeft, opRight, logicalJoinOp);
-        leftOrder = new ArrayList<>();
-        rightOrder = new ArrayList<>();
-        queue = new LinkedList<>();
-        for (OrderByElement order : orders.get(1)) {
-            leftOrder.add(opLeft.getSchema().get(order.toString()));
+        leftOrder = new int[orders.get(1).size()];
+        rightOrder = new int[orders.get(0).size()];
+        for (int i = 0; i < leftOrder.length; i++) {
+            leftOrder[i] = opLeft.getSchema().get(orders.get(1).get(i).toString());
         }
-        for (OrderByElement order : orders.get(0)) {
-            rightOrder.add(opRight.getSchema().get(order.toString()));
+        for (int i = 0; i < rightOrder.length; i++) {
+            rightOrder[i] = opRight.getSchema().get(orders.get(0).get(i).toString());
         }
-        init();
+        leftWidth = opLeft.getSchema().size();
+        int memory = Math.max(Catalog.getInstance().getHashJoinMemory(), 1);
+        extentSize = Catalog.getInstance().getExtentSize();
+        threadCount = Math.max(Catalog.getInstance().getJoinThreadCount(), 1);
+        taskMemory = (long) memory * Constants.PAGE_SIZE / threadCount;
+        maxFanOut = (int) Math.max(threadCount, (long) memory * Constants.PAGE_SIZE / extentSize / 2);
+        partitionCount = Math.max(threadCount, fanOut(leftCount));
+        residentMemory = Catalog.getInstance().isHybridHashJoin() ? (long) memory * Constants.PAGE_SIZE : 0;
+        this.leftCount = leftCount;
+    }
+
+    /**
+     * @param rows count of tuple of the left side
+     * @return estimated bytes of the hash table of the rows
+     */
+    private long tableBytes(long rows) {
+        return rows * (leftWidth + ROW_OVERHEAD) * Constants.INT_SIZE;
+    }
+
+    /**
+     * @param rows count of tuple of the left side
+     * @return number of buckets so that the hash table of each bucket fits in the memory of a task
+     */
+    private int fanOut(long rows) {
+        long needed = (tableBytes(rows) + taskMemory - 1) / taskMemory;
+        return (int) Math.max(1, Math.min(needed, maxFanOut));
     }
 
     /**
-     * initialization, hashing and write tuple into different bucket files
+     * @param depth level of partitioning, 0 for the first one
+     * @return seed of the partition hash function of the level
      */
-    private void init() {
-        leftBucketWriters = new HashMap<>();
-        rightBucketWriters = new HashMap<>();
-
-        for (int i = 0; i < BUCKET_SIZE; i++) {
-            TupleWriter tupleWriter1 = new BinaryTupleWriter(
-                    LEFT_BUCKETS_NAME + i, opLeft.getSchema().size());
-            leftBucketWriters.put(i, tupleWriter1);
-            TupleWriter tupleWriter2 = new BinaryTupleWriter(
-                    RIGHT_BUCKETS_NAME + i, opRight.getSchema().size());
-            rightBucketWriters.put(i, tupleWriter2);
+    private static int partitionSeed(int depth) {
+        return PARTITION_SEED + depth * 0x61c88647;
+    }
+
+    /**
+     * hash the left side on the first call, so building the plan reads nothing
+     *
+     * @return false once the join is closed
+     */
+    private boolean start() {
+        if (!initialized && !closed) {
+            initialized = true;
+            init(leftCount);
+        }
+        return !closed;
+    }
+
+    /**
+     * initialization, hash the left side into buckets
+     * as many buckets as the memory allows are built into hash tables at once,
+     * the others are written into bucket files
+     *
+     * @param leftCount estimated count of tuple of the left side
+     */
+    private void init(long leftCount) {
+        residentTables = new TupleHashTable[partitionCount];
+        TupleWriter[] leftBucketWriters = new TupleWriter[partitionCount];
+        rightBucketWriters = new TupleWriter[partitionCount];
+
+        long bucketBytes = tableBytes(leftCount) / partitionCount;
+        long resident = 0;
+        if (residentMemory > 0) {
+            resident = bucketBytes == 0 ? partitionCount : residentMemory / bucketBytes;
+        }
+        for (int i = 0; i < partitionCount; i++) {
+            if (i < resident) {
+                residentTables[i] = new TupleHashTable(leftWidth, leftOrder, TABLE_SEED);
+            } else {
+                leftBucketWriters[i] = new BinaryTupleWriter(LEFT_BUCKETS_NAME + i, leftWidth, extentSize);
+            }
         }
 
         // write tuple to buckets
+        int seed = partitionSeed(0);
+        long residentBytes = 0;
         Tuple leftTuple = opLeft.getNextTuple();
-        while (leftTuple != null) {
-            int hash = hashcodeLeft1(leftTuple);
-            leftBucketWriters.get(hash).writeNextTuple(leftTuple);
-//            System.out.println("left " + leftTuple.toString());
+        while (leftTuple != null && !closed) {
+            int bucket = partition(leftTuple, leftOrder, seed, partitionCount);
+            if (residentTables[bucket] != null) {
+                residentTables[bucket].put(leftTuple);
+                residentBytes += tableBytes(1);
+                // the estimate was too low, spill the last resident bucket
+                if (residentBytes > residentMemory) {
+                    residentBytes -= spill(leftBucketWriters);
+                }
+            } else {
+                leftBucketWriters[bucket].writeNextTuple(leftTuple);
+            }
             leftTuple = opLeft.getNextTuple();
         }
-        Tuple rightTuple = opRight.getNextTuple();
-        while (rightTuple != null) {
-            int hash = hashcodeRight1(rightTuple);
-            rightBucketWriters.get(hash).writeNextTuple(rightTuple);
-//            System.out.println("right " + rightTuple.toString());
-            rightTuple = opRight.getNextTuple();
-        }
 
         // close files
-        for (int i = 0; i < BUCKET_SIZE; i++) {
-            leftBucketWriters.get(i).finish();
-            rightBucketWriters.get(i).finish();
+        for (int i = 0; i < partitionCount; i++) {
+            if (leftBucketWriters[i] != null) {
+                leftBucketWriters[i].finish();
+                rightBucketWriters[i] = new BinaryTupleWriter(RIGHT_BUCKETS_NAME + i,
+                        opRight.getSchema().size(), extentSize);
+                spillCount++;
+            }
         }
-
-        startThreads();
+        probing = true;
     }
 
-    private void startThreads() {
-        ExecutorService threadPool = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
-        for (int i = 0; i < BUCKET_SIZE; i++) {
-            threadPool.execute(new Task(i));
+    /**
+     * move the resident bucket with the largest index into its bucket file
+     *
+     * @param leftBucketWriters writers of the spilled buckets, the new writer is put here
+     * @return bytes released
+     */
+    private long spill(TupleWriter[] leftBucketWriters) {
+        int bucket = partitionCount - 1;
+        while (bucket >= 0 && residentTables[bucket] == null) {
+            bucket--;
+        }
+        TupleHashTable table = residentTables[bucket];
+        TupleWriter writer = new BinaryTupleWriter(LEFT_BUCKETS_NAME + bucket, leftWidth, extentSize);
+        int[] data = new int[leftWidth];
+        for (int row = 0; row < table.size(); row++) {
+            table.readRow(row, data, 0);
+            writer.writeNextTuple(new Tuple(data));
         }
+        leftBucketWriters[bucket] = writer;
+        residentTables[bucket] = null;
+        return tableBytes(table.size());
     }
 
-    private int hashcodeLeft1(Tuple tuple) {
-        int sum = 0;
-        for (int index : leftOrder) {
-            sum += tuple.getDataAt(index);
+    /**
+     * stream the right side: probe the resident tables directly,
+     * write the tuples of the spilled buckets into files
+     * once the right side is done, the threads join the spilled buckets
+     *
+     * @return the next joint tuple from the resident buckets, null when the right side is done
+     */
+    private Tuple probeResident() {
+        while (true) {
+            if (probeRow >= 0) {
+                int[] data = getOutputData();
+                probeTable.readRow(probeRow, data, 0);
+                for (int k = 0; k < probeTuple.getDataLength(); k++) {
+                    data[leftWidth + k] = probeTuple.getDataAt(k);
+                }
+                probeRow = probeTable.next(probeRow);
+                return outputView;
+            }
+            probeTuple = opRight.getNextTuple();
+            if (probeTuple == null) {
+                finishProbing();
+                return null;
+            }
+            int bucket = partition(probeTuple, rightOrder, partitionSeed(0), partitionCount);
+            if (residentTables[bucket] != null) {
+                probeTable = residentTables[bucket];
+                probeRow = probeTable.find(probeTuple, rightOrder);
+            } else {
+                rightBucketWriters[bucket].writeNextTuple(probeTuple);
+            }
         }
-        return sum % BUCKET_SIZE;
     }
 
-    private int hashcodeRight1(Tuple tuple) {
-        int sum = 0;
-        for (int index : rightOrder) {
-            sum += tuple.getDataAt(index);
+    /**
+     * release the resident tables and start the threads on the spilled buckets
+     */
+    private void finishProbing() {
+        probing = false;
+        probeTuple = null;
+        probeTable = null;
+        residentTables = null;
+        for (int i = 0; i < partitionCount; i++) {
+            if (rightBucketWriters[i] != null) {
+                rightBucketWriters[i].finish();
+            }
         }
-        return sum % BUCKET_SIZE;
+        startThreads();
     }
 
-    private int hashcodeLeft2(Tuple tuple) {
-        int sum = 0;
-        for (int index : leftOrder) {
-            sum += tuple.getDataAt(index);
+    private void startThreads() {
+        ring = new RingBuffer<>(RING_CAPACITY, spillCount);
+        threadPool = Executors.newFixedThreadPool(threadCount);
+        for (int i = 0; i < partitionCount; i++) {
+            if (rightBucketWriters[i] != null) {
+                threadPool.execute(new Task(i));
+            }
         }
-        return sum % INNER_BUCKET_SIZE;
+        // the threads exit once the submitted tasks are done
+        threadPool.shutdown();
     }
 
-    private int hashcodeRight2(Tuple tuple) {
-        int sum = 0;
-        for (int index : rightOrder) {
-            sum += tuple.getDataAt(index);
-        }
-        return sum % INNER_BUCKET_SIZE;
+    /**
+     * @param tuple
+     * @param columns key columns of the tuple
+     * @param seed    seed of the level of partitioning
+     * @param fanOut  number of buckets
+     * @return the bucket of the tuple
+     */
+    private static int partition(Tuple tuple, int[] columns, int seed, int fanOut) {
+        return Math.floorMod(TupleHashTable.hash(tuple, columns, seed), fanOut);
     }
 
     /**
-     * cross production, taking a tuple from the queue
+     * cross production, taking a tuple from the resident buckets or from the ring
      *
      * @return joint tuple
      */
     @Override
     protected Tuple crossProduction() {
-        Tuple tuple = null;
-        try {
-            synchronized (queue) {
-                if (queue.isEmpty() && finishCount == BUCKET_SIZE) {
-                    return null;
-                }
-//                System.out.println("consume: " + queue.size());
-//                System.out.println("count " + finishCount);
-                // if queue is empty, wait
-                if (queue.isEmpty()) {
+        if (!start()) {
+            return null;
+        }
+        if (probing) {
+            Tuple tuple = probeResident();
+            if (tuple != null) {
+                return tuple;
+            }
+        }
+        while (current == null || currentRow >= current.getSize()) {
+            current = ring.take();
+            currentRow = 0;
+            // all the threads have finished
+            if (current == null) {
+                return null;
+            }
+        }
+        current.readRow(currentRow++, getOutputData());
+        return outputView;
+    }
+
+    /**
+     * @return the buffer of the output view, which every joint tuple reuses
+     */
+    private int[] getOutputData() {
+        if (outputView == null) {
+            outputData = new int[schema.size()];
+            outputView = Tuple.view(outputData, 0, outputData.length);
+        }
+        return outputData;
+    }
 
-                    queue.wait();
+    /**
+     * return the batches of the threads as they are, filtered by the join condition
+     *
+     * @return the next batch of joint tuples
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        if (!start()) {
+            return null;
+        }
+        if (probing) {
+            if (batch == null) {
+                batch = new TupleBatch(schema.size(), Constants.BATCH_SIZE);
+            }
+            batch.clear();
+            while (probing && !batch.isFull()) {
+                Tuple tuple = probeResident();
+                if (tuple != null && satisfyJoinCondition(tuple)) {
+                    batch.addTuple(tuple);
                 }
-                tuple = queue.poll();
-                if (queue.size() == 0) {
-                    queue.notify();
+            }
+            if (!batch.isEmpty()) {
+                return batch;
+            }
+        }
+        if (data == null) {
+            data = new int[schema.size()];
+            row = new Tuple(data);
+        }
+        TupleBatch next;
+        while ((next = ring.take()) != null) {
+            int size = 0;
+            for (int i = 0; i < next.getSize(); i++) {
+                next.readRow(i, data);
+                if (satisfyJoinCondition(row)) {
+                    next.copyRow(i, size++);
                 }
             }
+            next.setSize(size);
+            if (size > 0) {
+                return next;
+            }
+        }
+        return null;
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * stop the threads, then delete the bucket files and close the children
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        probing = false;
+        residentTables = null;
+        if (ring != null) {
+            ring.close();
         }
-        finally {
-            return tuple;
+        if (threadPool != null) {
+            // the tasks stop at their next tuple
+            threadPool.shutdownNow();
+            try {
+                threadPool.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (rightBucketWriters != null) {
+            // the right side was not done
+            for (TupleWriter writer : rightBucketWriters) {
+                if (writer != null) {
+                    writer.finish();
+                }
+            }
         }
+        String left = new File(LEFT_BUCKETS_NAME).getName();
+        String right = new File(RIGHT_BUCKETS_NAME).getName();
+        File[] files = new File(Catalog.getInstance().getTempPath()).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(left) || file.getName().startsWith(right)) {
+                    file.delete();
+                }
+            }
+        }
+        super.close();
     }
 
     @Override
@@ -193,93 +454,166 @@ public class PhysicalHashJoinOperator extends PhysicalJoinOperator {
     /**
      * Thread class
      * each Task thread operates one particular bucket
-     * join the tuple from left and right buckets with same hashcode1
+     * the left bucket is built into a hash table, the right bucket probes it
+     * a bucket too large for the memory of the task is partitioned again with another seed,
+     * one that can not be split is built and probed in chunks
      */
     class Task implements Runnable {
 
         private int index;
-        private TupleReader innerReader;
-        private TupleReader outerReader;
-        private Object lock = new Object();
-
-        // hash table for outer bucket1
-        Map<Integer, List<Tuple>> buckets;
+        // batch of joint tuples being filled
+        private TupleBatch output;
 
         public Task(int i) {
             index = i;
-            buckets = new HashMap<>();
-            innerReader = new BinaryTupleReader(LEFT_BUCKETS_NAME + index);
-            outerReader = new BinaryTupleReader(RIGHT_BUCKETS_NAME + index);
+        }
 
-            for (int j = 0; j < INNER_BUCKET_SIZE; j++) {
-                buckets.put(j, new ArrayList<>());
-            }
+        @Override
+        public void run() {
             try {
-                Tuple tuple = innerReader.readNextTuple();
-                while (tuple != null) {
-                    buckets.get(hashcodeLeft2(tuple)).add(tuple);
-                    tuple = innerReader.readNextTuple();
+                join(LEFT_BUCKETS_NAME + index, RIGHT_BUCKETS_NAME + index, 0);
+            }
+            catch (Exception e) {
+                if (!closed) {
+                    e.printStackTrace();
+                }
+            }
+            finally {
+                if (output != null && !output.isEmpty()) {
+                    ring.put(output);
                 }
-                innerReader.close();
+                ring.producerDone();
             }
+        }
 
-            catch (Exception e) {
-                e.printStackTrace();
+        /**
+         * join a pair of buckets, the bucket files are deleted afterwards
+         *
+         * @param leftName  left bucket file
+         * @param rightName right bucket file
+         * @param depth     level of partitioning of the buckets
+         */
+        private void join(String leftName, String rightName, int depth) throws Exception {
+            long rows = new File(leftName).length() / (Constants.INT_SIZE * Math.max(leftWidth, 1));
+            if (depth < MAX_DEPTH && tableBytes(rows) > taskMemory) {
+                int fanOut = Math.max(2, fanOut(rows));
+                if (repartition(leftName, rightName, depth + 1, fanOut)) {
+                    new File(leftName).delete();
+                    new File(rightName).delete();
+                    for (int i = 0; i < fanOut && !closed; i++) {
+                        join(leftName + "_" + i, rightName + "_" + i, depth + 1);
+                    }
+                    return;
+                }
             }
+            buildAndProbe(leftName, rightName);
+            new File(leftName).delete();
+            new File(rightName).delete();
         }
 
-        @Override
-        public void run() {
-            try {
-                Tuple rightTuple = outerReader.readNextTuple();
-                while (rightTuple != null) {
-                    int hash = hashcodeRight2(rightTuple);
-                    for (Tuple leftTuple : buckets.get(hash)) {
-
-                        // tuple is left tuple, outertuple is right tuple
-                        boolean e = true;
-//                        System.out.println("task " + index + ": " + queue.size());
-
-                        // check if two tuple satisfy join condition
-                        for (int k = 0; k < leftOrder.size(); k++) {
-                            if (leftTuple.getDataAt(leftOrder.get(k)) != rightTuple.getDataAt(rightOrder.get(k))) {
-                                e = false;
-                                break;
-                            }
-                        }
-                        if (!e) {
-                            continue;
-                        }
-
-                        Tuple newTuple = joinTuple(leftTuple, rightTuple);
-
-                        // wait if the queue is full
-                        synchronized (queue) {
-                            while (queue.size() > QUEUE_MAX_SIZE) {
-                                queue.wait();
-                            }
-                            queue.offer(newTuple);
-                            queue.notify();
-                        }
+        /**
+         * split a pair of buckets into sub buckets with the seed of the next level
+         *
+         * @return false if the left bucket can not be split, e.g. all its tuples have the same key
+         */
+        private boolean repartition(String leftName, String rightName, int depth, int fanOut) throws Exception {
+            int seed = partitionSeed(depth);
+            int[] counts = new int[fanOut];
+            int total = 0;
+            TupleWriter[] writers = new TupleWriter[fanOut];
+            for (int i = 0; i < fanOut; i++) {
+                writers[i] = new BinaryTupleWriter(leftName + "_" + i, leftWidth, extentSize);
+            }
+            TupleReader reader = Catalog.getInstance().getSequentialReader(leftName);
+            Tuple tuple = reader.readNextTuple();
+            while (tuple != null && !closed) {
+                int bucket = partition(tuple, leftOrder, seed, fanOut);
+                writers[bucket].writeNextTuple(tuple);
+                counts[bucket]++;
+                total++;
+                tuple = reader.readNextTuple();
+            }
+            reader.close();
+            for (int i = 0; i < fanOut; i++) {
+                writers[i].finish();
+            }
+            for (int i = 0; i < fanOut; i++) {
+                if (counts[i] == total) {
+                    for (int j = 0; j < fanOut; j++) {
+                        new File(leftName + "_" + j).delete();
                     }
-                    rightTuple = outerReader.readNextTuple();
+                    return false;
                 }
-                outerReader.close();
             }
-            catch (Exception e) {
-                e.printStackTrace();
+
+            for (int i = 0; i < fanOut; i++) {
+                writers[i] = new BinaryTupleWriter(rightName + "_" + i,
+                        opRight.getSchema().size(), extentSize);
             }
-            finally {
-                synchronized (queue) {
-//                    System.out.println("" + index + " finished");
-                    File file1 = new File(LEFT_BUCKETS_NAME + index);
-                    File file2 = new File(RIGHT_BUCKETS_NAME + index);
-                    file1.delete();
-                    file2.delete();
-                    finishCount++;
-                    queue.notify();
+            reader = Catalog.getInstance().getSequentialReader(rightName);
+            tuple = reader.readNextTuple();
+            while (tuple != null && !closed) {
+                writers[partition(tuple, rightOrder, seed, fanOut)].writeNextTuple(tuple);
+                tuple = reader.readNextTuple();
+            }
+            reader.close();
+            for (int i = 0; i < fanOut; i++) {
+                writers[i].finish();
+            }
+            return true;
+        }
+
+        /**
+         * build the hash table of the left bucket and probe it with the right bucket
+         * a left bucket too large for the memory of the task, e.g. a single hot key,
+         * is built in chunks that fit, and the right bucket is read again for each chunk
+         */
+        private void buildAndProbe(String leftName, String rightName) throws Exception {
+            long chunkRows = Math.max(1, taskMemory / ((leftWidth + ROW_OVERHEAD) * Constants.INT_SIZE));
+            TupleHashTable table = new TupleHashTable(leftWidth, leftOrder, TABLE_SEED);
+            TupleReader innerReader = Catalog.getInstance().getSequentialReader(leftName);
+            Tuple tuple = innerReader.readNextTuple();
+            while (tuple != null && !closed) {
+                table.put(tuple);
+                tuple = innerReader.readNextTuple();
+                if (tuple == null || table.size() == chunkRows) {
+                    probe(table, rightName);
+                    table.clear();
+                }
+            }
+            innerReader.close();
+        }
+
+        /**
+         * probe the hash table of a chunk of the left bucket with the whole right bucket
+         */
+        private void probe(TupleHashTable table, String rightName) throws Exception {
+            TupleReader outerReader = Catalog.getInstance().getSequentialReader(rightName);
+            Tuple rightTuple = outerReader.readNextTuple();
+            while (rightTuple != null && !closed) {
+                // only the rows with equal keys are visited
+                for (int row = table.find(rightTuple, rightOrder); row >= 0; row = table.next(row)) {
+                    if (output == null) {
+                        output = new TupleBatch(leftWidth + rightTuple.getDataLength(), OUTPUT_BATCH_SIZE);
+                    }
+                    int[][] columns = output.getColumns();
+                    int size = output.getSize();
+                    for (int k = 0; k < leftWidth; k++) {
+                        columns[k][size] = table.getDataAt(row, k);
+                    }
+                    for (int k = 0; k < rightTuple.getDataLength(); k++) {
+                        columns[leftWidth + k][size] = rightTuple.getDataAt(k);
+                    }
+                    output.setSize(size + 1);
+                    // hand the full batch over, wait if the ring is full
+                    if (output.isFull()) {
+                        ring.put(output);
+                        output = null;
+                    }
                 }
+                rightTuple = outerReader.readNextTuple();
             }
+            outerReader.close();
         }
     }
 
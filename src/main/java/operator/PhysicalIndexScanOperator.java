@@ -15,6 +15,7 @@ import util.*;
  */
 public class PhysicalIndexScanOperator extends PhysicalScanOperator {
     private Expression selectCondition;
+    private TuplePredicate selectPredicate;
     private Deserializer deserializer;
     private IndexConfig indexConfig;
     private int attr;
@@ -34,12 +35,18 @@ public class PhysicalIndexScanOperator extends PhysicalScanOperator {
         super((ScanOperator)logSelectOp.getChildren().get(0));
         this.indexConfig = Catalog.getInstance().getIndexConfig(schema);
         this.selectCondition = logSelectOp.getExpression();
+        this.selectPredicate = ExpressionCompiler.compile(selectCondition, schema);
 
         String indexFile = indexConfig.indexFile;
         try {
             this.deserializer = new Deserializer(new File(indexFile), lowKey, highKey);
         
-            this.attr = Catalog.getInstance().getTableSchema(indexConfig.tableName).get(indexConfig.schemaName);
+            // the scan may keep only some columns, find the key by name
+            for (Map.Entry<String, Integer> entry : schema.entrySet()) {
+                if (entry.getKey().split("\\.")[1].equals(indexConfig.columnName)) {
+                    this.attr = entry.getValue();
+                }
+            }
             this.highKey = highKey;
             this.lowKey = lowKey;
 
@@ -59,9 +66,7 @@ public class PhysicalIndexScanOperator extends PhysicalScanOperator {
 
         Tuple next = nextTuple();
         while (next != null) {
-            SelectExpressionVisitor sv = new SelectExpressionVisitor(next, this.getSchema());
-            selectCondition.accept(sv);
-            if (sv.getResult()) {
+            if (selectPredicate.test(next)) {
                 break;
             }
             next = nextTuple();
@@ -69,14 +74,22 @@ public class PhysicalIndexScanOperator extends PhysicalScanOperator {
         return next;
     }
 
+    /**
+     * index scan filters the tuples one by one, use the row adapter
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        return getNextBatchFromTuples();
+    }
+
     // if unclustered, get the next tuple from data entry
     private Tuple getNextTupleFromIndex() {
         if (tempRid == null) {
             return null;
         }
         try {
-            binaryTupleReader.reset(tempRid.getPageId(), tempRid.getTupleId());
-            Tuple tuple = binaryTupleReader.readNextTuple();
+            tupleReader.reset(tempRid.getPageId(), tempRid.getTupleId());
+            Tuple tuple = tupleReader.readNextView();
             tempRid = deserializer.getNextRid();
             return tuple;
         } catch (Exception e) {
@@ -115,10 +128,25 @@ public class PhysicalIndexScanOperator extends PhysicalScanOperator {
         return indexConfig;
     }
 
+    /**
+     * close the index file and the reader of the table
+     */
+    @Override
+    public void close() {
+        try {
+            if (deserializer != null) {
+                deserializer.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        super.close();
+    }
+
     @Override
     public void reset(){
         try {
-            binaryTupleReader.reset();
+            tupleReader.reset();
             deserializer.reset();
             this.startRid = deserializer.getNextRid();
         } catch (Exception e) {
@@ -5,8 +5,9 @@ import model.Tuple;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import util.Catalog;
+import util.ExpressionCompiler;
 import util.JoinExpressionVisitor;
-import util.SelectExpressionVisitor;
+import util.TuplePredicate;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -26,6 +27,11 @@ public abstract class PhysicalJoinOperator extends PhysicalOperator {
     protected Map<String, Integer> schema;
     protected Tuple outerTuple;
     protected Tuple innerTuple;
+    // join condition compiled against the schema, built on first use
+    private TuplePredicate joinPredicate;
+    // reused by every joined tuple
+    private int[] outputData;
+    private Tuple output;
 
     /**
      * Init the schema of PhysicalJoinOperator
@@ -107,9 +113,7 @@ public abstract class PhysicalJoinOperator extends PhysicalOperator {
         }
 
         while (next != null) {
-            SelectExpressionVisitor sv = new SelectExpressionVisitor(next, this.getSchema());
-            joinCondition.accept(sv);
-            if (sv.getResult()) {
+            if (satisfyJoinCondition(next)) {
                 break;
             }
             next = crossProduction();
@@ -117,6 +121,29 @@ public abstract class PhysicalJoinOperator extends PhysicalOperator {
         return next;
     }
 
+    /**
+     * check a joined tuple against the join condition
+     *
+     * @param tuple joined tuple
+     * @return true if there is no join condition or the tuple satisfies it
+     */
+    protected boolean satisfyJoinCondition(Tuple tuple) {
+        if (joinCondition == null) {
+            return true;
+        }
+        return getJoinPredicate().test(tuple);
+    }
+
+    /**
+     * @return the join condition compiled against the schema, null if there is no join condition
+     */
+    protected TuplePredicate getJoinPredicate() {
+        if (joinCondition != null && joinPredicate == null) {
+            joinPredicate = ExpressionCompiler.compile(joinCondition, this.getSchema());
+        }
+        return joinPredicate;
+    }
+
     /**
      * reset the operator.
      */
@@ -151,19 +178,27 @@ public abstract class PhysicalJoinOperator extends PhysicalOperator {
      */
     protected abstract Tuple crossProduction();
 
+    /**
+     * concatenate two tuples into the output buffer of the join
+     *
+     * @return a view over the output buffer, valid until the next joined tuple
+     */
     protected Tuple joinTuple(Tuple outerTuple, Tuple innerTuple) {
         if (outerTuple == null || innerTuple == null) {
             return null;
         }
-        int[] newTupleData = new int[outerTuple.getDataLength() + innerTuple.getDataLength()];
+        int length = outerTuple.getDataLength() + innerTuple.getDataLength();
+        if (output == null || output.getDataLength() != length) {
+            outputData = new int[length];
+            output = Tuple.view(outputData, 0, length);
+        }
         for (int i = 0; i < outerTuple.getDataLength(); i++) {
-            newTupleData[i] = outerTuple.getDataAt(i);
+            outputData[i] = outerTuple.getDataAt(i);
         }
         for (int i = 0; i < innerTuple.getDataLength(); i++) {
-            newTupleData[i + outerTuple.getDataLength()] = innerTuple.getDataAt(i);
+            outputData[i + outerTuple.getDataLength()] = innerTuple.getDataAt(i);
         }
-        Tuple tuple = new Tuple(newTupleData);
-        return tuple;
+        return output;
     }
 
     public Expression getJoinCondition() {
@@ -7,7 +7,6 @@ import net.sf.jsqlparser.statement.select.OrderByElement;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -19,27 +18,20 @@ public class PhysicalMemorySortOperator extends PhysicalSortOperator {
     // stores tuples
     private int currentIndex;
     private int recordIndex;
+    // operator whose tuples are sorted, read on the first call
+    private PhysicalOperator source;
+    private boolean sorted = false;
 
     /**
      * Constructor
-     * read all tuples, store them in a list and sort them
+     * the tuples are read, stored in a list and sorted on the first call
      *
      * @param operator
      * @param plainSelect
      */
     public PhysicalMemorySortOperator(PhysicalOperator operator, PlainSelect plainSelect) {
         super(operator, plainSelect);
-
-        // initialize the list
-        currentIndex = 0;
-        Tuple tuple = operator.getNextTuple();
-        while (tuple != null) {
-            tupleList.add(tuple);
-            tuple = operator.getNextTuple();
-        }
-
-        Collections.sort(tupleList, new TupleComparator());
-        operator.reset();
+        this.source = operator;
     }
 
     /**
@@ -50,18 +42,8 @@ public class PhysicalMemorySortOperator extends PhysicalSortOperator {
      */
     public PhysicalMemorySortOperator(SortOperator logSortOp, PhysicalOperator child) {
         super(logSortOp, child);
-
         tupleList = new ArrayList<>();
-        // initialize the list
-        currentIndex = 0;
-        Tuple tuple = physChild.getNextTuple();
-        while (tuple != null) {
-            tupleList.add(tuple);
-            tuple = physChild.getNextTuple();
-        }
-
-        Collections.sort(tupleList, new TupleComparator());
-        physChild.reset();
+        this.source = physChild;
     }
 
     /**
@@ -72,18 +54,27 @@ public class PhysicalMemorySortOperator extends PhysicalSortOperator {
      */
     public PhysicalMemorySortOperator(List<OrderByElement> order, PhysicalOperator child) {
         super(order, child);
-
         tupleList = new ArrayList<>();
-        // initialize the list
+        this.source = physChild;
+    }
+
+    /**
+     * read all tuples, store them in a list and sort them
+     */
+    private void sort() {
+        if (sorted) {
+            return;
+        }
+        sorted = true;
         currentIndex = 0;
-        Tuple tuple = physChild.getNextTuple();
+        Tuple tuple = source.getNextTuple();
         while (tuple != null) {
-            tupleList.add(tuple);
-            tuple = physChild.getNextTuple();
+            tupleList.add(tuple.materialize());
+            tuple = source.getNextTuple();
         }
 
-        Collections.sort(tupleList, new TupleComparator());
-        physChild.reset();
+        sortTuples(tupleList);
+        source.reset();
     }
 
     /**
@@ -91,6 +82,7 @@ public class PhysicalMemorySortOperator extends PhysicalSortOperator {
      */
     @Override
     public Tuple getNextTuple() {
+        sort();
         Tuple tuple = null;
         if (currentIndex < tupleList.size()) {
             tuple = tupleList.get(currentIndex);
@@ -100,6 +92,17 @@ public class PhysicalMemorySortOperator extends PhysicalSortOperator {
 
     }
 
+    /**
+     * For distinct operator
+     *
+     * @return sorted Tuple list
+     */
+    @Override
+    public List<Tuple> getTupleList() {
+        sort();
+        return tupleList;
+    }
+
     /**
      * reset the operator.
      */
@@ -118,6 +121,7 @@ public class PhysicalMemorySortOperator extends PhysicalSortOperator {
      */
     @Override
     public void recordTupleReader() {
+        sort();
         this.recordIndex = currentIndex;
     }
 
@@ -133,4 +137,14 @@ public class PhysicalMemorySortOperator extends PhysicalSortOperator {
     public void closeTupleReader() {
         tupleList.clear();
     }
+
+    /**
+     * drop the tuples, then close the child
+     */
+    @Override
+    public void close() {
+        sorted = true;
+        tupleList.clear();
+        super.close();
+    }
 }
@@ -4,7 +4,9 @@ import PlanBuilder.PhysicalOperatorVisitor;
 import io.BinaryTupleWriter;
 import io.TupleWriter;
 import model.Tuple;
+import model.TupleBatch;
 import util.Catalog;
+import util.Constants;
 
 import java.util.HashSet;
 import java.util.List;
@@ -17,6 +19,9 @@ import java.util.Set;
  */
 public abstract class PhysicalOperator {
 
+    // batch reused by the row adapter of getNextBatch
+    private TupleBatch rowBatch;
+
     /**
      * get the next tuple of the operator's output
      * return null if the operator has no more output
@@ -25,6 +30,35 @@ public abstract class PhysicalOperator {
      */
     public abstract Tuple getNextTuple();
 
+    /**
+     * get the next batch of the operator's output, up to Constants.BATCH_SIZE rows
+     * return null if the operator has no more output
+     * the batch is only valid until the next call, operators reuse it
+     * operators without a native implementation fall back to getNextTuple
+     *
+     * @return the next batch of the operator's output
+     */
+    public TupleBatch getNextBatch() {
+        return getNextBatchFromTuples();
+    }
+
+    /**
+     * row adapter, fill a batch by calling getNextTuple
+     *
+     * @return the next batch, null if there is no more tuple
+     */
+    protected final TupleBatch getNextBatchFromTuples() {
+        if (rowBatch == null) {
+            rowBatch = new TupleBatch(getSchema().size(), Constants.BATCH_SIZE);
+        }
+        rowBatch.clear();
+        Tuple tuple;
+        while (!rowBatch.isFull() && (tuple = getNextTuple()) != null) {
+            rowBatch.addTuple(tuple);
+        }
+        return rowBatch.isEmpty() ? null : rowBatch;
+    }
+
     /**
      * reset the operator's state and start returning its output again from the
      * beginning
@@ -40,17 +74,79 @@ public abstract class PhysicalOperator {
 
     public abstract void accept(PhysicalOperatorVisitor phOpVisitor, int level);
 
+    /**
+     * stop the operator and release what it holds: its readers, threads and temp
+     * files, then close its children. The operator is not read after, the
+     * operators doing blocking work stop it at their next tuple, so a query
+     * abandoned in the middle is cancelled by closing its root.
+     * Closing twice does nothing.
+     */
+    public void close() {
+        List<PhysicalOperator> children = getChildren();
+        if (children == null) {
+            return;
+        }
+        for (PhysicalOperator child : children) {
+            if (child != null) {
+                child.close();
+            }
+        }
+    }
+
+    /**
+     * write the output of the operator, then close it
+     *
+     * @param i index of the query
+     */
     public void dump(int i) {
         String path = Catalog.getInstance().getOutputPath() + i;
         TupleWriter tupleWriter = new BinaryTupleWriter(path, getSchema().size());
-        Tuple tuple = getNextTuple();
-        //System.out.println("operator schema:" + getSchema());
-        while (tuple != null) {
-            tupleWriter.writeNextTuple(reorderTuple(tuple));
-            tuple = getNextTuple();
+        try {
+            int[] order = getOutputOrder();
+            int[] data = new int[order.length];
+            Tuple tuple = new Tuple(data);
+            TupleBatch batch = getNextBatch();
+            //System.out.println("operator schema:" + getSchema());
+            while (batch != null) {
+                for (int row = 0; row < batch.getSize(); row++) {
+                    for (int j = 0; j < order.length; j++) {
+                        data[j] = batch.getDataAt(row, order[j]);
+                    }
+                    // the writer copies the data, so the tuple is reused
+                    tupleWriter.writeNextTuple(tuple);
+                }
+                batch = getNextBatch();
+            }
+        } finally {
+            // finish
+            tupleWriter.finish();
+            close();
+        }
+    }
+
+    /**
+     * the column indexes of the output tuple, in the order of reorderTuple
+     *
+     * @return index in the operator's tuple of each output column
+     */
+    private int[] getOutputOrder() {
+        int[] order = new int[getSchema().size()];
+        Set<String> attributeSet = new HashSet<>();
+        int ind = 0;
+        for (String attribute : Catalog.getInstance().getAttributeOrder()) {
+            attributeSet.add(attribute);
+            if (getSchema().containsKey(attribute)) {
+                order[ind] = getSchema().get(attribute);
+                ind++;
+            }
+        }
+        for (String att : getSchema().keySet()) {
+            if (!attributeSet.contains(att)) {
+                order[ind] = getSchema().get(att);
+                ind++;
+            }
         }
-        // finish
-        tupleWriter.finish();
+        return order;
     }
 
     public Tuple reorderTuple(Tuple tuple) {
@@ -1,92 +1,255 @@
-//package operator;
-//
-//import PlanBuilder.PhysicalOperatorVisitor;
-//import logical.operator.JoinOperator;
-//import model.Block;
-//import model.Tuple;
-//import net.sf.jsqlparser.statement.select.PlainSelect;
-//
-///**
-// * JoinOperator
-// * it will inherit two tuple from two operators
-// * then execute cross production of the two tuples
-// */
-//public class PhysicalParallelBlockJoinOperator extends PhysicalJoinOperator {
-//    Block block;
-//
-//    /**
-//     * Init the schema of JoinOperator
-//     *
-//     * @param opLeft      last operator of outer tuple
-//     * @param opRight     last operator of inner tuple
-//     * @param plainSelect unused temporally
-//     */
-//    public PhysicalParallelBlockJoinOperator(PhysicalOperator opLeft, PhysicalOperator opRight, PlainSelect plainSelect, int blockSize) {
-//        super(opLeft, opRight, plainSelect);
-//        this.block = new Block(blockSize, opLeft.getSchema().size());
-//    }
-//
-//    public PhysicalParallelBlockJoinOperator(JoinOperator logicalJoinOp, PhysicalOperator leftChild, PhysicalOperator rightChild, int blockSize) {
-//        super(logicalJoinOp, leftChild, rightChild);
-//        this.block = new Block(blockSize, opLeft.getSchema().size());
-//    }
-//
-//    /**
-//     * implements block join
-//     *
-//     * @return the next joined tuple
-//     */
-//    @Override
-//    protected Tuple crossProduction() {
-//        // import outer pages into the block
-//        if (block.isAllNull()) {
-//            loadOuterTupleIntoBlock();
-//            // all outer pages are read
-//            if (block.isAllNull()) {
-//                return null;
-//            }
-//        }
-//
-//        if (outerTuple == null && innerTuple == null) {
-//            outerTuple = block.readNextTuple();
-//            innerTuple = opRight.getNextTuple();
-//        } else {
-//            outerTuple = block.readNextTuple();
-//            if (outerTuple == null) {
-//                block.reset();
-//                innerTuple = opRight.getNextTuple();
-//                outerTuple = block.readNextTuple();
-//            }
-//        }
-//        if (innerTuple == null) {
-//            block.clearData();
-//            loadOuterTupleIntoBlock();
-//            if (block.isAllNull()) {
-//                return null;
-//            }
-//            outerTuple = block.readNextTuple();
-//            opRight.reset();
-//            innerTuple = opRight.getNextTuple();
-//        }
-//        if (outerTuple == null || innerTuple == null) {
-//            return null;
-//        }
-//
-//        // Concentrate Tuple
-//        return joinTuple(outerTuple, innerTuple);
-//    }
-//
-//    private void loadOuterTupleIntoBlock() {
-//        Tuple leftTuple;
-//        while ((leftTuple = opLeft.getNextTuple()) != null) {
-//            if (!block.setNextTuple(leftTuple)) {
-//                break;
-//            }
-//        }
-//    }
-//
-//    @Override
-//    public void accept(PhysicalOperatorVisitor phOpVisitor, int level) {
-//        phOpVisitor.visit(this, level);
-//    }
-//}
\ No newline at end of file
+package operator;
+
+import PlanBuilder.PhysicalOperatorVisitor;
+import logical.operator.JoinOperator;
+import model.Block;
+import model.Tuple;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import util.Constants;
+import util.TuplePredicate;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel block nested loop join
+ * each round loads one outer block per thread and scans the inner relation once,
+ * the pages of the block size are split across the blocks of the threads,
+ * the inner tuples are read a page at a time and every block is joined with
+ * the page by its own thread.
+ *
+ * The results of a page are returned block by block, so the output order does
+ * not depend on the scheduling of the threads.
+ */
+public class PhysicalParallelBlockJoinOperator extends PhysicalJoinOperator {
+    private Block[] blocks;
+    // tuples of the loaded blocks
+    private List<List<Tuple>> outerTuples = new ArrayList<>();
+    private int threadCount;
+    // join condition compiled once by the consumer, shared by the threads
+    private TuplePredicate predicate;
+    private ExecutorService threadPool;
+    private boolean started = false;
+    private boolean finished = false;
+
+    // results of the current inner page, in the order of the blocks
+    private Queue<Future<List<Tuple>>> pending = new LinkedList<>();
+    private List<Tuple> current;
+    private int currentIndex;
+
+    /**
+     * Init the schema of JoinOperator
+     *
+     * @param opLeft      last operator of outer tuple
+     * @param opRight     last operator of inner tuple
+     * @param plainSelect unused temporally
+     * @param blockSize   pages of all the outer blocks
+     * @param threadCount most threads, one outer block of at least a page each
+     */
+    public PhysicalParallelBlockJoinOperator(PhysicalOperator opLeft, PhysicalOperator opRight, PlainSelect plainSelect,
+                                             int blockSize, int threadCount) {
+        super(opLeft, opRight, plainSelect);
+        initBlocks(blockSize, threadCount);
+    }
+
+    public PhysicalParallelBlockJoinOperator(JoinOperator logicalJoinOp, PhysicalOperator leftChild,
+                                             PhysicalOperator rightChild, int blockSize, int threadCount) {
+        super(logicalJoinOp, leftChild, rightChild);
+        initBlocks(blockSize, threadCount);
+    }
+
+    private void initBlocks(int blockSize, int threadCount) {
+        blockSize = Math.max(blockSize, 1);
+        this.threadCount = Math.max(Math.min(threadCount, blockSize), 1);
+        this.blocks = new Block[this.threadCount];
+        for (int i = 0; i < this.threadCount; i++) {
+            blocks[i] = new Block(blockSize / this.threadCount, opLeft.getSchema().size());
+        }
+    }
+
+    /**
+     * implements block join
+     *
+     * @return the next joined tuple
+     */
+    @Override
+    protected Tuple crossProduction() {
+        if (finished) {
+            return null;
+        }
+        if (!started) {
+            started = true;
+            predicate = getJoinPredicate();
+            if (!loadOuterBlocks()) {
+                finish();
+                return null;
+            }
+        }
+        try {
+            while (true) {
+                if (current != null && currentIndex < current.size()) {
+                    return current.get(currentIndex++);
+                }
+                if (!pending.isEmpty()) {
+                    current = pending.poll().get();
+                    currentIndex = 0;
+                    continue;
+                }
+                List<Tuple> innerPage = readInnerPage();
+                if (innerPage.isEmpty()) {
+                    // the inner relation is done for these blocks, start the next round
+                    if (!loadOuterBlocks()) {
+                        finish();
+                        return null;
+                    }
+                    opRight.reset();
+                    continue;
+                }
+                for (List<Tuple> outer : outerTuples) {
+                    pending.add(threadPool.submit(new Task(outer, innerPage, predicate)));
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            finish();
+            return null;
+        }
+    }
+
+    /**
+     * the join condition is checked by the threads
+     */
+    @Override
+    protected boolean satisfyJoinCondition(Tuple tuple) {
+        return true;
+    }
+
+    /**
+     * fill the blocks with the next outer tuples
+     *
+     * @return false if the outer relation is done
+     */
+    private boolean loadOuterBlocks() {
+        outerTuples.clear();
+        for (Block block : blocks) {
+            block.clearData();
+            Tuple leftTuple;
+            while ((leftTuple = opLeft.getNextTuple()) != null) {
+                if (!block.setNextTuple(leftTuple)) {
+                    break;
+                }
+            }
+            if (block.isAllNull()) {
+                break;
+            }
+            List<Tuple> tuples = new ArrayList<>();
+            block.reset();
+            Tuple outer;
+            while ((outer = block.readNextTuple()) != null) {
+                tuples.add(outer);
+            }
+            outerTuples.add(tuples);
+        }
+        if (!outerTuples.isEmpty() && threadPool == null) {
+            threadPool = Executors.newFixedThreadPool(threadCount, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return !outerTuples.isEmpty();
+    }
+
+    /**
+     * @return the next page of inner tuples, empty at the end of the inner relation
+     */
+    private List<Tuple> readInnerPage() {
+        int pageSize = Constants.PAGE_SIZE / (Math.max(opRight.getSchema().size(), 1) * Constants.INT_SIZE);
+        List<Tuple> page = new ArrayList<>(pageSize);
+        Tuple innerTuple;
+        while (page.size() < pageSize && (innerTuple = opRight.getNextTuple()) != null) {
+            page.add(innerTuple.materialize());
+        }
+        return page;
+    }
+
+    private void finish() {
+        finished = true;
+        pending.clear();
+        current = null;
+        if (threadPool != null) {
+            threadPool.shutdownNow();
+            threadPool = null;
+        }
+    }
+
+    /**
+     * reset the operator, the threads are started again on the next call
+     */
+    @Override
+    public void reset() {
+        finish();
+        super.reset();
+        finished = false;
+        started = false;
+    }
+
+    /**
+     * stop the threads, then close the children
+     */
+    @Override
+    public void close() {
+        finish();
+        super.close();
+    }
+
+    /**
+     * Thread class
+     * join the tuples of one outer block with one page of inner tuples
+     */
+    class Task implements Callable<List<Tuple>> {
+        private List<Tuple> outerTuples;
+        private List<Tuple> innerPage;
+        private TuplePredicate predicate;
+
+        public Task(List<Tuple> outerTuples, List<Tuple> innerPage, TuplePredicate predicate) {
+            this.outerTuples = outerTuples;
+            this.innerPage = innerPage;
+            this.predicate = predicate;
+        }
+
+        @Override
+        public List<Tuple> call() {
+            int outerWidth = opLeft.getSchema().size();
+            int[] data = new int[outerWidth + opRight.getSchema().size()];
+            Tuple joined = new Tuple(data);
+            List<Tuple> result = new ArrayList<>();
+            // same order as the block nested loop join: inner tuple first, then the block
+            for (Tuple inner : innerPage) {
+                for (int k = 0; k < inner.getDataLength(); k++) {
+                    data[outerWidth + k] = inner.getDataAt(k);
+                }
+                for (Tuple outer : outerTuples) {
+                    for (int k = 0; k < outerWidth; k++) {
+                        data[k] = outer.getDataAt(k);
+                    }
+                    if (predicate == null || predicate.test(joined)) {
+                        result.add(new Tuple(data.clone()));
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public void accept(PhysicalOperatorVisitor phOpVisitor, int level) {
+        phOpVisitor.visit(this, level);
+    }
+}
@@ -3,8 +3,12 @@ package operator;
 import PlanBuilder.PhysicalOperatorVisitor;
 import logical.operator.ProjectOperator;
 import model.Tuple;
+import model.TupleBatch;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.SelectItem;
+import util.Catalog;
+import util.TupleProjection;
+import util.codegen.CodeGenerator;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -22,6 +26,14 @@ public class PhysicalProjectOperator extends PhysicalOperator {
     PhysicalOperator prevPhysicalOp;
     List<SelectItem> selectItems;
     Map<String, Integer> currentSchema;
+    // column vectors of the projected batch
+    private int[][] projectedColumns;
+    // the ith output column is column projectionIndexes[i] of the child
+    private int[] projectionIndexes;
+    private TupleProjection projection;
+    // reused by every projected tuple
+    private int[] outputData;
+    private Tuple output;
 
     /**
      * Constructor of PhysicalProjectOperator
@@ -75,21 +87,74 @@ public class PhysicalProjectOperator extends PhysicalOperator {
     }
 
     /**
-     * @return the next tuple selected by the project operator
+     * @return the next tuple selected by the project operator, a view over the output buffer
      */
     @Override
     public Tuple getNextTuple() {
         Tuple next = prevPhysicalOp.getNextTuple();
         if (next != null && currentSchema != prevPhysicalOp.getSchema()) {
-            int[] data = new int[currentSchema.size()];
-            for (Map.Entry<String, Integer> entry : currentSchema.entrySet()) {
-                data[entry.getValue()] = next.getDataAt(prevPhysicalOp.getSchema().get(entry.getKey()));
+            if (output == null) {
+                outputData = new int[currentSchema.size()];
+                output = Tuple.view(outputData, 0, outputData.length);
             }
-            next = new Tuple(data);
+            getProjection().project(next, outputData);
+            next = output;
         }
         return next;
     }
 
+    /**
+     * resolve the positions of the projected columns in the child once
+     *
+     * @return positions of the output columns in the child tuple
+     */
+    private int[] getProjectionIndexes() {
+        if (projectionIndexes == null) {
+            projectionIndexes = new int[currentSchema.size()];
+            for (Map.Entry<String, Integer> entry : currentSchema.entrySet()) {
+                projectionIndexes[entry.getValue()] = prevPhysicalOp.getSchema().get(entry.getKey());
+            }
+        }
+        return projectionIndexes;
+    }
+
+    /**
+     * @return the generated projection if codegen is on, otherwise a loop over the resolved positions
+     */
+    private TupleProjection getProjection() {
+        if (projection == null) {
+            int[] indexes = getProjectionIndexes();
+            if (Catalog.getInstance().isCodegen()) {
+                projection = CodeGenerator.generateProjection(indexes);
+            }
+            if (projection == null) {
+                projection = TupleProjection.of(indexes);
+            }
+        }
+        return projection;
+    }
+
+    /**
+     * project a batch by picking the column vectors of the previous batch, without copying
+     *
+     * @return the next projected batch
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        TupleBatch batch = prevPhysicalOp.getNextBatch();
+        if (batch == null || currentSchema == prevPhysicalOp.getSchema()) {
+            return batch;
+        }
+        int[] indexes = getProjectionIndexes();
+        if (projectedColumns == null) {
+            projectedColumns = new int[indexes.length][];
+        }
+        for (int i = 0; i < indexes.length; i++) {
+            projectedColumns[i] = batch.getColumn(indexes[i]);
+        }
+        return new TupleBatch(projectedColumns, batch.getSize());
+    }
+
     /**
      * reset the project operator would be resetting the previous operator
      */
@@ -1,11 +1,13 @@
 package operator;
 
 import PlanBuilder.PhysicalOperatorVisitor;
-import io.BinaryTupleReader;
+import io.PagedTupleReader;
 import logical.operator.ScanOperator;
 import model.Tuple;
+import model.TupleBatch;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import util.Catalog;
+import util.Constants;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -16,9 +18,10 @@ import java.util.Map;
  * Read the table from disk and fetch a tuple
  */
 public class PhysicalScanOperator extends PhysicalOperator {
-    protected BinaryTupleReader binaryTupleReader;
+    protected PagedTupleReader tupleReader;
     protected Map<String, Integer> schema;
     private String tableName;
+    private TupleBatch batch;
 
     /**
      * @param plainSelect is the statement of sql
@@ -34,7 +37,7 @@ public class PhysicalScanOperator extends PhysicalOperator {
 
         String[] strs = item.split("\\s+");
         if (strs.length < 0) {
-            this.binaryTupleReader = null;
+            this.tupleReader = null;
             return;
         }
         String tableName = strs[0];
@@ -44,7 +47,7 @@ public class PhysicalScanOperator extends PhysicalOperator {
         Catalog.getInstance().updateCurrentSchema(aliasName);
 
         this.schema = Catalog.getInstance().getCurrentSchema();
-        binaryTupleReader = new BinaryTupleReader(Catalog.getInstance().getDataPath(tableName));
+        tupleReader = Catalog.getInstance().getTableReader(tableName);
     }
 
     /**
@@ -54,7 +57,7 @@ public class PhysicalScanOperator extends PhysicalOperator {
      */
     public PhysicalScanOperator(ScanOperator logScanOp) {
         this.schema = logScanOp.getSchema();
-        this.binaryTupleReader = logScanOp.getBinaryTupleReader();
+        this.tupleReader = logScanOp.getTupleReader();
         this.tableName = logScanOp.getTable();
     }
 
@@ -63,25 +66,57 @@ public class PhysicalScanOperator extends PhysicalOperator {
     }
 
     /**
-     * get the next tuple of the operator.
+     * get the next tuple of the operator, a view over the page of the reader
      */
     @Override
     public Tuple getNextTuple() {
         try {
-            return binaryTupleReader.readNextTuple();
+            return tupleReader.readNextView();
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     * read the next batch directly from the table pages
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        if (batch == null) {
+            batch = new TupleBatch(schema.size(), Constants.BATCH_SIZE);
+        }
+        batch.clear();
+        try {
+            tupleReader.readNextBatch(batch);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+        return batch.isEmpty() ? null : batch;
+    }
+
     /**
      * reset the operator.
      */
     @Override
     public void reset() {
         try {
-            binaryTupleReader.reset();
+            tupleReader.reset();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * close the reader of the table
+     */
+    @Override
+    public void close() {
+        try {
+            if (tupleReader != null) {
+                tupleReader.close();
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
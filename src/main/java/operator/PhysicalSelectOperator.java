@@ -3,10 +3,12 @@ package operator;
 import PlanBuilder.PhysicalOperatorVisitor;
 import logical.operator.SelectOperator;
 import model.Tuple;
+import model.TupleBatch;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.statement.select.PlainSelect;
+import util.ExpressionCompiler;
 import util.JoinExpressionVisitor;
-import util.SelectExpressionVisitor;
+import util.TuplePredicate;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -22,6 +24,8 @@ public class PhysicalSelectOperator extends PhysicalOperator {
     private PhysicalOperator prevOp;
     private Expression expression;
     private Map<String, Integer> currentSchema;
+    // expression compiled against the schema of the previous operator
+    private TuplePredicate predicate;
 
     /**
      * Constructor of PhysicalSelectOperator
@@ -37,6 +41,7 @@ public class PhysicalSelectOperator extends PhysicalOperator {
         JoinExpressionVisitor joinExpress = new JoinExpressionVisitor(this.currentSchema);
         expression.accept(joinExpress);
         expression = joinExpress.getExpression();
+        this.predicate = ExpressionCompiler.compile(expression, prevOp.getSchema());
     }
 
     /**
@@ -49,6 +54,7 @@ public class PhysicalSelectOperator extends PhysicalOperator {
         this.prevOp = child;
         this.expression = logSelectOp.getExpression();
         this.currentSchema = logSelectOp.getSchema();
+        this.predicate = ExpressionCompiler.compile(expression, prevOp.getSchema());
     }
 
     public Expression getExpression() {
@@ -63,9 +69,7 @@ public class PhysicalSelectOperator extends PhysicalOperator {
         Tuple next = prevOp.getNextTuple();
         if (expression != null) {
             while (next != null) {
-                SelectExpressionVisitor sv = new SelectExpressionVisitor(next, prevOp.getSchema());
-                expression.accept(sv);
-                if (sv.getResult()) {
+                if (predicate.test(next)) {
                     break;
                 }
                 next = prevOp.getNextTuple();
@@ -74,6 +78,41 @@ public class PhysicalSelectOperator extends PhysicalOperator {
         return next;
     }
 
+    /**
+     * filter the batches of the previous operator in place
+     * the kept rows are moved to the front of the batch
+     *
+     * @return the next batch with at least one row, null if no more output
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        TupleBatch batch = prevOp.getNextBatch();
+        if (expression == null) {
+            return batch;
+        }
+        int[] data = null;
+        Tuple row = null;
+        while (batch != null) {
+            if (data == null) {
+                data = new int[batch.getWidth()];
+                row = new Tuple(data);
+            }
+            int kept = 0;
+            for (int i = 0; i < batch.getSize(); i++) {
+                batch.readRow(i, data);
+                if (predicate.test(row)) {
+                    batch.copyRow(i, kept++);
+                }
+            }
+            batch.setSize(kept);
+            if (kept > 0) {
+                return batch;
+            }
+            batch = prevOp.getNextBatch();
+        }
+        return null;
+    }
+
     /**
      * reset the select operator would be resetting the previous operator
      */
@@ -20,6 +20,8 @@ public class PhysicalSortMergeJoinOperator extends PhysicalJoinOperator {
     //private Map<SouterTupleing, Integer> schema;
     List<OrderByElement> leftOrder;
     List<OrderByElement> rightOrder;
+    // the first tuples are read on the first call
+    private boolean started = false;
 
     /**
      * Init the schema of JoinOperator
@@ -31,14 +33,13 @@ public class PhysicalSortMergeJoinOperator extends PhysicalJoinOperator {
         super(opLeft, opRight, logicalJoinOp);
         this.leftOrder = opLeft.getOrder();
         this.rightOrder = opRight.getOrder();
-        init();
     }
 
     @Override
     public void reset() {
         opRight.reset();
         opLeft.reset();
-        init();
+        started = false;
     }
 
     private void init() {
@@ -54,6 +55,10 @@ public class PhysicalSortMergeJoinOperator extends PhysicalJoinOperator {
      */
     @Override
     protected Tuple crossProduction() {
+        if (!started) {
+            started = true;
+            init();
+        }
         // search for equal
         try {
             while (outerTuple != null && innerTuple != null) {
@@ -6,11 +6,14 @@ import model.Tuple;
 import net.sf.jsqlparser.statement.select.OrderByElement;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import util.Catalog;
+import util.TupleSorter;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * PhysicalSortOperator
@@ -24,6 +27,7 @@ public abstract class PhysicalSortOperator extends PhysicalOperator {
     protected PhysicalOperator physChild;
     protected List<OrderByElement> order;
     private boolean isSMJChild = false;
+    private int[] keyColumns;
 
     /**
      * used for simply test skipping the logical plan tree
@@ -98,51 +102,74 @@ public abstract class PhysicalSortOperator extends PhysicalOperator {
     }
 
     /**
-     * comparator to sort tuples
+     * @return indexes of the key columns, computed on the first call
      */
-    protected class TupleComparator implements Comparator<Tuple> {
+    protected int[] getKeyColumns() {
+        if (keyColumns == null) {
+            keyColumns = getKeyColumns(order, schema, isSMJChild);
+        }
+        return keyColumns;
+    }
 
-        @Override
-        public int compare(Tuple t1, Tuple t2) {
-            // sort tuples from the order from sql query.
-            if (order != null) {
-                for (int i = 0; i < order.size(); i++) {
-                    String column = order.get(i).toString();
-                    int index = schema.get(column);
-                    if (t1.getDataAt(index) > t2.getDataAt(index)) {
-                        return 1;
-                    }
-                    if (t1.getDataAt(index) < t2.getDataAt(index)) {
-                        return -1;
-                    }
+    /**
+     * the columns compared by a sort, the columns of the order from the sql query,
+     * then for tie breaker the output columns in their order, or all the columns
+     * in the order of the schema before a smj
+     *
+     * @param order        order from the sql query, may be null
+     * @param schema       schema of the sorted tuples
+     * @param schemaOrder  break the ties in the order of the schema
+     * @return indexes of the key columns
+     */
+    static int[] getKeyColumns(List<OrderByElement> order, Map<String, Integer> schema, boolean schemaOrder) {
+        Set<Integer> columns = new LinkedHashSet<>();
+        if (order != null) {
+            for (OrderByElement element : order) {
+                columns.add(schema.get(element.toString()));
+            }
+        }
+        if (schemaOrder) {
+            for (int i = 0; i < schema.size(); i++) {
+                columns.add(i);
+            }
+        } else {
+            for (String attribute : Catalog.getInstance().getAttributeOrder()) {
+                if (schema.containsKey(attribute)) {
+                    columns.add(schema.get(attribute));
                 }
             }
+        }
+        int[] keys = new int[columns.size()];
+        int i = 0;
+        for (int column : columns) {
+            keys[i++] = column;
+        }
+        return keys;
+    }
+
+    /**
+     * sort the tuples by the key columns
+     */
+    protected void sortTuples(List<Tuple> tuples) {
+        TupleSorter.sort(tuples, getKeyColumns());
+    }
 
+    /**
+     * comparator to sort tuples, by the key columns
+     */
+    protected class TupleComparator implements Comparator<Tuple> {
+        private final int[] keys = getKeyColumns();
 
-            // for tie breaker
-            // sort tuples by the order of columns.
-            if (!isSMJChild) {
-                for (int i = 0; i < schema.size(); i++) {
-                    int index = getSchema().get(Catalog.getInstance().getAttributeOrder().get(i));
-                    if (t1.getDataAt(index) > t2.getDataAt(index)) {
-                        return 1;
-                    }
-                    if (t1.getDataAt(index) < t2.getDataAt(index)) {
-                        return -1;
-                    }
+        @Override
+        public int compare(Tuple t1, Tuple t2) {
+            for (int index : keys) {
+                if (t1.getDataAt(index) > t2.getDataAt(index)) {
+                    return 1;
                 }
-            }
-            else {
-                for (int i = 0; i < schema.size(); i++) {
-                    if (t1.getDataAt(i) > t2.getDataAt(i)) {
-                        return 1;
-                    }
-                    if (t1.getDataAt(i) < t2.getDataAt(i)) {
-                        return -1;
-                    }
+                if (t1.getDataAt(index) < t2.getDataAt(index)) {
+                    return -1;
                 }
             }
-
             return 0;
         }
     }
@@ -0,0 +1,180 @@
+package operator;
+
+import PlanBuilder.PhysicalOperatorVisitor;
+import logical.operator.TopNOperator;
+import model.Tuple;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import util.Catalog;
+import util.Constants;
+import util.TupleSorter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Top-N operator
+ * with an order, the first offset + limit rows are kept in a heap with the last
+ * of them on top, a row of the child replaces the top if it comes before it, so
+ * the child is read once and nothing is written. Without an order the rows of
+ * the child are returned as they come, and the child is not read past the limit.
+ */
+public class PhysicalTopNOperator extends PhysicalOperator {
+
+    private PhysicalOperator physChild;
+    private Map<String, Integer> schema;
+    private List<OrderByElement> order;
+    private long limit;
+    private long offset;
+    private long rowCount;
+
+    private List<Tuple> rows; // the first rows in the order, read on the first call
+    private int next;
+    private long skipped;
+    private long returned;
+
+    /**
+     * @param logTopNOp
+     * @param child
+     * @param order     order of the rows, null if the child is already in order
+     */
+    public PhysicalTopNOperator(TopNOperator logTopNOp, PhysicalOperator child, List<OrderByElement> order) {
+        this.physChild = child;
+        this.schema = child.getSchema();
+        this.order = order;
+        this.limit = logTopNOp.getLimit();
+        this.offset = logTopNOp.getOffset();
+        this.rowCount = logTopNOp.getRowCount();
+    }
+
+    /**
+     * @param rows  offset + limit
+     * @param width columns of a row
+     * @return true if the rows fit in the memory of a sort, so they are kept in a heap
+     */
+    public static boolean fitsInMemory(long rows, int width) {
+        long memory = (long) Math.max(Catalog.getInstance().getSortBlockSize(), 1) * Constants.PAGE_SIZE;
+        return rows <= memory / ((long) width * Constants.INT_SIZE);
+    }
+
+    /**
+     * keep the first offset + limit rows of the child in the order
+     */
+    private void readRows() {
+        int[] keys = PhysicalSortOperator.getKeyColumns(order, schema, false);
+        Comparator<Tuple> comparator = (t1, t2) -> {
+            for (int index : keys) {
+                int cmp = Integer.compare(t1.getDataAt(index), t2.getDataAt(index));
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        };
+        int size = (int) Math.min(rowCount, Integer.MAX_VALUE - 8);
+        PriorityQueue<Tuple> heap = new PriorityQueue<>(Math.min(size, 1024) + 1,
+                Collections.reverseOrder(comparator));
+        Tuple tuple;
+        while (size > 0 && (tuple = physChild.getNextTuple()) != null) {
+            if (heap.size() < size) {
+                heap.add(tuple.materialize());
+            } else if (comparator.compare(tuple, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(tuple.materialize());
+            }
+        }
+        rows = new ArrayList<>(heap);
+        TupleSorter.sort(rows, keys);
+        next = (int) Math.min(offset, rows.size());
+    }
+
+    /**
+     * get the next tuple of the operator.
+     */
+    @Override
+    public Tuple getNextTuple() {
+        if (order != null) {
+            if (rows == null) {
+                readRows();
+            }
+            return next < rows.size() ? rows.get(next++) : null;
+        }
+        while (skipped < offset) {
+            if (physChild.getNextTuple() == null) {
+                return null;
+            }
+            skipped++;
+        }
+        if (returned == limit) {
+            return null;
+        }
+        Tuple tuple = physChild.getNextTuple();
+        if (tuple != null) {
+            returned++;
+        }
+        return tuple;
+    }
+
+    /**
+     * reset the operator.
+     */
+    @Override
+    public void reset() {
+        if (order != null && rows != null) {
+            next = (int) Math.min(offset, rows.size());
+            return;
+        }
+        physChild.reset();
+        skipped = 0;
+        returned = 0;
+    }
+
+    /**
+     * drop the rows, then close the child
+     */
+    @Override
+    public void close() {
+        rows = Collections.emptyList();
+        skipped = offset;
+        returned = limit;
+        super.close();
+    }
+
+    /**
+     * get the schema
+     */
+    @Override
+    public Map<String, Integer> getSchema() {
+        return this.schema;
+    }
+
+    /**
+     * @return the order, null if the child is already in order
+     */
+    public List<OrderByElement> getOrder() {
+        return order;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public List<PhysicalOperator> getChildren() {
+        List<PhysicalOperator> children = new ArrayList<>();
+        children.add(physChild);
+        return children;
+    }
+
+    @Override
+    public void accept(PhysicalOperatorVisitor phOpVisitor, int level) {
+        phOpVisitor.visit(this, level);
+    }
+}
@@ -0,0 +1,114 @@
+package test;
+
+import io.BinaryTupleReader;
+import model.Tuple;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import util.ExpressionCompiler;
+import util.SelectExpressionVisitor;
+import util.TuplePredicate;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compare the selection predicates: SelectExpressionVisitor, the compiled
+ * lambdas of ExpressionCompiler and the generated bytecode
+ * the Sailors table of samples-2 is scaled 100 times in memory
+ *
+ * args: [path of Sailors] [scale] [where clause]
+ */
+class PredicateBenchmark {
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        try {
+            String table = args.length > 0 ? args[0] : "Samples/samples-2/input/db/data/Sailors";
+            int scale = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+            String where = args.length > 2 ? args[2] : "S.A < 5000 AND S.B > 100 AND S.C != 3";
+
+            Tuple[] tuples = load(table, scale);
+            Map<String, Integer> schema = new HashMap<>();
+            schema.put("S.A", 0);
+            schema.put("S.B", 1);
+            schema.put("S.C", 2);
+
+            CCJSqlParserManager parserManager = new CCJSqlParserManager();
+            PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(
+                    new StringReader("SELECT * FROM Sailors S WHERE " + where + ";"))).getSelectBody();
+            Expression expression = plainSelect.getWhere();
+
+            TuplePredicate visitor = tuple -> {
+                SelectExpressionVisitor sv = new SelectExpressionVisitor(tuple, schema);
+                expression.accept(sv);
+                return sv.getResult();
+            };
+            TuplePredicate compiled = ExpressionCompiler.compile(expression, schema, false);
+            TuplePredicate generated = ExpressionCompiler.compile(expression, schema, true);
+
+            System.out.println(tuples.length + " tuples, WHERE " + where);
+            long base = run("visitor", visitor, tuples);
+            run("compiled", compiled, tuples, base);
+            run("generated", generated, tuples, base);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static Tuple[] load(String table, int scale) throws Exception {
+        BinaryTupleReader reader = new BinaryTupleReader(table);
+        List<Tuple> rows = new ArrayList<>();
+        Tuple tuple;
+        while ((tuple = reader.readNextTuple()) != null) {
+            rows.add(tuple);
+        }
+        reader.close();
+        Tuple[] tuples = new Tuple[rows.size() * scale];
+        for (int i = 0; i < tuples.length; i++) {
+            Tuple row = rows.get(i % rows.size());
+            int[] data = new int[row.getDataLength()];
+            for (int j = 0; j < data.length; j++) {
+                data[j] = row.getDataAt(j);
+            }
+            tuples[i] = new Tuple(data);
+        }
+        return tuples;
+    }
+
+    private static long run(String name, TuplePredicate predicate, Tuple[] tuples) {
+        return run(name, predicate, tuples, 0);
+    }
+
+    /**
+     * warm up with one round, then report the best of the timed rounds
+     *
+     * @return best time of a round in nanoseconds
+     */
+    private static long run(String name, TuplePredicate predicate, Tuple[] tuples, long base) {
+        int selected = count(predicate, tuples);
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            count(predicate, tuples);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        String speedup = base > 0 ? String.format(", %.1fx", (double) base / best) : "";
+        System.out.println(String.format("%-10s %8.2f ms, %d selected%s", name, best / 1e6, selected, speedup));
+        return best;
+    }
+
+    private static int count(TuplePredicate predicate, Tuple[] tuples) {
+        int count = 0;
+        for (Tuple tuple : tuples) {
+            if (predicate.test(tuple)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
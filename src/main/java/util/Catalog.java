@@ -11,8 +11,16 @@ import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import io.BinaryTupleReader;
+import io.BufferPool;
+import io.ColumnarTupleReader;
+import io.MappedTupleReader;
+import io.PageFormat;
+import io.PagedTupleReader;
+import io.PrefetchTupleReader;
 import model.IndexConfig;
 import model.TableHistogram;
+import model.TableStatistics;
 import model.Histogram;
 
 import javax.swing.*;
@@ -40,10 +48,48 @@ public class Catalog {
     private SortMethod sortMethod = SortMethod.IN_MEMORY;
 
     private int joinBlockSize = 0;
+    // threads of a join, one outer block each of the block nested loop join, one spilled bucket each of the hash join
+    private int joinThreadCount = Runtime.getRuntime().availableProcessors();
+    // pages of memory a hash join may use for its hash tables
+    private int hashJoinMemory = Constants.DEFAULT_HASH_JOIN_MEMORY;
+    // keep the hash tables of as many buckets as the memory allows instead of spilling all of them
+    private boolean hybridHashJoin = true;
     private int sortBlockSize = 0;
+    // threads of an external sort, the calling thread included, their blocks share the sort memory
+    private int sortThreadCount = Runtime.getRuntime().availableProcessors();
 
     private boolean indexScan = false;
 
+    // read the tables through memory-mapped files
+    private boolean mappedScan = true;
+
+    // generate bytecode for the select predicates and projections
+    private boolean codegen = false;
+
+    // read the tables from their columnar copies
+    private boolean columnarScan = false;
+
+    // page size of the tables and indexes written
+    private int pageSize = Constants.PAGE_SIZE;
+    // page size of the temp files of the sorts and joins, large pages are read and written in one request
+    private int extentSize = Constants.PAGE_SIZE;
+
+    // extents read ahead by the sequential readers, 0 to read synchronously
+    private int readAhead = Constants.DEFAULT_READ_AHEAD;
+
+    // pages of memory an index build may use to sort its data entries
+    private int indexBuildMemory = Constants.DEFAULT_INDEX_BUILD_MEMORY;
+
+    // threads building the indexes, the memory of the index builds is shared among them
+    private int indexBuildThreadCount = Runtime.getRuntime().availableProcessors();
+    // seconds an index build may take before it is cancelled, 0 for no limit
+    private int indexBuildTimeout = 0;
+
+    // rows sampled from each table for the histograms, 0 for no sample
+    private int statsSampleSize = Constants.DEFAULT_STATS_SAMPLE_SIZE;
+    // threads scanning the tables for their statistics
+    private int statsThreadCount = Runtime.getRuntime().availableProcessors();
+
     // column order of the output tuple
     private List<String> attributeOrder;
 
@@ -198,6 +244,16 @@ public class Catalog {
         return files.get(table);
     }
 
+    /**
+     * return the columnar copy of certain table
+     *
+     * @param table
+     * @return path of columnar file
+     */
+    public String getColumnarPath(String table) {
+        return Constants.inputPath + "/db/columnar/" + table;
+    }
+
     public String getIndexPath() {
         return Constants.inputPath + "/db/indexes";
     }
@@ -370,6 +426,40 @@ public class Catalog {
         this.joinBlockSize = joinBlockSize;
     }
 
+    public int getJoinThreadCount() {
+        return this.joinThreadCount;
+    }
+
+    public void setJoinThreadCount(int joinThreadCount) {
+        this.joinThreadCount = joinThreadCount;
+    }
+
+    /**
+     * get the memory budget of a hash join
+     *
+     * @return number of pages
+     */
+    public int getHashJoinMemory() {
+        return this.hashJoinMemory;
+    }
+
+    /**
+     * set the memory budget of a hash join
+     *
+     * @param hashJoinMemory number of pages
+     */
+    public void setHashJoinMemory(int hashJoinMemory) {
+        this.hashJoinMemory = hashJoinMemory;
+    }
+
+    public boolean isHybridHashJoin() {
+        return this.hybridHashJoin;
+    }
+
+    public void setHybridHashJoin(boolean onOff) {
+        this.hybridHashJoin = onOff;
+    }
+
     /**
      * get the external sort block size
      *
@@ -388,6 +478,14 @@ public class Catalog {
         this.sortBlockSize = sortBlockSize;
     }
 
+    public int getSortThreadCount() {
+        return this.sortThreadCount;
+    }
+
+    public void setSortThreadCount(int sortThreadCount) {
+        this.sortThreadCount = sortThreadCount;
+    }
+
     public boolean getIndexScan() {
         return this.indexScan;
     }
@@ -396,6 +494,181 @@ public class Catalog {
         this.indexScan = onOff;
     }
 
+    public boolean isMappedScan() {
+        return this.mappedScan;
+    }
+
+    public void setMappedScan(boolean onOff) {
+        this.mappedScan = onOff;
+    }
+
+    public boolean isCodegen() {
+        return this.codegen;
+    }
+
+    public void setCodegen(boolean onOff) {
+        this.codegen = onOff;
+    }
+
+    public boolean isColumnarScan() {
+        return this.columnarScan;
+    }
+
+    public void setColumnarScan(boolean onOff) {
+        this.columnarScan = onOff;
+    }
+
+    /**
+     * @return page size of the tables and indexes written
+     */
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = PageFormat.checkPageSize(pageSize);
+    }
+
+    /**
+     * @return page size of the temp files of the sorts and joins
+     */
+    public int getExtentSize() {
+        return this.extentSize;
+    }
+
+    public void setExtentSize(int extentSize) {
+        this.extentSize = PageFormat.checkPageSize(extentSize);
+    }
+
+    public int getReadAhead() {
+        return this.readAhead;
+    }
+
+    public void setReadAhead(int readAhead) {
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * @return number of threads reading ahead for the sequential readers
+     */
+    public int getIoThreadCount() {
+        return PrefetchTupleReader.getIoThreadCount();
+    }
+
+    public void setIoThreadCount(int ioThreadCount) {
+        PrefetchTupleReader.setIoThreadCount(ioThreadCount);
+    }
+
+    /**
+     * @return capacity of the buffer pool in pages
+     */
+    public int getBufferPoolSize() {
+        return (int) (BufferPool.getInstance().getCapacity() / Constants.PAGE_SIZE);
+    }
+
+    /**
+     * set the capacity of the buffer pool
+     *
+     * @param pages number of pages, 0 to read the tables and indexes without the pool
+     */
+    public void setBufferPoolSize(int pages) {
+        BufferPool.getInstance().setCapacity((long) pages * Constants.PAGE_SIZE);
+    }
+
+    /**
+     * create a reader of a file read from the start to the end, e.g. a sorted run or a bucket
+     * the reader reads ahead in the background if read ahead is on
+     *
+     * @param file
+     * @return tuple reader of the file
+     */
+    public PagedTupleReader getSequentialReader(String file) {
+        return getSequentialReader(file, readAhead);
+    }
+
+    /**
+     * create a reader of a temp file reading a number of extents ahead, it holds
+     * getSequentialReaderSize(readAhead) bytes
+     *
+     * @param file
+     * @param readAhead extents read ahead, 0 to read synchronously
+     * @return tuple reader of the file
+     */
+    public PagedTupleReader getSequentialReader(String file, int readAhead) {
+        if (readAhead > 0) {
+            return new PrefetchTupleReader(file, readAhead, extentSize);
+        }
+        return new BinaryTupleReader(file, false);
+    }
+
+    /**
+     * @param readAhead extents read ahead
+     * @return bytes of the buffers of a sequential reader of a temp file
+     */
+    public long getSequentialReaderSize(int readAhead) {
+        return (long) extentSize * (Math.max(readAhead, 0) + 1);
+    }
+
+    /**
+     * create a reader of the table file, memory-mapped if mapped scan is on
+     *
+     * @param table
+     * @return tuple reader of the table
+     */
+    public PagedTupleReader getTableReader(String table) {
+        return getTableReader(table, null);
+    }
+
+    /**
+     * create a reader of the table file, the columnar copy decodes only the given columns
+     *
+     * @param table
+     * @param columns indexes of the columns needed, null for all
+     * @return tuple reader of the table
+     */
+    public PagedTupleReader getTableReader(String table, int[] columns) {
+        if (columnarScan && new File(getColumnarPath(table)).exists()) {
+            return new ColumnarTupleReader(getColumnarPath(table), columns);
+        }
+        if (mappedScan) {
+            return new MappedTupleReader(getDataPath(table));
+        }
+        if (getBufferPoolSize() > 0) {
+            return new BinaryTupleReader(getDataPath(table));
+        }
+        return getSequentialReader(getDataPath(table));
+    }
+
+    /**
+     * @return pages of memory an index build may use to sort its data entries
+     */
+    public int getIndexBuildMemory() {
+        return this.indexBuildMemory;
+    }
+
+    public void setIndexBuildMemory(int indexBuildMemory) {
+        this.indexBuildMemory = indexBuildMemory;
+    }
+
+    public int getIndexBuildThreadCount() {
+        return this.indexBuildThreadCount;
+    }
+
+    public void setIndexBuildThreadCount(int indexBuildThreadCount) {
+        this.indexBuildThreadCount = indexBuildThreadCount;
+    }
+
+    /**
+     * @return seconds an index build may take, 0 for no limit
+     */
+    public int getIndexBuildTimeout() {
+        return this.indexBuildTimeout;
+    }
+
+    public void setIndexBuildTimeout(int indexBuildTimeout) {
+        this.indexBuildTimeout = indexBuildTimeout;
+    }
+
     Map <String, IndexConfig> indexConfigs = new HashMap<>();
 
     public IndexConfig setIndexConfig(String config) {
@@ -461,8 +734,39 @@ public class Catalog {
     // Table Stats data
     public String getStatsPath() { return Constants.inputPath + "/db/stats.txt"; }
 
+    /**
+     * @return path of the binary stats file, the statistics kept between runs
+     */
+    public String getStatisticsPath() { return Constants.inputPath + "/db/stats.dat"; }
+
     private Map<String, String> originTableStats = new HashMap<>();
 
+    private Map<String, TableStatistics> tableStatistics = new HashMap<>();
+
+    public Map<String, TableStatistics> getTableStatistics() {
+        return tableStatistics;
+    }
+
+    public void setTableStatistics(Map<String, TableStatistics> tableStatistics) {
+        this.tableStatistics = tableStatistics;
+    }
+
+    public int getStatsSampleSize() {
+        return this.statsSampleSize;
+    }
+
+    public void setStatsSampleSize(int statsSampleSize) {
+        this.statsSampleSize = statsSampleSize;
+    }
+
+    public int getStatsThreadCount() {
+        return this.statsThreadCount;
+    }
+
+    public void setStatsThreadCount(int statsThreadCount) {
+        this.statsThreadCount = statsThreadCount;
+    }
+
     public void putStats(String config) {
         String splits[] = config.split("\\s+");
         if (splits.length < 2) {
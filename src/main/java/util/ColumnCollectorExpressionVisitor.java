@@ -0,0 +1,228 @@
+package util;
+
+import net.sf.jsqlparser.expression.*;
+import net.sf.jsqlparser.expression.operators.arithmetic.*;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.*;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.select.SubSelect;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This visitor collects the columns an expression refers to
+ * an expression it cannot walk through marks the result incomplete,
+ * the caller should then assume every column is needed.
+ */
+public class ColumnCollectorExpressionVisitor implements ExpressionVisitor {
+    private Set<String> columns = new HashSet<>();
+    private boolean complete = true;
+
+    /**
+     * @return whole names of the columns, alias.column
+     */
+    public Set<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return false if the expression had a node this visitor does not know
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public void visit(Column node) {
+        columns.add(node.getWholeColumnName());
+    }
+
+    @Override
+    public void visit(Parenthesis node) {
+        node.getExpression().accept(this);
+    }
+
+    private void visitBinary(BinaryExpression node) {
+        node.getLeftExpression().accept(this);
+        node.getRightExpression().accept(this);
+    }
+
+    @Override
+    public void visit(Addition node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(Division node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(Multiplication node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(Subtraction node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(AndExpression node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(OrExpression node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(EqualsTo node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(GreaterThan node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(GreaterThanEquals node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(MinorThan node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(MinorThanEquals node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(NotEqualsTo node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(LikeExpression node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(Concat node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(Matches node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(BitwiseAnd node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(BitwiseOr node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(BitwiseXor node) {
+        visitBinary(node);
+    }
+
+    @Override
+    public void visit(NullValue node) {
+    }
+
+    @Override
+    public void visit(JdbcParameter node) {
+    }
+
+    @Override
+    public void visit(DoubleValue node) {
+    }
+
+    @Override
+    public void visit(LongValue node) {
+    }
+
+    @Override
+    public void visit(DateValue node) {
+    }
+
+    @Override
+    public void visit(TimeValue node) {
+    }
+
+    @Override
+    public void visit(TimestampValue node) {
+    }
+
+    @Override
+    public void visit(StringValue node) {
+    }
+
+    @Override
+    public void visit(Function node) {
+        complete = false;
+    }
+
+    @Override
+    public void visit(InverseExpression node) {
+        complete = false;
+    }
+
+    @Override
+    public void visit(Between node) {
+        complete = false;
+    }
+
+    @Override
+    public void visit(InExpression node) {
+        complete = false;
+    }
+
+    @Override
+    public void visit(IsNullExpression node) {
+        complete = false;
+    }
+
+    @Override
+    public void visit(SubSelect node) {
+        complete = false;
+    }
+
+    @Override
+    public void visit(CaseExpression node) {
+        complete = false;
+    }
+
+    @Override
+    public void visit(WhenClause node) {
+        complete = false;
+    }
+
+    @Override
+    public void visit(ExistsExpression node) {
+        complete = false;
+    }
+
+    @Override
+    public void visit(AllComparisonExpression node) {
+        complete = false;
+    }
+
+    @Override
+    public void visit(AnyComparisonExpression node) {
+        complete = false;
+    }
+}
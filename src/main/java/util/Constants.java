@@ -15,6 +15,19 @@ public class Constants {
     public static String CONFIG_PATH = inputPath + "/plan_builder_config.txt";
     public static final int PAGE_SIZE = 4096;
     public static final int INT_SIZE = 4;
+    // number of rows in a batch of getNextBatch
+    public static final int BATCH_SIZE = 1024;
+    // default memory budget of a hash join in pages
+    public static final int DEFAULT_HASH_JOIN_MEMORY = 4096;
+    // default number of extents read ahead of a sequential scan
+    public static final int DEFAULT_READ_AHEAD = 4;
+    public static final int DEFAULT_IO_THREAD_COUNT = 2;
+    // default capacity of the buffer pool in pages
+    public static final int DEFAULT_BUFFER_POOL_SIZE = 16384;
+    // default memory to sort the data entries of an index build in pages
+    public static final int DEFAULT_INDEX_BUILD_MEMORY = 4096;
+    // default number of rows sampled from each table for the histograms
+    public static final int DEFAULT_STATS_SAMPLE_SIZE = 1024;
 
     public enum JoinMethod {
         TNLJ, BNLJ, SMJ, HASH;
@@ -0,0 +1,376 @@
+package util;
+
+import model.Tuple;
+import net.sf.jsqlparser.expression.*;
+import net.sf.jsqlparser.expression.operators.arithmetic.*;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.*;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.select.SubSelect;
+import util.codegen.CodeGenerator;
+
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Compile an expression into a TuplePredicate once per operator
+ * column positions are resolved from the schema at compile time, so the
+ * evaluation of a tuple does not look up the schema or allocate anything.
+ *
+ * Expressions the compiler does not support are evaluated by
+ * SelectExpressionVisitor as before.
+ */
+public class ExpressionCompiler implements ExpressionVisitor {
+
+    /**
+     * a compiled operand, either a column of the tuple or a constant
+     */
+    interface Operand {
+        long eval(Tuple tuple);
+    }
+
+    private Map<String, Integer> schema;
+    private Deque<Operand> operands;
+    private Deque<TuplePredicate> predicates;
+    private boolean supported;
+
+    private ExpressionCompiler(Map<String, Integer> schema) {
+        this.schema = schema;
+        this.operands = new LinkedList<>();
+        this.predicates = new LinkedList<>();
+        this.supported = true;
+    }
+
+    /**
+     * compile the expression against the schema, generate bytecode if codegen is on in the Catalog
+     *
+     * @param expression the expression to compile, null for always true
+     * @param schema     schema of the tuples to test
+     * @return the compiled predicate, or an interpreted one if the expression is not supported
+     */
+    public static TuplePredicate compile(Expression expression, Map<String, Integer> schema) {
+        return compile(expression, schema, Catalog.getInstance().isCodegen());
+    }
+
+    /**
+     * @param expression the expression to compile, null for always true
+     * @param schema     schema of the tuples to test
+     * @param generate   try to generate bytecode first
+     * @return the generated or compiled predicate, or an interpreted one if the expression is not supported
+     */
+    public static TuplePredicate compile(Expression expression, Map<String, Integer> schema, boolean generate) {
+        if (expression == null) {
+            return tuple -> true;
+        }
+        if (generate) {
+            TuplePredicate generated = CodeGenerator.generatePredicate(expression, schema);
+            if (generated != null) {
+                return generated;
+            }
+        }
+        ExpressionCompiler compiler = new ExpressionCompiler(schema);
+        expression.accept(compiler);
+        if (compiler.supported && compiler.predicates.size() == 1 && compiler.operands.isEmpty()) {
+            return compiler.predicates.peek();
+        }
+        return interpret(expression, schema);
+    }
+
+    /**
+     * @param expression
+     * @param schema
+     * @return a predicate evaluating the expression with SelectExpressionVisitor
+     */
+    public static TuplePredicate interpret(Expression expression, Map<String, Integer> schema) {
+        return tuple -> {
+            SelectExpressionVisitor sv = new SelectExpressionVisitor(tuple, schema);
+            expression.accept(sv);
+            return sv.getResult();
+        };
+    }
+
+    private void unsupported() {
+        supported = false;
+    }
+
+    /**
+     * pop the two operands of a comparison, the right one is on the top
+     *
+     * @param expression the comparison
+     * @return false if the operands can not be compiled
+     */
+    private boolean compileOperands(BinaryExpression expression) {
+        if (expression.isNot()) {
+            unsupported();
+            return false;
+        }
+        expression.getLeftExpression().accept(this);
+        expression.getRightExpression().accept(this);
+        if (!supported || operands.size() < 2) {
+            unsupported();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void visit(AndExpression andExpression) {
+        if (andExpression.isNot()) {
+            unsupported();
+            return;
+        }
+        andExpression.getLeftExpression().accept(this);
+        andExpression.getRightExpression().accept(this);
+        if (!supported || predicates.size() < 2) {
+            unsupported();
+            return;
+        }
+        TuplePredicate right = predicates.pop();
+        TuplePredicate left = predicates.pop();
+        predicates.push(tuple -> left.test(tuple) && right.test(tuple));
+    }
+
+    @Override
+    public void visit(OrExpression orExpression) {
+        if (orExpression.isNot()) {
+            unsupported();
+            return;
+        }
+        orExpression.getLeftExpression().accept(this);
+        orExpression.getRightExpression().accept(this);
+        if (!supported || predicates.size() < 2) {
+            unsupported();
+            return;
+        }
+        TuplePredicate right = predicates.pop();
+        TuplePredicate left = predicates.pop();
+        predicates.push(tuple -> left.test(tuple) || right.test(tuple));
+    }
+
+    @Override
+    public void visit(Parenthesis parenthesis) {
+        if (parenthesis.isNot()) {
+            unsupported();
+            return;
+        }
+        parenthesis.getExpression().accept(this);
+    }
+
+    /**
+     * resolve the column position now instead of for every tuple
+     *
+     * @param column
+     */
+    @Override
+    public void visit(Column column) {
+        Integer index = schema.get(column.getWholeColumnName());
+        if (index == null) {
+            unsupported();
+            return;
+        }
+        int ind = index;
+        operands.push(tuple -> tuple.getDataAt(ind));
+    }
+
+    @Override
+    public void visit(LongValue longValue) {
+        long value = longValue.getValue();
+        operands.push(tuple -> value);
+    }
+
+    @Override
+    public void visit(EqualsTo equalsTo) {
+        if (compileOperands(equalsTo)) {
+            Operand right = operands.pop();
+            Operand left = operands.pop();
+            predicates.push(tuple -> left.eval(tuple) == right.eval(tuple));
+        }
+    }
+
+    @Override
+    public void visit(NotEqualsTo notEqualsTo) {
+        if (compileOperands(notEqualsTo)) {
+            Operand right = operands.pop();
+            Operand left = operands.pop();
+            predicates.push(tuple -> left.eval(tuple) != right.eval(tuple));
+        }
+    }
+
+    @Override
+    public void visit(GreaterThan greaterThan) {
+        if (compileOperands(greaterThan)) {
+            Operand right = operands.pop();
+            Operand left = operands.pop();
+            predicates.push(tuple -> left.eval(tuple) > right.eval(tuple));
+        }
+    }
+
+    @Override
+    public void visit(GreaterThanEquals greaterThanEquals) {
+        if (compileOperands(greaterThanEquals)) {
+            Operand right = operands.pop();
+            Operand left = operands.pop();
+            predicates.push(tuple -> left.eval(tuple) >= right.eval(tuple));
+        }
+    }
+
+    @Override
+    public void visit(MinorThan minorThan) {
+        if (compileOperands(minorThan)) {
+            Operand right = operands.pop();
+            Operand left = operands.pop();
+            predicates.push(tuple -> left.eval(tuple) < right.eval(tuple));
+        }
+    }
+
+    @Override
+    public void visit(MinorThanEquals minorThanEquals) {
+        if (compileOperands(minorThanEquals)) {
+            Operand right = operands.pop();
+            Operand left = operands.pop();
+            predicates.push(tuple -> left.eval(tuple) <= right.eval(tuple));
+        }
+    }
+
+    @Override
+    public void visit(NullValue nullValue) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(Function function) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(InverseExpression inverseExpression) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(JdbcParameter jdbcParameter) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(DoubleValue doubleValue) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(DateValue dateValue) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(TimeValue timeValue) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(TimestampValue timestampValue) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(StringValue stringValue) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(Addition addition) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(Division division) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(Multiplication multiplication) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(Subtraction subtraction) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(Between between) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(InExpression inExpression) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(IsNullExpression isNullExpression) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(LikeExpression likeExpression) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(SubSelect subSelect) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(CaseExpression caseExpression) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(WhenClause whenClause) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(ExistsExpression existsExpression) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(AllComparisonExpression allComparisonExpression) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(AnyComparisonExpression anyComparisonExpression) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(Concat concat) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(Matches matches) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(BitwiseAnd bitwiseAnd) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(BitwiseOr bitwiseOr) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(BitwiseXor bitwiseXor) {
+        unsupported();
+    }
+}
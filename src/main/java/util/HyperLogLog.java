@@ -0,0 +1,87 @@
+package util;
+
+/**
+ * HyperLogLog sketch of the number of distinct values of a column
+ * every value is hashed, the first bits of the hash pick a register and the
+ * register keeps the longest run of leading zeros seen in the other bits.
+ * The estimate is the harmonic mean of the registers, with linear counting
+ * for the small cardinalities. 2^12 registers give about 1.6% standard error.
+ *
+ * Two sketches merge by taking the max of every register.
+ */
+public class HyperLogLog {
+    private static final int PRECISION = 12;
+    public static final int REGISTER_COUNT = 1 << PRECISION;
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTER_COUNT];
+    }
+
+    /**
+     * @param registers registers of a stored sketch
+     */
+    public HyperLogLog(byte[] registers) {
+        if (registers.length != REGISTER_COUNT) {
+            throw new IllegalArgumentException("Expected " + REGISTER_COUNT + " registers");
+        }
+        this.registers = registers;
+    }
+
+    public void add(int value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (64 - PRECISION));
+        // a sentinel bit bounds the run of zeros
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * @return estimated number of distinct values added
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+        double estimate = alpha * REGISTER_COUNT * REGISTER_COUNT / sum;
+        if (estimate <= 2.5 * REGISTER_COUNT && zeros > 0) {
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * add the values of another sketch
+     */
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTER_COUNT; i++) {
+            registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+        }
+    }
+
+    public byte[] getRegisters() {
+        return registers;
+    }
+
+    /**
+     * 64 bit finalizer of murmur3
+     */
+    private static long hash(int value) {
+        long h = value * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
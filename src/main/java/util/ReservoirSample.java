@@ -0,0 +1,121 @@
+package util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Uniform sample of the rows of a table, kept by reservoir sampling
+ * the first rows fill the reservoir, the ith row after that replaces a random
+ * row of the reservoir with probability capacity / i. The random generator is
+ * seeded, so a table always gives the same sample.
+ */
+public class ReservoirSample {
+    private static final long SEED = 0x2545f4914f6cdd1dL;
+
+    private final int capacity;
+    private final int[][] rows;
+    private int size;
+    private long seen;
+    private final Random random = new Random(SEED);
+
+    /**
+     * @param capacity number of rows kept
+     */
+    public ReservoirSample(int capacity) {
+        this.capacity = capacity;
+        this.rows = new int[capacity][];
+    }
+
+    /**
+     * @param capacity number of rows kept
+     * @param rows     rows of a stored sample
+     * @param seen     number of rows the stored sample was taken from
+     */
+    public ReservoirSample(int capacity, int[][] rows, long seen) {
+        this(capacity);
+        this.size = Math.min(rows.length, capacity);
+        System.arraycopy(rows, 0, this.rows, 0, size);
+        this.seen = seen;
+    }
+
+    /**
+     * @param row the row, copied if it is kept
+     */
+    public void add(int[] row) {
+        seen++;
+        if (size < capacity) {
+            rows[size++] = row.clone();
+            return;
+        }
+        long slot = (long) (random.nextDouble() * seen);
+        if (slot < capacity) {
+            rows[(int) slot] = row.clone();
+        }
+    }
+
+    /**
+     * merge the sample of other rows of the same table, every row of the merged
+     * sample comes from one side with the probability of its share of the rows seen
+     */
+    public void merge(ReservoirSample other) {
+        if (other.seen == 0) {
+            return;
+        }
+        int[][] mine = shuffled(rows, size);
+        int[][] theirs = shuffled(other.rows, other.size);
+        int count = Math.min(capacity, size + other.size);
+        int i = 0, j = 0;
+        for (int k = 0; k < count; k++) {
+            boolean takeMine = j == theirs.length
+                    || (i < mine.length && random.nextDouble() * (seen + other.seen) < seen);
+            rows[k] = takeMine ? mine[i++] : theirs[j++];
+        }
+        size = count;
+        seen += other.seen;
+    }
+
+    private int[][] shuffled(int[][] source, int count) {
+        int[][] copy = Arrays.copyOf(source, count);
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int[] row = copy[i];
+            copy[i] = copy[j];
+            copy[j] = row;
+        }
+        return copy;
+    }
+
+    /**
+     * @return the rows of the sample
+     */
+    public int[][] getRows() {
+        return Arrays.copyOf(rows, size);
+    }
+
+    /**
+     * @param column index of the column
+     * @return the values of the column in the sample
+     */
+    public int[] getColumn(int column) {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = rows[i][column];
+        }
+        return values;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of rows added
+     */
+    public long getSeen() {
+        return seen;
+    }
+}
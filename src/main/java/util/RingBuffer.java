@@ -0,0 +1,130 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded ring buffer handing items from several producer threads to one consumer
+ * lock free: producers claim a slot by a CAS on the tail, every slot carries a
+ * sequence number telling whether it is free for the producers or filled for the
+ * consumer. Threads spin, yield and then park for a short while when the buffer
+ * is full or empty.
+ *
+ * The end of the stream is reached when all the producers have called
+ * producerDone and the buffer is drained, then take returns null. A closed
+ * buffer drops the items put and take returns null, so the producers of a
+ * consumer that gave up do not wait for it.
+ *
+ * @param <T> type of the items
+ */
+public class RingBuffer<T> {
+    private static final int SPINS = 64;
+    private static final int YIELDS = 16;
+    private static final long PARK_NANOS = 20_000L;
+
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // only the consumer moves the head
+    private long head = 0;
+    private final AtomicInteger producers;
+    private volatile boolean closed = false;
+
+    /**
+     * @param capacity  least number of items the buffer holds, rounded up to a power of two
+     * @param producers number of producers that will call producerDone
+     */
+    public RingBuffer(int capacity, int producers) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.buffer = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.producers = new AtomicInteger(producers);
+    }
+
+    /**
+     * put an item, wait while the buffer is full
+     *
+     * @param item not null
+     */
+    public void put(T item) {
+        int idle = 0;
+        while (!closed) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer[index] = item;
+                    // publish the item to the consumer
+                    sequences.set(index, position + 1);
+                    return;
+                }
+            } else if (difference < 0) {
+                // full, the consumer has not freed the slot yet
+                idle = backOff(idle);
+            }
+        }
+    }
+
+    /**
+     * take the next item, wait while the buffer is empty
+     *
+     * @return the item, null when all the producers are done and the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T take() {
+        int idle = 0;
+        int index = (int) (head & mask);
+        while (!closed) {
+            if (sequences.get(index) == head + 1) {
+                T item = (T) buffer[index];
+                buffer[index] = null;
+                // free the slot for the producers of the next round
+                sequences.set(index, head + buffer.length);
+                head++;
+                return item;
+            }
+            if (producers.get() == 0) {
+                // a producer may have published right before it was done
+                if (sequences.get(index) == head + 1) {
+                    continue;
+                }
+                return null;
+            }
+            idle = backOff(idle);
+        }
+        return null;
+    }
+
+    /**
+     * called by every producer once it has put all its items
+     */
+    public void producerDone() {
+        producers.decrementAndGet();
+    }
+
+    /**
+     * called by the consumer to give up the stream
+     */
+    public void close() {
+        closed = true;
+    }
+
+    private static int backOff(int idle) {
+        if (idle < SPINS) {
+            // busy spin
+        } else if (idle < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return idle + 1;
+    }
+}
@@ -0,0 +1,236 @@
+package util;
+
+import io.BinaryTupleReader;
+import model.Histogram;
+import model.TableStatistics;
+import model.Tuple;
+import model.TupleBatch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Collect the statistics of a table in one pass with bounded memory
+ * the min, max and count are exact, the distinct counts are HyperLogLog
+ * sketches. The values of a column are counted exactly until the column has
+ * MAX_EXACT_VALUES distinct values, after that its histogram is built from the
+ * sample of the rows.
+ *
+ * Collectors of different parts of a table merge into the collector of the table,
+ * a table is split into page ranges scanned in parallel by a fork-join pool.
+ */
+public class StatsCollector {
+    // distinct values of a column counted exactly
+    public static final int MAX_EXACT_VALUES = 4096;
+    // pages of a table scanned by one task
+    static final int PAGES_PER_TASK = 256;
+
+    private int width;
+    private long count;
+    private int[] min;
+    private int[] max;
+    private HyperLogLog[] sketches;
+    private List<Map<Integer, Long>> exact;
+    private ReservoirSample sample;
+    private int[] row;
+
+    /**
+     * @param width      number of columns
+     * @param sampleSize rows of the sample, 0 for no sample
+     */
+    public StatsCollector(int width, int sampleSize) {
+        this.width = width;
+        this.min = new int[width];
+        this.max = new int[width];
+        this.sketches = new HyperLogLog[width];
+        this.exact = new ArrayList<>(width);
+        for (int i = 0; i < width; i++) {
+            min[i] = Integer.MAX_VALUE;
+            max[i] = Integer.MIN_VALUE;
+            sketches[i] = new HyperLogLog();
+            exact.add(new HashMap<>());
+        }
+        this.sample = sampleSize > 0 ? new ReservoirSample(sampleSize) : null;
+        this.row = new int[width];
+    }
+
+    public void add(Tuple tuple) {
+        count++;
+        for (int i = 0; i < width; i++) {
+            int value = tuple.getDataAt(i);
+            row[i] = value;
+            addValue(i, value);
+        }
+        if (sample != null) {
+            sample.add(row);
+        }
+    }
+
+    /**
+     * add the rows of a batch, column by column
+     */
+    public void add(TupleBatch batch) {
+        int size = batch.getSize();
+        count += size;
+        for (int i = 0; i < width; i++) {
+            int[] column = batch.getColumn(i);
+            for (int r = 0; r < size; r++) {
+                addValue(i, column[r]);
+            }
+        }
+        if (sample != null) {
+            for (int r = 0; r < size; r++) {
+                batch.readRow(r, row);
+                sample.add(row);
+            }
+        }
+    }
+
+    private void addValue(int column, int value) {
+        if (value < min[column]) {
+            min[column] = value;
+        }
+        if (value > max[column]) {
+            max[column] = value;
+        }
+        sketches[column].add(value);
+        Map<Integer, Long> counts = exact.get(column);
+        if (counts != null) {
+            counts.merge(value, 1L, Long::sum);
+            if (counts.size() > MAX_EXACT_VALUES) {
+                exact.set(column, null);
+            }
+        }
+    }
+
+    /**
+     * add the statistics of another part of the table
+     */
+    public void merge(StatsCollector other) {
+        count += other.count;
+        for (int i = 0; i < width; i++) {
+            min[i] = Math.min(min[i], other.min[i]);
+            max[i] = Math.max(max[i], other.max[i]);
+            sketches[i].merge(other.sketches[i]);
+            if (exact.get(i) != null && other.exact.get(i) != null) {
+                for (Map.Entry<Integer, Long> entry : other.exact.get(i).entrySet()) {
+                    exact.get(i).merge(entry.getKey(), entry.getValue(), Long::sum);
+                }
+                if (exact.get(i).size() > MAX_EXACT_VALUES) {
+                    exact.set(i, null);
+                }
+            } else {
+                exact.set(i, null);
+            }
+        }
+        if (sample != null && other.sample != null) {
+            sample.merge(other.sample);
+        }
+    }
+
+    /**
+     * start collecting the statistics of a table file in the pool
+     *
+     * @param pool       pool running the scans of the page ranges
+     * @param path       table file
+     * @param width      number of columns
+     * @param sampleSize rows of the sample, 0 for no sample
+     * @return the task, its result is the collector of the whole table
+     */
+    public static ForkJoinTask<StatsCollector> collect(ForkJoinPool pool, String path, int width, int sampleSize)
+            throws Exception {
+        BinaryTupleReader reader = new BinaryTupleReader(path, false);
+        int pageSize = reader.getPageSize();
+        reader.close();
+        long pages = (new File(path).length() + pageSize - 1) / pageSize;
+        return pool.submit(new RangeTask(path, width, sampleSize, 0, (int) pages));
+    }
+
+    /**
+     * collect the statistics of the pages [firstPage, lastPage) of a table,
+     * a large range is split in two halves, the half on the left is merged first
+     * so the result does not depend on the scheduling
+     */
+    private static class RangeTask extends RecursiveTask<StatsCollector> {
+        private static final long serialVersionUID = 1L;
+
+        private final String path;
+        private final int width;
+        private final int sampleSize;
+        private final int firstPage;
+        private final int lastPage;
+
+        RangeTask(String path, int width, int sampleSize, int firstPage, int lastPage) {
+            this.path = path;
+            this.width = width;
+            this.sampleSize = sampleSize;
+            this.firstPage = firstPage;
+            this.lastPage = lastPage;
+        }
+
+        @Override
+        protected StatsCollector compute() {
+            if (lastPage - firstPage <= PAGES_PER_TASK) {
+                return scan();
+            }
+            int middle = (firstPage + lastPage) >>> 1;
+            RangeTask left = new RangeTask(path, width, sampleSize, firstPage, middle);
+            RangeTask right = new RangeTask(path, width, sampleSize, middle, lastPage);
+            left.fork();
+            StatsCollector rightStats = right.compute();
+            StatsCollector leftStats = left.join();
+            leftStats.merge(rightStats);
+            return leftStats;
+        }
+
+        private StatsCollector scan() {
+            StatsCollector collector = new StatsCollector(width, sampleSize);
+            BinaryTupleReader reader = new BinaryTupleReader(path, false);
+            try {
+                if (firstPage > 0) {
+                    reader.reset(firstPage, 0);
+                }
+                Tuple tuple;
+                while ((tuple = reader.readNextView()) != null && reader.getLastReadPageIndex() < lastPage) {
+                    collector.add(tuple);
+                }
+                reader.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to scan " + path, e);
+            }
+            return collector;
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @param table       table name
+     * @param columns     column names in the order of the schema
+     * @param fingerprint fingerprint of the table file
+     * @return the statistics of the rows added
+     */
+    public TableStatistics finish(String table, String[] columns, long[] fingerprint) {
+        long[] distinct = new long[width];
+        Histogram[] histograms = new Histogram[width];
+        for (int i = 0; i < width; i++) {
+            if (exact.get(i) != null) {
+                distinct[i] = exact.get(i).size();
+                histograms[i] = Histogram.fromCounts(columns[i], exact.get(i));
+            } else {
+                distinct[i] = sketches[i].estimate();
+                int[] values = sample == null ? new int[0] : sample.getColumn(i);
+                histograms[i] = Histogram.fromSample(columns[i], values, count, distinct[i], min[i], max[i]);
+            }
+        }
+        return new TableStatistics(table, fingerprint, count, columns, min, max, distinct, histograms, sample);
+    }
+}
@@ -0,0 +1,168 @@
+package util;
+
+import model.Histogram;
+import model.TableStatistics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary file of the table statistics
+ * magic, version, number of tables, then for each table its name, the
+ * fingerprint of its file, the row count, the statistics of every column and
+ * the sample of the rows.
+ *
+ * The fingerprint of a table file is its length, its last modified time and the
+ * checksum of its first and last pages.
+ */
+public class StatsFile {
+    private static final int MAGIC = 0x53544154;
+    private static final int VERSION = 1;
+
+    /**
+     * @param path stats file
+     * @return the statistics by table, empty if the file does not exist or cannot be read
+     */
+    public static Map<String, TableStatistics> read(String path) {
+        Map<String, TableStatistics> statistics = new LinkedHashMap<>();
+        File file = new File(path);
+        if (!file.exists()) {
+            return statistics;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.err.println("Unexpected stats file format, statistics are computed again");
+                return statistics;
+            }
+            int tables = in.readInt();
+            for (int t = 0; t < tables; t++) {
+                TableStatistics tableStatistics = readTable(in);
+                statistics.put(tableStatistics.getTable(), tableStatistics);
+            }
+        } catch (IOException e) {
+            System.err.println("Stats file read failed, statistics are computed again");
+            statistics.clear();
+        }
+        return statistics;
+    }
+
+    private static TableStatistics readTable(DataInputStream in) throws IOException {
+        String table = in.readUTF();
+        long[] fingerprint = new long[]{in.readLong(), in.readLong(), in.readLong()};
+        long count = in.readLong();
+        int width = in.readInt();
+        String[] columns = new String[width];
+        int[] min = new int[width];
+        int[] max = new int[width];
+        long[] distinct = new long[width];
+        Histogram[] histograms = new Histogram[width];
+        for (int i = 0; i < width; i++) {
+            columns[i] = in.readUTF();
+            min[i] = in.readInt();
+            max[i] = in.readInt();
+            distinct[i] = in.readLong();
+            histograms[i] = Histogram.read(in, columns[i]);
+        }
+        ReservoirSample sample = null;
+        int capacity = in.readInt();
+        if (capacity > 0) {
+            long seen = in.readLong();
+            int[][] rows = new int[in.readInt()][width];
+            for (int[] row : rows) {
+                for (int i = 0; i < width; i++) {
+                    row[i] = in.readInt();
+                }
+            }
+            sample = new ReservoirSample(capacity, rows, seen);
+        }
+        return new TableStatistics(table, fingerprint, count, columns, min, max, distinct, histograms, sample);
+    }
+
+    /**
+     * write the statistics to a temp file and rename it over the stats file
+     *
+     * @param path       stats file
+     * @param statistics statistics by table
+     */
+    public static void write(String path, Map<String, TableStatistics> statistics) throws IOException {
+        File file = new File(path);
+        File temp = new File(path + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(statistics.size());
+            for (TableStatistics tableStatistics : statistics.values()) {
+                writeTable(out, tableStatistics);
+            }
+        }
+        if (!temp.renameTo(file)) {
+            file.delete();
+            if (!temp.renameTo(file)) {
+                throw new IOException("Cannot replace " + path);
+            }
+        }
+    }
+
+    private static void writeTable(DataOutputStream out, TableStatistics statistics) throws IOException {
+        out.writeUTF(statistics.getTable());
+        for (long value : statistics.getFingerprint()) {
+            out.writeLong(value);
+        }
+        out.writeLong(statistics.getCount());
+        String[] columns = statistics.getColumns();
+        out.writeInt(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            out.writeUTF(columns[i]);
+            out.writeInt(statistics.getMin(i));
+            out.writeInt(statistics.getMax(i));
+            out.writeLong(statistics.getDistinct(i));
+            statistics.getHistogram(i).write(out);
+        }
+        ReservoirSample sample = statistics.getSample();
+        if (sample == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(sample.getCapacity());
+        out.writeLong(sample.getSeen());
+        int[][] rows = sample.getRows();
+        out.writeInt(rows.length);
+        for (int[] row : rows) {
+            for (int value : row) {
+                out.writeInt(value);
+            }
+        }
+    }
+
+    /**
+     * @param file table file
+     * @return length, last modified time and checksum of the first and last pages of the file
+     */
+    public static long[] fingerprint(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        long length = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] page = new byte[(int) Math.min(length, Constants.PAGE_SIZE)];
+            raf.readFully(page);
+            crc.update(page);
+            if (length > Constants.PAGE_SIZE) {
+                long last = Math.max(length - Constants.PAGE_SIZE, Constants.PAGE_SIZE);
+                page = new byte[(int) (length - last)];
+                raf.seek(last);
+                raf.readFully(page);
+                crc.update(page);
+            }
+        }
+        return new long[]{length, file.lastModified(), crc.getValue()};
+    }
+}
@@ -0,0 +1,15 @@
+package util;
+
+import model.Tuple;
+
+/**
+ * A compiled boolean expression over the tuples of one schema
+ * built once per operator by ExpressionCompiler
+ */
+public interface TuplePredicate {
+    /**
+     * @param tuple
+     * @return true if the tuple satisfies the expression
+     */
+    boolean test(Tuple tuple);
+}
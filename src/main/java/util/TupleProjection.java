@@ -0,0 +1,42 @@
+package util;
+
+import model.Tuple;
+
+/**
+ * A projection of a tuple onto some of its columns
+ */
+public interface TupleProjection {
+    /**
+     * @param tuple
+     * @return data of the projected tuple, a new array for every call
+     */
+    int[] project(Tuple tuple);
+
+    /**
+     * @param tuple
+     * @param into  array receiving the projected columns, reused by the caller
+     * @return into
+     */
+    int[] project(Tuple tuple, int[] into);
+
+    /**
+     * @param indexes the ith column of the result is column indexes[i] of the tuple
+     * @return a projection looping over the indexes
+     */
+    static TupleProjection of(int[] indexes) {
+        return new TupleProjection() {
+            @Override
+            public int[] project(Tuple tuple) {
+                return project(tuple, new int[indexes.length]);
+            }
+
+            @Override
+            public int[] project(Tuple tuple, int[] into) {
+                for (int i = 0; i < indexes.length; i++) {
+                    into[i] = tuple.getDataAt(indexes[i]);
+                }
+                return into;
+            }
+        };
+    }
+}
@@ -0,0 +1,66 @@
+package util;
+
+import model.Tuple;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sort tuples by a list of key columns without comparing tuples
+ * the value of the first key column of every row is packed with the row index in
+ * a long, the value in the high half, so the longs sort as primitives in the
+ * order of the column. The rows of equal values are then sorted the same way by
+ * the next key column, until the columns run out.
+ */
+public class TupleSorter {
+    private static final long ROW_MASK = 0xffffffffL;
+
+    /**
+     * sort the tuples in place
+     *
+     * @param tuples     tuples of the same length
+     * @param keyColumns indexes of the key columns, the first one compared first
+     */
+    public static void sort(List<Tuple> tuples, int[] keyColumns) {
+        int size = tuples.size();
+        if (size < 2 || keyColumns.length == 0) {
+            return;
+        }
+        Tuple[] rows = tuples.toArray(new Tuple[size]);
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        sort(rows, keyColumns, 0, order, 0, size, new long[size]);
+        for (int i = 0; i < size; i++) {
+            tuples.set(i, rows[order[i]]);
+        }
+    }
+
+    /**
+     * sort order[from, to) by the key columns from depth on
+     */
+    private static void sort(Tuple[] rows, int[] keyColumns, int depth, int[] order, int from, int to,
+                             long[] packed) {
+        int column = keyColumns[depth];
+        for (int i = from; i < to; i++) {
+            packed[i] = ((long) rows[order[i]].getDataAt(column) << 32) | order[i];
+        }
+        Arrays.sort(packed, from, to);
+        for (int i = from; i < to; i++) {
+            order[i] = (int) (packed[i] & ROW_MASK);
+        }
+        if (depth + 1 == keyColumns.length) {
+            return;
+        }
+        int start = from;
+        for (int i = from + 1; i <= to; i++) {
+            if (i == to || packed[i] >> 32 != packed[start] >> 32) {
+                if (i - start > 1) {
+                    sort(rows, keyColumns, depth + 1, order, start, i, packed);
+                }
+                start = i;
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package util.codegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal class file writer, just enough for the generated predicates and projections:
+ * a public final class with a default constructor and a few methods
+ *
+ * The class file version is 49 (Java 5), so the methods need no stack map frames.
+ */
+class ClassEmitter {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 49;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private DataOutputStream pool = new DataOutputStream(poolBytes);
+    private Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private int thisClass;
+    private int superClass;
+    private List<Integer> interfaces = new ArrayList<>();
+    private List<byte[]> methods = new ArrayList<>();
+
+    /**
+     * @param className     internal name of the class, e.g. util/codegen/Foo
+     * @param interfaceName internal name of the implemented interface
+     */
+    ClassEmitter(String className, String interfaceName) {
+        this.thisClass = classRef(className);
+        this.superClass = classRef("java/lang/Object");
+        this.interfaces.add(classRef(interfaceName));
+        addConstructor();
+    }
+
+    int utf8(String value) {
+        Integer index = poolIndex.get("U" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(CONSTANT_UTF8);
+            pool.writeUTF(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return newEntry("U" + value, 1);
+    }
+
+    int classRef(String internalName) {
+        Integer index = poolIndex.get("C" + internalName);
+        if (index != null) {
+            return index;
+        }
+        int name = utf8(internalName);
+        write(CONSTANT_CLASS, name);
+        return newEntry("C" + internalName, 1);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        String key = "M" + owner + "." + name + descriptor;
+        Integer index = poolIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        write(CONSTANT_METHODREF, ownerIndex, nameAndType);
+        return newEntry(key, 1);
+    }
+
+    int intConstant(int value) {
+        Integer index = poolIndex.get("I" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(CONSTANT_INTEGER);
+            pool.writeInt(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return newEntry("I" + value, 1);
+    }
+
+    int longConstant(long value) {
+        Integer index = poolIndex.get("J" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(CONSTANT_LONG);
+            pool.writeLong(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        // a long takes two entries of the pool
+        return newEntry("J" + value, 2);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        String key = "N" + name + descriptor;
+        Integer index = poolIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        write(CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex);
+        return newEntry(key, 1);
+    }
+
+    private void write(int tag, int... shorts) {
+        try {
+            pool.writeByte(tag);
+            for (int s : shorts) {
+                pool.writeShort(s);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int newEntry(String key, int size) {
+        int index = poolCount;
+        poolIndex.put(key, index);
+        poolCount += size;
+        return index;
+    }
+
+    /**
+     * public constructor calling Object()
+     */
+    private void addConstructor() {
+        CodeBuilder code = new CodeBuilder(this);
+        code.op(CodeBuilder.ALOAD_0);
+        code.op(CodeBuilder.INVOKESPECIAL);
+        code.u2(methodRef("java/lang/Object", "<init>", "()V"));
+        code.op(CodeBuilder.RETURN);
+        addMethod("<init>", "()V", code, 1, 1);
+    }
+
+    /**
+     * add a public method
+     *
+     * @param name
+     * @param descriptor
+     * @param code       method body
+     * @param maxStack
+     * @param maxLocals
+     */
+    void addMethod(String name, String descriptor, CodeBuilder code, int maxStack, int maxLocals) {
+        byte[] bytecode = code.toByteArray();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            // Code attribute
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + bytecode.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(bytecode.length);
+            out.write(bytecode);
+            out.writeShort(0);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    /**
+     * @return the class file
+     */
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            out.write(poolBytes.toByteArray());
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.size());
+            for (int index : interfaces) {
+                out.writeShort(index);
+            }
+            out.writeShort(0);
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
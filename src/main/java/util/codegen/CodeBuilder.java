@@ -0,0 +1,159 @@
+package util.codegen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bytecode of one method, with forward branches patched once their labels are marked
+ */
+class CodeBuilder {
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int LCONST_0 = 0x09;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ALOAD_0 = 0x2a;
+    static final int ALOAD_1 = 0x2b;
+    static final int ALOAD_2 = 0x2c;
+    static final int IASTORE = 0x4f;
+    static final int DUP = 0x59;
+    static final int I2L = 0x85;
+    static final int LCMP = 0x94;
+    static final int IFEQ = 0x99;
+    static final int IF_ICMPEQ = 0x9f;
+    static final int GOTO = 0xa7;
+    static final int IRETURN = 0xac;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int NEWARRAY = 0xbc;
+    static final int T_INT = 10;
+
+    /**
+     * a position in the code, branches to it are patched when it is marked
+     */
+    static class Label {
+        private int position = -1;
+        private List<Integer> branches = new ArrayList<>();
+    }
+
+    private ClassEmitter emitter;
+    private byte[] code = new byte[64];
+    private int length = 0;
+
+    CodeBuilder(ClassEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    void op(int opcode) {
+        u1(opcode);
+    }
+
+    void u1(int value) {
+        if (length == code.length) {
+            code = Arrays.copyOf(code, length * 2);
+        }
+        code[length++] = (byte) value;
+    }
+
+    void u2(int value) {
+        u1(value >> 8);
+        u1(value);
+    }
+
+    /**
+     * push an int constant with the shortest instruction
+     *
+     * @param value
+     */
+    void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            op(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            op(BIPUSH);
+            u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            op(SIPUSH);
+            u2(value);
+        } else {
+            int index = emitter.intConstant(value);
+            if (index < 256) {
+                op(LDC);
+                u1(index);
+            } else {
+                op(LDC_W);
+                u2(index);
+            }
+        }
+    }
+
+    /**
+     * push a long constant
+     *
+     * @param value
+     */
+    void pushLong(long value) {
+        if (value == 0 || value == 1) {
+            op(LCONST_0 + (int) value);
+        } else {
+            op(LDC2_W);
+            u2(emitter.longConstant(value));
+        }
+    }
+
+    /**
+     * call a public instance method
+     */
+    void invokeVirtual(String owner, String name, String descriptor) {
+        op(INVOKEVIRTUAL);
+        u2(emitter.methodRef(owner, name, descriptor));
+    }
+
+    Label newLabel() {
+        return new Label();
+    }
+
+    /**
+     * emit a branch instruction to the label
+     *
+     * @param opcode one of the if and goto instructions
+     * @param label
+     */
+    void jump(int opcode, Label label) {
+        int at = length;
+        op(opcode);
+        if (label.position >= 0) {
+            u2(label.position - at);
+        } else {
+            label.branches.add(at);
+            u2(0);
+        }
+    }
+
+    /**
+     * mark the current position, patch the branches already emitted to it
+     *
+     * @param label
+     */
+    void mark(Label label) {
+        label.position = length;
+        for (int at : label.branches) {
+            int offset = length - at;
+            if (offset > Short.MAX_VALUE) {
+                throw new IllegalStateException("Method too large");
+            }
+            code[at + 1] = (byte) (offset >> 8);
+            code[at + 2] = (byte) offset;
+        }
+        label.branches.clear();
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(code, length);
+    }
+}
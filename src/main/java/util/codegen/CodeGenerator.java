@@ -0,0 +1,286 @@
+package util.codegen;
+
+import model.Tuple;
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.*;
+import net.sf.jsqlparser.schema.Column;
+import util.TuplePredicate;
+import util.TupleProjection;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generate the bytecode of a predicate or a projection specialized for one query
+ * column positions and constants are baked into the class as immediates, the
+ * comparisons and the short-circuit of AND/OR become plain branches, which the
+ * JIT compiles like hand written code.
+ *
+ * Only the expressions ExpressionCompiler supports are generated, the
+ * callers fall back to the compiled or interpreted path when null is returned.
+ */
+public class CodeGenerator {
+    private static final String TUPLE = Tuple.class.getName().replace('.', '/');
+    private static final String PACKAGE = CodeGenerator.class.getPackage().getName().replace('.', '/');
+    private static final AtomicInteger classCount = new AtomicInteger();
+
+    // comparisons in the order of the branch opcodes, the negation of i is i ^ 1
+    private static final int EQ = 0;
+    private static final int NE = 1;
+    private static final int LT = 2;
+    private static final int GE = 3;
+    private static final int GT = 4;
+    private static final int LE = 5;
+
+    /**
+     * each generated class has its own loader, so it is unloaded with its operator
+     */
+    private static class GeneratedClassLoader extends ClassLoader {
+        GeneratedClassLoader() {
+            super(CodeGenerator.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+
+    private Map<String, Integer> schema;
+    private CodeBuilder code;
+
+    private CodeGenerator(Map<String, Integer> schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * generate a predicate for the expression
+     *
+     * @param expression
+     * @param schema     schema of the tuples to test
+     * @return the generated predicate, null if the expression is not supported
+     */
+    public static TuplePredicate generatePredicate(Expression expression, Map<String, Integer> schema) {
+        String className = PACKAGE + "/GeneratedPredicate" + classCount.incrementAndGet();
+        ClassEmitter emitter = new ClassEmitter(className, TuplePredicate.class.getName().replace('.', '/'));
+        CodeGenerator generator = new CodeGenerator(schema);
+        generator.code = new CodeBuilder(emitter);
+        try {
+            CodeBuilder.Label isFalse = generator.code.newLabel();
+            if (!generator.jumpIfFalse(expression, isFalse)) {
+                return null;
+            }
+            generator.code.op(CodeBuilder.ICONST_1);
+            generator.code.op(CodeBuilder.IRETURN);
+            generator.code.mark(isFalse);
+            generator.code.op(CodeBuilder.ICONST_0);
+            generator.code.op(CodeBuilder.IRETURN);
+            // at most two longs and the tuple with an index
+            emitter.addMethod("test", "(L" + TUPLE + ";)Z", generator.code, 6, 2);
+            return (TuplePredicate) newInstance(className, emitter);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * generate a projection copying the given columns
+     *
+     * @param indexes the ith column of the result is column indexes[i] of the tuple
+     * @return the generated projection, null if it can not be generated
+     */
+    public static TupleProjection generateProjection(int[] indexes) {
+        String className = PACKAGE + "/GeneratedProjection" + classCount.incrementAndGet();
+        ClassEmitter emitter = new ClassEmitter(className, TupleProjection.class.getName().replace('.', '/'));
+        // project(tuple) fills a new array, project(tuple, into) the given one
+        CodeBuilder code = new CodeBuilder(emitter);
+        code.pushInt(indexes.length);
+        code.op(CodeBuilder.NEWARRAY);
+        code.u1(CodeBuilder.T_INT);
+        emitProjection(code, indexes);
+        CodeBuilder intoCode = new CodeBuilder(emitter);
+        intoCode.op(CodeBuilder.ALOAD_2);
+        emitProjection(intoCode, indexes);
+        try {
+            emitter.addMethod("project", "(L" + TUPLE + ";)[I", code, 5, 2);
+            emitter.addMethod("project", "(L" + TUPLE + ";[I)[I", intoCode, 5, 3);
+            return (TupleProjection) newInstance(className, emitter);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * copy the columns into the array on the top of the stack and return it
+     */
+    private static void emitProjection(CodeBuilder code, int[] indexes) {
+        for (int i = 0; i < indexes.length; i++) {
+            code.op(CodeBuilder.DUP);
+            code.pushInt(i);
+            code.op(CodeBuilder.ALOAD_1);
+            code.pushInt(indexes[i]);
+            code.invokeVirtual(TUPLE, "getDataAt", "(I)I");
+            code.op(CodeBuilder.IASTORE);
+        }
+        code.op(CodeBuilder.ARETURN);
+    }
+
+    private static Object newInstance(String className, ClassEmitter emitter) throws Exception {
+        Class<?> c = new GeneratedClassLoader().define(className.replace('/', '.'), emitter.toByteArray());
+        return c.getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * emit the code jumping to the label when the expression is false, falling through otherwise
+     *
+     * @return false if the expression is not supported
+     */
+    private boolean jumpIfFalse(Expression expression, CodeBuilder.Label target) {
+        if (expression instanceof Parenthesis) {
+            Parenthesis parenthesis = (Parenthesis) expression;
+            return !parenthesis.isNot() && jumpIfFalse(parenthesis.getExpression(), target);
+        }
+        if (expression instanceof AndExpression) {
+            AndExpression and = (AndExpression) expression;
+            return !and.isNot()
+                    && jumpIfFalse(and.getLeftExpression(), target)
+                    && jumpIfFalse(and.getRightExpression(), target);
+        }
+        if (expression instanceof OrExpression) {
+            OrExpression or = (OrExpression) expression;
+            if (or.isNot()) {
+                return false;
+            }
+            CodeBuilder.Label isTrue = code.newLabel();
+            if (!jumpIfTrue(or.getLeftExpression(), isTrue) || !jumpIfFalse(or.getRightExpression(), target)) {
+                return false;
+            }
+            code.mark(isTrue);
+            return true;
+        }
+        return compare(expression, target, true);
+    }
+
+    /**
+     * emit the code jumping to the label when the expression is true, falling through otherwise
+     *
+     * @return false if the expression is not supported
+     */
+    private boolean jumpIfTrue(Expression expression, CodeBuilder.Label target) {
+        if (expression instanceof Parenthesis) {
+            Parenthesis parenthesis = (Parenthesis) expression;
+            return !parenthesis.isNot() && jumpIfTrue(parenthesis.getExpression(), target);
+        }
+        if (expression instanceof AndExpression) {
+            AndExpression and = (AndExpression) expression;
+            if (and.isNot()) {
+                return false;
+            }
+            CodeBuilder.Label isFalse = code.newLabel();
+            if (!jumpIfFalse(and.getLeftExpression(), isFalse) || !jumpIfTrue(and.getRightExpression(), target)) {
+                return false;
+            }
+            code.mark(isFalse);
+            return true;
+        }
+        if (expression instanceof OrExpression) {
+            OrExpression or = (OrExpression) expression;
+            return !or.isNot()
+                    && jumpIfTrue(or.getLeftExpression(), target)
+                    && jumpIfTrue(or.getRightExpression(), target);
+        }
+        return compare(expression, target, false);
+    }
+
+    /**
+     * emit a comparison of two operands and a branch
+     *
+     * @param expression  the comparison
+     * @param target      label to jump to
+     * @param whenFalse   jump when the comparison is false instead of true
+     * @return false if the expression is not supported
+     */
+    private boolean compare(Expression expression, CodeBuilder.Label target, boolean whenFalse) {
+        int condition = condition(expression);
+        if (condition < 0 || ((BinaryExpression) expression).isNot()) {
+            return false;
+        }
+        Expression left = ((BinaryExpression) expression).getLeftExpression();
+        Expression right = ((BinaryExpression) expression).getRightExpression();
+        if (!isOperand(left) || !isOperand(right)) {
+            return false;
+        }
+        if (whenFalse) {
+            condition ^= 1;
+        }
+        // columns are ints, compare as longs only when a constant does not fit in an int
+        if (fitsInt(left) && fitsInt(right)) {
+            loadInt(left);
+            loadInt(right);
+            code.jump(CodeBuilder.IF_ICMPEQ + condition, target);
+        } else {
+            loadLong(left);
+            loadLong(right);
+            code.op(CodeBuilder.LCMP);
+            code.jump(CodeBuilder.IFEQ + condition, target);
+        }
+        return true;
+    }
+
+    private static int condition(Expression expression) {
+        if (expression instanceof EqualsTo) {
+            return EQ;
+        } else if (expression instanceof NotEqualsTo) {
+            return NE;
+        } else if (expression instanceof MinorThan) {
+            return LT;
+        } else if (expression instanceof GreaterThanEquals) {
+            return GE;
+        } else if (expression instanceof GreaterThan) {
+            return GT;
+        } else if (expression instanceof MinorThanEquals) {
+            return LE;
+        }
+        return -1;
+    }
+
+    private boolean isOperand(Expression expression) {
+        if (expression instanceof Column) {
+            return schema.get(((Column) expression).getWholeColumnName()) != null;
+        }
+        return expression instanceof LongValue;
+    }
+
+    private static boolean fitsInt(Expression expression) {
+        if (expression instanceof LongValue) {
+            long value = ((LongValue) expression).getValue();
+            return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+        }
+        return true;
+    }
+
+    private void loadInt(Expression expression) {
+        if (expression instanceof LongValue) {
+            code.pushInt((int) ((LongValue) expression).getValue());
+        } else {
+            code.op(CodeBuilder.ALOAD_1);
+            code.pushInt(schema.get(((Column) expression).getWholeColumnName()));
+            code.invokeVirtual(TUPLE, "getDataAt", "(I)I");
+        }
+    }
+
+    private void loadLong(Expression expression) {
+        if (expression instanceof LongValue) {
+            code.pushLong(((LongValue) expression).getValue());
+        } else {
+            loadInt(expression);
+            code.op(CodeBuilder.I2L);
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package btree;
 
 import io.BinaryTupleReader;
+import io.BinaryTupleWriter;
 import junit.framework.Assert;
 import model.Tuple;
 import org.junit.Test;
 import util.Catalog;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -65,4 +69,82 @@ public class BPlusTreeTest {
         Assert.assertEquals(expected, ourOut);
     }
 
-}
\ No newline at end of file
+    /**
+     * a table and an index with large pages find the same tuples as the default ones
+     */
+    @Test
+    public void largePages() throws Exception {
+        String relationName = "Samples/samples-2/input/db/data/Boats";
+        File table = File.createTempFile("Boats", "");
+        File index = File.createTempFile("Boats.E", "");
+        table.deleteOnExit();
+        index.deleteOnExit();
+        BinaryTupleReader reader = new BinaryTupleReader(relationName);
+        BinaryTupleWriter writer = new BinaryTupleWriter(table.getPath(), 3, 65536);
+        Tuple tuple;
+        while ((tuple = reader.readNextTuple()) != null) {
+            writer.writeNextTuple(tuple);
+        }
+        writer.finish();
+        new BPlusTree(table.getPath(), 1, 10, index.getPath(), 16384);
+
+        String expectedIndex = "Samples/samples-2/expected_indexes/Boats.E";
+        Set<String> expected = lookUp(expectedIndex, relationName, 20, 80);
+        Set<String> ourOut = lookUp(index.getPath(), table.getPath(), 20, 80);
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, ourOut);
+    }
+
+    /**
+     * the data entries sorted in runs and the layers spilled to temp files give the same index
+     */
+    @Test
+    public void smallMemory() throws Exception {
+        String relationName = "Samples/samples-2/input/db/data/Boats";
+        File inMemory = File.createTempFile("Boats.E", "");
+        File spilled = File.createTempFile("Boats.E", "");
+        inMemory.deleteOnExit();
+        spilled.deleteOnExit();
+        new BPlusTree(relationName, 1, 1, inMemory.getPath(), 4096);
+        new BPlusTree(relationName, 1, 1, spilled.getPath(), 4096, 1);
+        Assert.assertTrue(Arrays.equals(Files.readAllBytes(inMemory.toPath()), Files.readAllBytes(spilled.toPath())));
+        Assert.assertEquals(lookUp("Samples/samples-2/expected_indexes/Boats.E", relationName, 1, 50),
+                lookUp(spilled.getPath(), relationName, 1, 50));
+    }
+
+    /**
+     * every index node has one more child than keys, also the two last ones of a layer sharing their children
+     */
+    @Test
+    public void indexNodes() throws Exception {
+        File index = File.createTempFile("Boats.D", "");
+        index.deleteOnExit();
+        new BPlusTree("Samples/samples-2/input/db/data/Boats", 0, 10, index.getPath());
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(index.toPath()));
+        int root = buffer.getInt(0);
+        int leafCount = buffer.getInt(4);
+        for (int address = leafCount + 1; address <= root; address++) {
+            int position = address * 4096;
+            Assert.assertEquals(1, buffer.getInt(position));
+            int keyCount = buffer.getInt(position + 4);
+            Assert.assertTrue(keyCount >= 10 && keyCount <= 20 || address == root);
+            for (int i = 0; i <= keyCount; i++) {
+                int child = buffer.getInt(position + (2 + keyCount + i) * 4);
+                Assert.assertTrue(child > 0 && child < address);
+            }
+            Assert.assertEquals(0, buffer.getInt(position + (2 + 2 * keyCount + 1) * 4));
+        }
+    }
+
+    private Set<String> lookUp(String indexFile, String tableFile, int lowKey, int highKey) throws Exception {
+        BinaryTupleReader reader = new BinaryTupleReader(tableFile);
+        Deserializer deser = new Deserializer(new File(indexFile), lowKey, highKey);
+        Set<String> out = new HashSet<>();
+        Rid rid;
+        while ((rid = deser.getNextRid()) != null) {
+            reader.reset(rid.getPageId(), rid.getTupleId());
+            out.add(reader.readNextTuple().toString());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,37 @@
+package btree;
+
+import org.junit.Test;
+import util.Catalog;
+import util.Constants;
+
+import static org.junit.Assert.*;
+
+public class RidSorterTest {
+
+    /**
+     * the fan-in counts a reader of one extent per run, the read-ahead of the runs only
+     * takes the pages left over by the fan-in
+     */
+    @Test
+    public void mergeMemory() {
+        int extentSize = Catalog.getInstance().getExtentSize();
+        int readAhead = Catalog.getInstance().getReadAhead();
+        Catalog.getInstance().setExtentSize(4096);
+        Catalog.getInstance().setReadAhead(4);
+        assertEquals(2, RidSorter.getFanIn(1));
+        assertEquals(4, RidSorter.getFanIn(5));
+        assertEquals(99, RidSorter.getFanIn(100));
+        assertEquals(0, RidSorter.getRunReadAhead(5, 4));
+        assertEquals(3, RidSorter.getRunReadAhead(20, 4));
+        assertEquals(4, RidSorter.getRunReadAhead(100, 4));
+
+        for (int memoryPages = 3; memoryPages <= 200; memoryPages++) {
+            for (int runs = 2; runs <= RidSorter.getFanIn(memoryPages); runs++) {
+                long perRun = Catalog.getInstance().getSequentialReaderSize(RidSorter.getRunReadAhead(memoryPages, runs));
+                assertTrue(runs * perRun + 4096 <= (long) memoryPages * Constants.PAGE_SIZE);
+            }
+        }
+        Catalog.getInstance().setExtentSize(extentSize);
+        Catalog.getInstance().setReadAhead(readAhead);
+    }
+}
@@ -7,6 +7,15 @@ import operator.PhysicalOperator;
 import org.junit.Assert;
 import org.junit.Test;
 
+import btree.Deserializer;
+import io.BinaryTupleReader;
+import model.Tuple;
+import model.IndexConfig;
+import util.Catalog;
+import util.Constants;
+
+import java.io.File;
+import java.io.FileWriter;
 import java.io.StringReader;
 import java.util.*;
 
@@ -37,5 +46,79 @@ public class HandlerTest extends Handler {
     public void parserIndexInfoTest() throws Exception {
         parserIndexInfo();
     }
-}
 
+    /**
+     * the indexes are built in parallel after the sort of the clustered table, none of them fails
+     */
+    @Test
+    public void buildIndexesTest() throws Exception {
+        String[] configs = parserInterpreterConfig("Samples/interpreter_config_file_samples1.txt");
+        init(configs);
+        int indexCount = Catalog.getInstance().getIndexConfigs().size();
+        Assert.assertTrue(indexCount > 0);
+        Catalog.getInstance().setIndexBuildThreadCount(4);
+        buildIndexes();
+        Assert.assertEquals(indexCount, Catalog.getInstance().getIndexConfigs().size());
+        for (IndexConfig indexConfig : Catalog.getInstance().getIndexConfigs().values()) {
+            Deserializer deserializer = new Deserializer(new File(indexConfig.indexFile),
+                    Integer.MIN_VALUE, Integer.MAX_VALUE);
+            Assert.assertNotNull(deserializer.getNextRid());
+            deserializer.close();
+        }
+    }
+
+    /**
+     * the table of a clustered index is replaced by its sorted copy, which is not left behind
+     */
+    @Test
+    public void sortAndReplaceTableTest() throws Exception {
+        String[] configs = parserInterpreterConfig("Samples/interpreter_config_file_samples1.txt");
+        init(configs);
+        buildIndexes();
+        for (IndexConfig indexConfig : Catalog.getInstance().getIndexConfigs().values()) {
+            if (!indexConfig.isClustered) {
+                continue;
+            }
+            String path = Catalog.getInstance().getDataPath(indexConfig.tableName);
+            Assert.assertFalse(new File(path + ".sorted").exists());
+            int column = Catalog.getInstance().getTableSchema(indexConfig.tableName).get(indexConfig.schemaName);
+            BinaryTupleReader reader = new BinaryTupleReader(path);
+            Tuple tuple;
+            int previous = Integer.MIN_VALUE;
+            int count = 0;
+            while ((tuple = reader.readNextTuple()) != null) {
+                Assert.assertTrue(previous <= tuple.getDataAt(column));
+                previous = tuple.getDataAt(column);
+                count++;
+            }
+            reader.close();
+            Assert.assertTrue(count > 0);
+        }
+    }
+
+    /**
+     * join method 3 picks the hash join, with an optional memory budget in pages
+     */
+    @Test
+    public void parserHashJoinConfigTest() throws Exception {
+        File config = File.createTempFile("plan_builder_config", ".txt");
+        String configPath = Constants.CONFIG_PATH;
+        try (FileWriter writer = new FileWriter(config)) {
+            writer.write("3 8\n1 4\n0\n");
+        }
+        try {
+            Constants.CONFIG_PATH = config.getPath();
+            parserPlanBuilderConfig();
+            Assert.assertEquals(Constants.JoinMethod.HASH, Catalog.getInstance().getJoinMethod());
+            Assert.assertEquals(8, Catalog.getInstance().getHashJoinMemory());
+            Assert.assertEquals(Constants.SortMethod.EXTERNAL, Catalog.getInstance().getSortMethod());
+            Assert.assertEquals(4, Catalog.getInstance().getSortBlockSize());
+            Assert.assertFalse(Catalog.getInstance().getIndexScan());
+        } finally {
+            Constants.CONFIG_PATH = configPath;
+            config.delete();
+            Catalog.getInstance().setHashJoinMemory(Constants.DEFAULT_HASH_JOIN_MEMORY);
+            init(new String[0]);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io;
+
+import model.Tuple;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class BinaryTupleWriterTest {
+    private static final String TABLE = "Samples/samples-2/input/db/data/Boats";
+
+    private String copy(int pageSize) throws Exception {
+        File file = File.createTempFile("Boats", "");
+        file.deleteOnExit();
+        BinaryTupleReader reader = new BinaryTupleReader(TABLE);
+        BinaryTupleWriter writer = new BinaryTupleWriter(file.getPath(), 3, pageSize);
+        Tuple tuple;
+        while ((tuple = reader.readNextTuple()) != null) {
+            writer.writeNextTuple(tuple);
+        }
+        writer.finish();
+        return file.getPath();
+    }
+
+    /**
+     * the readers find the page size in the file and read the same tuples
+     */
+    @Test
+    public void largePages() throws Exception {
+        String file = copy(65536);
+        assertEquals(0, new File(file).length() % 65536);
+        PagedTupleReader[] readers = {
+                new BinaryTupleReader(file), new MappedTupleReader(file), new PrefetchTupleReader(file, 2)
+        };
+        for (PagedTupleReader reader : readers) {
+            BinaryTupleReader expected = new BinaryTupleReader(TABLE);
+            Tuple tuple;
+            int count = 0;
+            while ((tuple = expected.readNextTuple()) != null) {
+                assertEquals(tuple, reader.readNextTuple());
+                count++;
+            }
+            assertNull(reader.readNextTuple());
+            assertTrue(count > 0);
+
+            // a rid of the large pages
+            reader.reset(1, 10);
+            expected.reset(1 * ((65536 - 8) / 12) + 10L);
+            assertEquals(expected.readNextTuple(), reader.readNextTuple());
+            reader.close();
+        }
+        assertEquals(65536, new BinaryTupleReader(file).getPageSize());
+    }
+
+    @Test
+    public void defaultPages() throws Exception {
+        String file = copy(4096);
+        assertEquals(new File(TABLE).length(), new File(file).length());
+        assertEquals(4096, new BinaryTupleReader(file).getPageSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedPageSize() {
+        PageFormat.checkPageSize(5000);
+    }
+}
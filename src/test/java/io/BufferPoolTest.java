@@ -0,0 +1,116 @@
+package io;
+
+import model.Tuple;
+import org.junit.Test;
+import util.Constants;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+    private static final String TABLE = "Samples/samples-2/input/db/data/Boats";
+
+    @Test
+    public void hitsAndMisses() throws Exception {
+        BufferPool pool = new BufferPool(4 * Constants.PAGE_SIZE);
+        File file = new File(TABLE);
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            BufferPool.Page first = pool.pin(file, channel, 0, Constants.PAGE_SIZE);
+            pool.unpin(first);
+            BufferPool.Page again = pool.pin(file, channel, 0, Constants.PAGE_SIZE);
+            pool.unpin(again);
+            assertSame(first, again);
+            assertEquals(1, pool.getHits());
+            assertEquals(1, pool.getMisses());
+            assertEquals(Constants.PAGE_SIZE, first.getLength());
+        }
+    }
+
+    @Test
+    public void evictsUnpinnedPages() throws Exception {
+        BufferPool pool = new BufferPool(2 * Constants.PAGE_SIZE);
+        File file = new File(TABLE);
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            BufferPool.Page pinned = pool.pin(file, channel, 0, Constants.PAGE_SIZE);
+            for (int i = 1; i < 10; i++) {
+                pool.unpin(pool.pin(file, channel, i, Constants.PAGE_SIZE));
+                assertTrue(pool.getUsed() <= 2 * Constants.PAGE_SIZE);
+            }
+            assertEquals(8, pool.getEvictions());
+            // the pinned page stays
+            assertSame(pinned, pool.pin(file, channel, 0, Constants.PAGE_SIZE));
+        }
+    }
+
+    @Test
+    public void invalidate() throws Exception {
+        BufferPool pool = new BufferPool(4 * Constants.PAGE_SIZE);
+        File file = new File(TABLE);
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            pool.unpin(pool.pin(file, channel, 0, Constants.PAGE_SIZE));
+            pool.unpin(pool.pin(file, channel, 1, Constants.PAGE_SIZE));
+            assertEquals(2, pool.getPageCount());
+            pool.invalidate(file);
+            assertEquals(0, pool.getPageCount());
+            assertEquals(0, pool.getUsed());
+        }
+    }
+
+    /**
+     * dropping the pages of a file keeps the pages of the other files, the freed frames
+     * are reused and the clock still evicts within the capacity
+     */
+    @Test
+    public void invalidateAmongFiles() throws Exception {
+        BufferPool pool = new BufferPool(8 * Constants.PAGE_SIZE);
+        File file = new File(TABLE);
+        File other = new File("Samples/samples-2/input/db/data/Sailors");
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+             FileChannel otherChannel = new RandomAccessFile(other, "r").getChannel()) {
+            for (int i = 0; i < 4; i++) {
+                pool.unpin(pool.pin(file, channel, i, Constants.PAGE_SIZE));
+                pool.unpin(pool.pin(other, otherChannel, i, Constants.PAGE_SIZE));
+            }
+            pool.invalidate(file);
+            assertEquals(4, pool.getPageCount());
+            assertEquals(4 * Constants.PAGE_SIZE, pool.getUsed());
+            BufferPool.Page kept = pool.pin(other, otherChannel, 2, Constants.PAGE_SIZE);
+            pool.unpin(kept);
+            assertEquals(1, pool.getHits());
+
+            for (int i = 0; i < 20; i++) {
+                pool.unpin(pool.pin(file, channel, i, Constants.PAGE_SIZE));
+                assertTrue(pool.getUsed() <= 8 * Constants.PAGE_SIZE);
+            }
+            assertEquals(8, pool.getPageCount());
+            pool.invalidate(other);
+            pool.invalidate(file);
+            assertEquals(0, pool.getPageCount());
+            assertEquals(0, pool.getUsed());
+        }
+    }
+
+    @Test
+    public void cachedReaderReadsSameTuples() throws Exception {
+        BinaryTupleReader cached = new BinaryTupleReader(TABLE);
+        BinaryTupleReader uncached = new BinaryTupleReader(TABLE, false);
+        Tuple t1, t2;
+        int count = 0;
+        while ((t1 = uncached.readNextTuple()) != null) {
+            t2 = cached.readNextTuple();
+            assertEquals(t1, t2);
+            count++;
+        }
+        assertNull(cached.readNextTuple());
+        assertTrue(count > 0);
+
+        long hits = BufferPool.getInstance().getHits();
+        cached.reset();
+        assertNotNull(cached.readNextTuple());
+        assertTrue(BufferPool.getInstance().getHits() > hits);
+        cached.close();
+    }
+}
@@ -0,0 +1,141 @@
+package io;
+
+import model.Tuple;
+import model.TupleBatch;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ColumnarTupleReaderTest {
+    private static final String TABLE = "Samples/samples-2/input/db/data/Boats";
+    private static final int WIDTH = 3;
+    private static String columnarFile;
+
+    @BeforeClass
+    public static void writeColumnarCopy() throws Exception {
+        File file = File.createTempFile("Boats", ".col");
+        file.deleteOnExit();
+        columnarFile = file.getPath();
+        BinaryTupleReader reader = new BinaryTupleReader(TABLE);
+        ColumnarTupleWriter writer = new ColumnarTupleWriter(columnarFile, WIDTH);
+        Tuple tuple;
+        while ((tuple = reader.readNextTuple()) != null) {
+            writer.writeNextTuple(tuple);
+        }
+        writer.finish();
+    }
+
+    @Test
+    public void readNextTuple() throws Exception {
+        BinaryTupleReader expected = new BinaryTupleReader(TABLE);
+        ColumnarTupleReader reader = new ColumnarTupleReader(columnarFile);
+        Tuple t1;
+        int count = 0;
+        while ((t1 = expected.readNextTuple()) != null) {
+            assertEquals(t1, reader.readNextTuple());
+            assertEquals(expected.getLastReadPageIndex(), reader.getLastReadPageIndex());
+            assertEquals(expected.getLastReadTupleInPageIndex(), reader.getLastReadTupleInPageIndex());
+            count++;
+        }
+        assertNull(reader.readNextTuple());
+        assertEquals(count, reader.getTupleCount());
+
+        reader.reset();
+        expected.reset();
+        assertEquals(expected.readNextTuple(), reader.readNextTuple());
+        reader.close();
+    }
+
+    @Test
+    public void readSelectedColumns() throws Exception {
+        BinaryTupleReader expected = new BinaryTupleReader(TABLE);
+        ColumnarTupleReader reader = new ColumnarTupleReader(columnarFile, new int[]{1});
+        TupleBatch batch = new TupleBatch(WIDTH, 1000);
+        Tuple tuple;
+        int row = 0;
+        reader.readNextBatch(batch);
+        while ((tuple = expected.readNextTuple()) != null) {
+            if (row == batch.getSize()) {
+                batch.clear();
+                row = 0;
+                assertTrue(reader.readNextBatch(batch) > 0);
+            }
+            assertEquals(tuple.getDataAt(1), batch.getColumn(1)[row]);
+            assertEquals(0, batch.getColumn(0)[row]);
+            assertEquals(0, batch.getColumn(2)[row]);
+            row++;
+        }
+        batch.clear();
+        assertEquals(0, reader.readNextBatch(batch));
+        reader.close();
+    }
+
+    @Test
+    public void resetToRid() throws Exception {
+        BinaryTupleReader expected = new BinaryTupleReader(TABLE);
+        ColumnarTupleReader reader = new ColumnarTupleReader(columnarFile);
+        int[][] rids = {{5, 3}, {0, 0}, {29, 10}, {12, 100}, {12, 101}, {1, 0}};
+        for (int[] rid : rids) {
+            expected.reset(rid[0], rid[1]);
+            reader.reset(rid[0], rid[1]);
+            assertEquals(expected.readNextTuple(), reader.readNextTuple());
+        }
+        reader.recordPosition();
+        Tuple recorded = reader.readNextTuple();
+        reader.moveBack();
+        assertEquals(recorded, reader.readNextTuple());
+        reader.revertToPosition();
+        assertEquals(recorded, reader.readNextTuple());
+        reader.close();
+    }
+
+    @Test
+    public void footerAndCompression() throws Exception {
+        ColumnarTupleReader reader = new ColumnarTupleReader(columnarFile);
+        BinaryTupleReader expected = new BinaryTupleReader(TABLE);
+        int[] min = new int[WIDTH], max = new int[WIDTH];
+        Arrays.fill(min, Integer.MAX_VALUE);
+        Arrays.fill(max, Integer.MIN_VALUE);
+        Tuple tuple;
+        while ((tuple = expected.readNextTuple()) != null) {
+            for (int i = 0; i < WIDTH; i++) {
+                min[i] = Math.min(min[i], tuple.getDataAt(i));
+                max[i] = Math.max(max[i], tuple.getDataAt(i));
+            }
+        }
+        for (int i = 0; i < WIDTH; i++) {
+            int footerMin = Integer.MAX_VALUE, footerMax = Integer.MIN_VALUE;
+            for (int group = 0; group < reader.getRowGroupCount(); group++) {
+                footerMin = Math.min(footerMin, reader.getMin(group, i));
+                footerMax = Math.max(footerMax, reader.getMax(group, i));
+            }
+            assertEquals(min[i], footerMin);
+            assertEquals(max[i], footerMax);
+        }
+        assertTrue(new File(columnarFile).length() < new File(TABLE).length());
+        reader.close();
+    }
+
+    @Test
+    public void encodings() {
+        int[][] columns = {
+                {7, 7, 7, 7, 7, 7, 7, 7},
+                {Integer.MIN_VALUE, Integer.MAX_VALUE, 0, -1, 5, 5, 5, 1},
+                {100, 101, 102, 103, 104, 105, 106, 107},
+                {}
+        };
+        for (int[] column : columns) {
+            for (boolean compress : new boolean[]{true, false}) {
+                byte[] chunk = ColumnarFormat.encode(column, column.length, compress);
+                int[] decoded = new int[column.length];
+                ColumnarFormat.decode(ByteBuffer.wrap(chunk), column.length, decoded);
+                assertArrayEquals(column, decoded);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package io;
+
+import model.Tuple;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MappedTupleReaderTest {
+    private static final String TABLE = "Samples/samples-2/input/db/data/Boats";
+
+    @Test
+    public void readNextTuple() throws Exception {
+        BinaryTupleReader expected = new BinaryTupleReader(TABLE);
+        MappedTupleReader reader = new MappedTupleReader(TABLE);
+        Tuple t1, t2;
+        int count = 0;
+        while ((t1 = expected.readNextTuple()) != null) {
+            t2 = reader.readNextTuple();
+            assertEquals(t1, t2);
+            assertEquals(expected.getLastReadPageIndex(), reader.getLastReadPageIndex());
+            assertEquals(expected.getLastReadTupleInPageIndex(), reader.getLastReadTupleInPageIndex());
+            count++;
+        }
+        assertNull(reader.readNextTuple());
+        assertTrue(count > 0);
+
+        reader.reset();
+        expected.reset();
+        assertEquals(expected.readNextTuple(), reader.readNextTuple());
+        reader.close();
+    }
+
+    @Test
+    public void readNextView() throws Exception {
+        BinaryTupleReader expected = new BinaryTupleReader(TABLE, false);
+        MappedTupleReader reader = new MappedTupleReader(TABLE);
+        BinaryTupleReader binary = new BinaryTupleReader(TABLE);
+        Tuple t1, view = null;
+        while ((t1 = expected.readNextTuple()) != null) {
+            Tuple t2 = reader.readNextView();
+            assertTrue(t2.isView());
+            assertEquals(t1, t2);
+            assertEquals(t1, binary.readNextView());
+            // the reader moves the same view
+            assertTrue(view == null || view == t2);
+            view = t2;
+        }
+        assertNull(reader.readNextView());
+        assertNull(binary.readNextView());
+        reader.close();
+    }
+
+    @Test
+    public void resetToRid() throws Exception {
+        BinaryTupleReader expected = new BinaryTupleReader(TABLE);
+        MappedTupleReader reader = new MappedTupleReader(TABLE);
+        int[][] rids = {{5, 3}, {0, 0}, {29, 10}, {12, 100}, {12, 101}, {1, 0}};
+        for (int[] rid : rids) {
+            expected.reset(rid[0], rid[1]);
+            reader.reset(rid[0], rid[1]);
+            assertEquals(expected.readNextTuple(), reader.readNextTuple());
+        }
+        reader.close();
+    }
+
+    @Test
+    public void recordAndRevert() throws Exception {
+        MappedTupleReader reader = new MappedTupleReader(TABLE);
+        for (int i = 0; i < 500; i++) {
+            reader.readNextTuple();
+        }
+        reader.recordPosition();
+        Tuple recorded = reader.readNextTuple();
+        reader.readNextTuple();
+        reader.moveBack();
+        reader.moveBack();
+        assertEquals(recorded, reader.readNextTuple());
+        while (reader.readNextTuple() != null) ;
+        reader.revertToPosition();
+        assertEquals(recorded, reader.readNextTuple());
+        reader.close();
+    }
+
+    /**
+     * with windows of two pages, jumping back and forth between the windows and reading
+     * across them gives the tuples of the table
+     */
+    @Test
+    public void smallWindows() throws Exception {
+        BinaryTupleReader expected = new BinaryTupleReader(TABLE);
+        MappedTupleReader reader = new MappedTupleReader(TABLE, 2 * 4096);
+        int[][] rids = {{29, 10}, {0, 0}, {12, 100}, {3, 7}, {28, 0}, {1, 0}, {29, 10}};
+        for (int[] rid : rids) {
+            expected.reset(rid[0], rid[1]);
+            reader.reset(rid[0], rid[1]);
+            for (int i = 0; i < 400; i++) {
+                assertEquals(expected.readNextTuple(), reader.readNextTuple());
+            }
+        }
+        reader.reset();
+        expected.reset();
+        Tuple tuple;
+        while ((tuple = expected.readNextTuple()) != null) {
+            assertEquals(tuple, reader.readNextTuple());
+        }
+        assertNull(reader.readNextTuple());
+        reader.close();
+    }
+}
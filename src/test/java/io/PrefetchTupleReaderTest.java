@@ -0,0 +1,117 @@
+package io;
+
+import model.Tuple;
+import model.TupleBatch;
+import org.junit.Test;
+import util.Constants;
+
+import static org.junit.Assert.*;
+
+public class PrefetchTupleReaderTest {
+    private static final String TABLE = "Samples/samples-2/input/db/data/Boats";
+
+    @Test
+    public void readNextTuple() throws Exception {
+        BinaryTupleReader expected = new BinaryTupleReader(TABLE);
+        PrefetchTupleReader reader = new PrefetchTupleReader(TABLE, 2);
+        Tuple t1, t2;
+        int count = 0;
+        while ((t1 = expected.readNextTuple()) != null) {
+            t2 = reader.readNextTuple();
+            assertEquals(t1, t2);
+            assertEquals(expected.getLastReadPageIndex(), reader.getLastReadPageIndex());
+            assertEquals(expected.getLastReadTupleInPageIndex(), reader.getLastReadTupleInPageIndex());
+            count++;
+        }
+        assertNull(reader.readNextTuple());
+        assertTrue(count > 0);
+
+        reader.reset();
+        expected.reset();
+        assertEquals(expected.readNextTuple(), reader.readNextTuple());
+        reader.close();
+    }
+
+    @Test
+    public void resetToRid() throws Exception {
+        BinaryTupleReader expected = new BinaryTupleReader(TABLE);
+        PrefetchTupleReader reader = new PrefetchTupleReader(TABLE, 2);
+        int[][] rids = {{5, 3}, {0, 0}, {29, 10}, {12, 100}, {12, 101}, {1, 0}};
+        for (int[] rid : rids) {
+            expected.reset(rid[0], rid[1]);
+            reader.reset(rid[0], rid[1]);
+            assertEquals(expected.readNextTuple(), reader.readNextTuple());
+        }
+        reader.close();
+    }
+
+    @Test
+    public void recordAndRevert() throws Exception {
+        PrefetchTupleReader reader = new PrefetchTupleReader(TABLE, 2);
+        for (int i = 0; i < 500; i++) {
+            reader.readNextTuple();
+        }
+        reader.recordPosition();
+        Tuple recorded = reader.readNextTuple();
+        reader.readNextTuple();
+        reader.moveBack();
+        reader.moveBack();
+        assertEquals(recorded, reader.readNextTuple());
+        while (reader.readNextTuple() != null) ;
+        reader.revertToPosition();
+        assertEquals(recorded, reader.readNextTuple());
+        reader.close();
+    }
+
+    @Test
+    public void readNextBatch() throws Exception {
+        BinaryTupleReader expected = new BinaryTupleReader(TABLE);
+        PrefetchTupleReader reader = new PrefetchTupleReader(TABLE, 1);
+        TupleBatch batch = new TupleBatch(3, 100);
+        Tuple tuple;
+        int row = 0;
+        while ((tuple = expected.readNextTuple()) != null) {
+            if (row == batch.getSize()) {
+                batch.clear();
+                row = 0;
+                assertTrue(reader.readNextBatch(batch) > 0);
+            }
+            assertEquals(tuple, batch.getTuple(row));
+            row++;
+        }
+        batch.clear();
+        assertEquals(0, reader.readNextBatch(batch));
+        reader.close();
+    }
+
+    /**
+     * extents of several pages, read by more I/O threads, give the same tuples at the same rids
+     */
+    @Test
+    public void multiPageExtents() throws Exception {
+        int threads = PrefetchTupleReader.getIoThreadCount();
+        PrefetchTupleReader.setIoThreadCount(3);
+        assertEquals(3, PrefetchTupleReader.getIoThreadCount());
+        BinaryTupleReader expected = new BinaryTupleReader(TABLE);
+        PrefetchTupleReader reader = new PrefetchTupleReader(TABLE, 2, 8 * Constants.PAGE_SIZE);
+        Tuple tuple;
+        while ((tuple = expected.readNextTuple()) != null) {
+            assertEquals(tuple, reader.readNextTuple());
+        }
+        assertNull(reader.readNextTuple());
+        int[][] rids = {{5, 3}, {0, 0}, {29, 10}, {12, 100}, {1, 0}};
+        for (int[] rid : rids) {
+            expected.reset(rid[0], rid[1]);
+            reader.reset(rid[0], rid[1]);
+            assertEquals(expected.readNextTuple(), reader.readNextTuple());
+        }
+        reader.close();
+        PrefetchTupleReader.setIoThreadCount(threads);
+    }
+
+    @Test
+    public void missingFile() throws Exception {
+        PrefetchTupleReader reader = new PrefetchTupleReader(TABLE + "_missing", 2);
+        assertNull(reader.readNextTuple());
+    }
+}
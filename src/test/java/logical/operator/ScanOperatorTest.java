@@ -1,7 +1,9 @@
 package logical.operator;
 
+import PlanBuilder.LogicalPlanBuilder;
 import com.sql.interpreter.Handler;
 import junit.framework.Assert;
+import model.Tuple;
 import net.sf.jsqlparser.parser.CCJSqlParserManager;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.Select;
@@ -28,4 +30,28 @@ public class ScanOperatorTest {
         expectedSchema.put("Sailors.C", 2);
         Assert.assertEquals(op.getSchema(), expectedSchema);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRequiredColumns() throws Exception {
+        Handler.init(new String[0]);
+        String statement = "SELECT Sailors.C FROM Sailors, Reserves WHERE Sailors.A = Reserves.G;";
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
+        ScanOperator op = new ScanOperator(plainSelect, 0, LogicalPlanBuilder.getRequiredColumns(plainSelect));
+
+        Map<String, Integer> expectedSchema = new HashMap<>();
+        expectedSchema.put("Sailors.A", 0);
+        expectedSchema.put("Sailors.C", 1);
+        Assert.assertEquals(expectedSchema, op.getSchema());
+
+        ScanOperator full = new ScanOperator(plainSelect, 0);
+        Tuple tuple;
+        while ((tuple = full.getTupleReader().readNextTuple()) != null) {
+            Tuple narrowed = op.getTupleReader().readNextTuple();
+            Assert.assertEquals(2, narrowed.getDataLength());
+            Assert.assertEquals(tuple.getDataAt(0), narrowed.getDataAt(0));
+            Assert.assertEquals(tuple.getDataAt(2), narrowed.getDataAt(1));
+        }
+        Assert.assertNull(op.getTupleReader().readNextTuple());
+    }
+}
@@ -0,0 +1,75 @@
+package model;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+    @Test
+    public void fromCountsIsExactForFewValues() {
+        Map<Integer, Long> counts = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            counts.put(i, (long) i + 1);
+        }
+        Histogram histogram = Histogram.fromCounts("A", counts);
+        assertEquals(5050, histogram.getTotalCount());
+        assertEquals(100, histogram.getKeySet().size());
+        assertEquals(0, histogram.getBucketCount());
+        assertEquals(42, histogram.getCount(41));
+        assertEquals(42.0 / 5050, histogram.getProbability(41), 1e-12);
+        assertEquals(0, histogram.getCount(1000));
+    }
+
+    @Test
+    public void sizeIsBounded() {
+        Map<Integer, Long> counts = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            counts.put(i, 1L);
+        }
+        counts.put(-1, 50000L);
+        Histogram histogram = Histogram.fromCounts("A", counts);
+        assertEquals(150000, histogram.getTotalCount());
+        assertEquals(1, histogram.getKeySet().size());
+        assertTrue(histogram.getBucketCount() <= Histogram.MAX_BUCKETS);
+        assertEquals(50000, histogram.getCount(-1));
+        assertEquals(1, histogram.getCount(777));
+        assertEquals(100001, histogram.getDistinctCount());
+    }
+
+    @Test
+    public void fromSampleScales() {
+        int[] sample = new int[1000];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = i % 10;
+        }
+        Histogram histogram = Histogram.fromSample("A", sample, 100000, 10, 0, 9);
+        assertEquals(100000, histogram.getTotalCount());
+        assertEquals(10000, histogram.getCount(3));
+        assertEquals(0.1, histogram.getProbability(9), 1e-9);
+    }
+
+    @Test
+    public void writeRead() throws Exception {
+        Map<Integer, Long> counts = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            counts.put(i * 3, (long) (i % 7) + 1);
+        }
+        Histogram histogram = Histogram.fromCounts("A", counts);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        histogram.write(new DataOutputStream(bytes));
+        Histogram read = Histogram.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), "A");
+        assertEquals(histogram.getTotalCount(), read.getTotalCount());
+        assertEquals(histogram.getBucketCount(), read.getBucketCount());
+        assertEquals(histogram.getKeySet(), read.getKeySet());
+        for (int key = -5; key < 15010; key += 11) {
+            assertEquals(histogram.getCount(key), read.getCount(key));
+        }
+    }
+}
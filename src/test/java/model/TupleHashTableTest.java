@@ -0,0 +1,72 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TupleHashTableTest {
+
+    /**
+     * @return values of column 2 of the rows matching the probe
+     */
+    private List<Integer> probe(TupleHashTable table, Tuple probe, int[] probeColumns) {
+        List<Integer> values = new ArrayList<>();
+        for (int row = table.find(probe, probeColumns); row >= 0; row = table.next(row)) {
+            values.add(table.getDataAt(row, 2));
+        }
+        Collections.sort(values);
+        return values;
+    }
+
+    @Test
+    public void singleColumnKey() {
+        TupleHashTable table = new TupleHashTable(3, new int[]{0}, 1);
+        for (int i = 0; i < 10000; i++) {
+            table.put(new Tuple(new int[]{i % 100, -i, i}));
+        }
+        assertEquals(10000, table.size());
+
+        List<Integer> values = probe(table, new Tuple(new int[]{7}), new int[]{0});
+        assertEquals(100, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(7 + i * 100, (int) values.get(i));
+        }
+        assertTrue(probe(table, new Tuple(new int[]{100}), new int[]{0}).isEmpty());
+        assertTrue(probe(table, new Tuple(new int[]{-7}), new int[]{0}).isEmpty());
+    }
+
+    @Test
+    public void multiColumnKey() {
+        TupleHashTable table = new TupleHashTable(3, new int[]{1, 0}, 1);
+        for (int i = 0; i < 1000; i++) {
+            table.put(new Tuple(new int[]{i % 10, i % 7, i}));
+        }
+        // probe columns follow the order of the key columns
+        Tuple probe = new Tuple(new int[]{0, 3, 3});
+        List<Integer> values = probe(table, probe, new int[]{1, 2});
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            if (i % 10 == 3 && i % 7 == 3) {
+                expected.add(i);
+            }
+        }
+        assertEquals(expected, values);
+    }
+
+    @Test
+    public void readRowAndClear() {
+        TupleHashTable table = new TupleHashTable(2, new int[]{0}, 1);
+        table.put(new Tuple(new int[]{1, 2}));
+        int[] data = new int[3];
+        table.readRow(table.find(new Tuple(new int[]{1}), new int[]{0}), data, 1);
+        assertArrayEquals(new int[]{0, 1, 2}, data);
+
+        table.clear();
+        assertEquals(0, table.size());
+        assertEquals(-1, table.find(new Tuple(new int[]{1}), new int[]{0}));
+    }
+}
@@ -0,0 +1,35 @@
+package model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TupleTest {
+    @Test
+    public void view() {
+        int[] base = {1, 2, 3, 4, 5, 6};
+        Tuple view = Tuple.view(base, 0, 3);
+        assertTrue(view.isView());
+        assertEquals(3, view.getDataLength());
+        assertEquals(new Tuple(new int[]{1, 2, 3}), view);
+
+        view.moveTo(base, 3);
+        assertEquals(5, view.getDataAt(1));
+        assertEquals(new Tuple(new int[]{4, 5, 6}), view);
+        assertEquals("4,5,6", view.toString());
+    }
+
+    @Test
+    public void materialize() {
+        int[] base = {1, 2, 3, 4};
+        Tuple view = Tuple.view(base, 1, 2);
+        Tuple copy = view.materialize();
+        assertFalse(copy.isView());
+        base[1] = 9;
+        assertEquals(new Tuple(new int[]{2, 3}), copy);
+        assertFalse(copy.equals(view));
+
+        Tuple owned = new Tuple(new int[]{7});
+        assertSame(owned, owned.materialize());
+    }
+}
@@ -11,8 +11,11 @@ import util.Constants.JoinMethod;
 import org.junit.Test;
 
 import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class BlockJoinOperatorTest {
     @Test
@@ -43,4 +46,43 @@ public class BlockJoinOperatorTest {
         assertEquals("output less or greater than expected", count1, count2);
 
     }
-}
\ No newline at end of file
+
+    /**
+     * the parallel join should produce the same tuples as the tuple nested loop join
+     */
+    private void compareParallelJoin(String statement, int blockSize, int threadCount) throws Exception {
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
+        PhysicalOperator op1 = new PhysicalScanOperator(plainSelect, 0);
+        PhysicalOperator op2 = new PhysicalScanOperator(plainSelect, 1);
+        PhysicalOperator opParallel = new PhysicalParallelBlockJoinOperator(op1, op2, plainSelect, blockSize, threadCount);
+
+        PhysicalOperator op3 = new PhysicalScanOperator(plainSelect, 0);
+        PhysicalOperator op4 = new PhysicalScanOperator(plainSelect, 1);
+        PhysicalOperator opJoin = new PhysicalTupleJoinOperator(op3, op4, plainSelect);
+
+        Map<String, Integer> counts = new HashMap<>();
+        Tuple tuple;
+        int count = 0;
+        while ((tuple = opParallel.getNextTuple()) != null) {
+            counts.merge(tuple.toString(), 1, Integer::sum);
+            count++;
+        }
+        while ((tuple = opJoin.getNextTuple()) != null) {
+            String key = tuple.toString();
+            assertTrue(key, counts.containsKey(key));
+            counts.merge(key, -1, Integer::sum);
+            count--;
+        }
+        assertEquals(0, count);
+        for (int c : counts.values()) {
+            assertEquals(0, c);
+        }
+    }
+
+    @Test
+    public void testParallelJoin() throws Exception {
+        compareParallelJoin("SELECT * FROM Sailors, Reserves WHERE Sailors.A = Reserves.G;", 8, 4);
+        compareParallelJoin("SELECT * FROM Reserves, Boats WHERE Reserves.H < Boats.D AND Boats.D < 20;", 3, 3);
+    }
+}
@@ -1,6 +1,7 @@
 package operator;
 
 import com.sql.interpreter.Handler;
+import PlanBuilder.LogicalPlanBuilder;
 import PlanBuilder.PhysicalPlanBuilder;
 import util.*;
 
@@ -46,6 +47,30 @@ public class IndexScanOperatorTest {
         }
     }
 
+    /**
+     * the scan keeps only the columns of the query, the key is found in the narrowed tuple
+     */
+    @Test
+    public void narrowedScan() throws Exception {
+        String statement = "SELECT BT.D FROM Boats AS BT WHERE BT.E > 9 and BT.E <= 20;";
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
+        ScanOperator logScanOp = new ScanOperator(plainSelect, 0, LogicalPlanBuilder.getRequiredColumns(plainSelect));
+        SelectOperator selectOp = new SelectOperator(logScanOp, plainSelect);
+        Assert.assertEquals(2, logScanOp.getSchema().size());
+        Assert.assertEquals(Integer.valueOf(1), logScanOp.getSchema().get("BT.E"));
+
+        PhysicalOperator operator = new PhysicalIndexScanOperator(selectOp, 10, 20);
+        Tuple tuple;
+        int count = 0;
+        while ((tuple = operator.getNextTuple()) != null) {
+            Assert.assertEquals(2, tuple.getDataLength());
+            Assert.assertTrue(9 < tuple.getDataAt(1) && 20 >= tuple.getDataAt(1));
+            count++;
+        }
+        Assert.assertTrue(count > 0);
+    }
+
     @Test
     public void reset() {
     }
@@ -7,11 +7,18 @@ import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.Select;
 import org.junit.Test;
 import util.Catalog;
+import util.Constants;
 import util.Constants.SortMethod;
 
+import java.io.File;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 
 public class PhysicalExternalSortOperatorTest {
@@ -38,4 +45,221 @@ public class PhysicalExternalSortOperatorTest {
             tuple = physSortOp.getNextTuple();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * a small sort memory makes many runs merged in several passes
+     */
+    @Test
+    public void severalMergePasses() throws Exception {
+        Catalog.getInstance().setSortBlockSize(3);
+        String statement = "SELECT * FROM Sailors S ORDER BY S.B;";
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
+        Catalog.getInstance().setAttributeOrder(plainSelect);
+        PhysicalOperator physSortOp = Handler.constructPhysicalQueryPlan(plainSelect);
+
+        int column = physSortOp.getSchema().get("S.B");
+        Tuple tuple;
+        int last = Integer.MIN_VALUE;
+        int count = 0;
+        while ((tuple = physSortOp.getNextTuple()) != null) {
+            assertTrue(last <= tuple.getDataAt(column));
+            last = tuple.getDataAt(column);
+            count++;
+        }
+        assertEquals(1000, count);
+    }
+
+    @Test
+    public void mergeFanIn() {
+        int extentSize = Catalog.getInstance().getExtentSize();
+        int readAhead = Catalog.getInstance().getReadAhead();
+        Catalog.getInstance().setExtentSize(4096);
+        Catalog.getInstance().setReadAhead(0);
+        assertEquals(2, PhysicalExternalSortOperator.getMergeFanIn(3));
+        assertEquals(99, PhysicalExternalSortOperator.getMergeFanIn(100));
+        Catalog.getInstance().setReadAhead(4);
+        assertEquals(99, PhysicalExternalSortOperator.getMergeFanIn(100));
+        assertEquals(4, PhysicalExternalSortOperator.getMergeFanIn(5));
+        assertEquals(2, PhysicalExternalSortOperator.getMergeFanIn(1));
+        Catalog.getInstance().setExtentSize(extentSize);
+        Catalog.getInstance().setReadAhead(readAhead);
+    }
+
+    /**
+     * the runs of a merge read ahead in the pages they leave, a full merge reads synchronously
+     */
+    @Test
+    public void runReadAhead() {
+        int extentSize = Catalog.getInstance().getExtentSize();
+        int readAhead = Catalog.getInstance().getReadAhead();
+        Catalog.getInstance().setExtentSize(4096);
+        Catalog.getInstance().setReadAhead(4);
+        assertEquals(0, PhysicalExternalSortOperator.getRunReadAhead(5, 4));
+        assertEquals(0, PhysicalExternalSortOperator.getRunReadAhead(100, 99));
+        assertEquals(3, PhysicalExternalSortOperator.getRunReadAhead(20, 4));
+        assertEquals(4, PhysicalExternalSortOperator.getRunReadAhead(100, 4));
+        Catalog.getInstance().setReadAhead(0);
+        assertEquals(0, PhysicalExternalSortOperator.getRunReadAhead(100, 4));
+        Catalog.getInstance().setExtentSize(extentSize);
+        Catalog.getInstance().setReadAhead(readAhead);
+    }
+
+    /**
+     * with the default sort memory of 5 pages, the 4 runs of the child are merged at once
+     * by the streamed merge, there is no merge pass in between
+     */
+    @Test
+    public void defaultBufferMergesFourRuns() throws Exception {
+        Catalog.getInstance().setSortBlockSize(5);
+        int threads = Catalog.getInstance().getSortThreadCount();
+        Catalog.getInstance().setSortThreadCount(1);
+        String statement = "SELECT * FROM Sailors S, Reserves R WHERE S.A = R.G AND S.B < 150 ORDER BY S.C;";
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
+        Catalog.getInstance().setAttributeOrder(plainSelect);
+        List<String> before = listTempFiles();
+        PhysicalOperator physSortOp = Handler.constructPhysicalQueryPlan(plainSelect);
+        assertNotNull(physSortOp.getNextTuple());
+        Catalog.getInstance().setSortThreadCount(threads);
+
+        List<String> runs = listTempFiles();
+        runs.removeAll(before);
+        runs.removeIf(name -> !name.startsWith("temp_"));
+        assertEquals(4, runs.size());
+        for (String run : runs) {
+            assertTrue(run, run.matches("temp_.*_0_\\d+"));
+        }
+        physSortOp.close();
+    }
+
+    /**
+     * the pages of the sort are shared by the blocks sorted at once and by the groups merged at once
+     */
+    @Test
+    public void sortMemorySplit() {
+        int extentSize = Catalog.getInstance().getExtentSize();
+        int readAhead = Catalog.getInstance().getReadAhead();
+        int threads = Catalog.getInstance().getSortThreadCount();
+        Catalog.getInstance().setExtentSize(4096);
+        Catalog.getInstance().setReadAhead(0);
+        Catalog.getInstance().setSortThreadCount(4);
+        assertEquals(0, PhysicalExternalSortOperator.getSortBlocks(1));
+        assertEquals(0, PhysicalExternalSortOperator.getSortBlocks(5));
+        assertEquals(0, PhysicalExternalSortOperator.getSortBlocks(7));
+        assertEquals(1, PhysicalExternalSortOperator.getSortBlocks(8));
+        assertEquals(3, PhysicalExternalSortOperator.getSortBlocks(100));
+        assertEquals(2, PhysicalExternalSortOperator.getMergePasses(20, 4, true));
+        assertEquals(3, PhysicalExternalSortOperator.getMergePasses(20, 4, false));
+        assertEquals(0, PhysicalExternalSortOperator.getMergePasses(4, 4, true));
+        assertEquals(4, PhysicalExternalSortOperator.getMergeGroups(100, 500, true));
+        assertEquals(1, PhysicalExternalSortOperator.getMergeGroups(100, 50, true));
+        assertEquals(1, PhysicalExternalSortOperator.getMergeGroups(5, 20, true));
+        Catalog.getInstance().setSortThreadCount(1);
+        assertEquals(0, PhysicalExternalSortOperator.getSortBlocks(100));
+        assertEquals(1, PhysicalExternalSortOperator.getMergeGroups(100, 500, true));
+        Catalog.getInstance().setExtentSize(extentSize);
+        Catalog.getInstance().setReadAhead(readAhead);
+        Catalog.getInstance().setSortThreadCount(threads);
+    }
+
+    /**
+     * the blocks of the first pass, and the runs of the groups merged at once, never hold more
+     * pages than the block size of the sort, the clustered table rewrite relies on it
+     */
+    @Test
+    public void sortMemoryBound() {
+        int threads = Catalog.getInstance().getSortThreadCount();
+        long extentSize = Catalog.getInstance().getExtentSize();
+        for (int threadCount = 1; threadCount <= 16; threadCount++) {
+            Catalog.getInstance().setSortThreadCount(threadCount);
+            for (int blockSize = 1; blockSize <= 200; blockSize++) {
+                int sortBlocks = PhysicalExternalSortOperator.getSortBlocks(blockSize);
+                assertTrue(sortBlocks < threadCount);
+                assertTrue(sortBlocks == 0 || blockSize / (sortBlocks + 1) >= 4);
+                assertTrue((sortBlocks + 1) * (blockSize / (sortBlocks + 1)) <= blockSize);
+
+                for (int runs : new int[]{2, 10, 50, 500}) {
+                    for (boolean streamed : new boolean[]{true, false}) {
+                        int groups = PhysicalExternalSortOperator.getMergeGroups(blockSize, runs, streamed);
+                        assertTrue(groups <= threadCount);
+                        int fanIn = PhysicalExternalSortOperator.getMergeFanIn(blockSize / groups);
+                        assertTrue(PhysicalExternalSortOperator.getMergePasses(runs, fanIn, streamed)
+                                <= PhysicalExternalSortOperator.getMergePasses(runs,
+                                PhysicalExternalSortOperator.getMergeFanIn(blockSize), streamed));
+                        long perRun = Catalog.getInstance().getSequentialReaderSize(
+                                PhysicalExternalSortOperator.getRunReadAhead(blockSize / groups, fanIn));
+                        if (blockSize / groups >= 3) {
+                            assertTrue(groups * (fanIn * perRun + extentSize) <= (long) blockSize * Constants.PAGE_SIZE);
+                        }
+                    }
+                }
+            }
+        }
+        Catalog.getInstance().setSortThreadCount(threads);
+    }
+
+    /**
+     * the runs sorted and merged by one thread or several give the same tuples,
+     * and the streamed merge starts over on reset
+     */
+    @Test
+    public void parallelRunsAndReset() throws Exception {
+        Catalog.getInstance().setSortBlockSize(8);
+        int threads = Catalog.getInstance().getSortThreadCount();
+        String statement = "SELECT * FROM Sailors S, Reserves R WHERE S.A = R.G ORDER BY S.B;";
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
+        Catalog.getInstance().setAttributeOrder(plainSelect);
+
+        Catalog.getInstance().setSortThreadCount(1);
+        List<Tuple> expected = readAll(Handler.constructPhysicalQueryPlan(plainSelect));
+        Catalog.getInstance().setSortThreadCount(4);
+        PhysicalOperator physSortOp = Handler.constructPhysicalQueryPlan(plainSelect);
+        Catalog.getInstance().setSortThreadCount(threads);
+
+        assertEquals(5019, expected.size());
+        assertEquals(expected, readAll(physSortOp));
+        physSortOp.reset();
+        assertEquals(expected, readAll(physSortOp));
+    }
+
+    /**
+     * the child is sorted on the first call, closing the sort deletes its runs
+     */
+    @Test
+    public void closeDeletesRuns() throws Exception {
+        Catalog.getInstance().setSortBlockSize(3);
+        String statement = "SELECT * FROM Sailors S ORDER BY S.B;";
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
+        Catalog.getInstance().setAttributeOrder(plainSelect);
+        int files = countTempFiles();
+        PhysicalOperator physSortOp = Handler.constructPhysicalQueryPlan(plainSelect);
+        assertEquals(files, countTempFiles());
+
+        assertNotNull(physSortOp.getNextTuple());
+        assertTrue(countTempFiles() > files);
+        physSortOp.close();
+        assertEquals(files, countTempFiles());
+    }
+
+    private static List<String> listTempFiles() {
+        String[] names = new File(Catalog.getInstance().getTempPath()).list();
+        return names == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(names));
+    }
+
+    private static int countTempFiles() {
+        String[] names = new File(Catalog.getInstance().getTempPath()).list();
+        return names == null ? 0 : names.length;
+    }
+
+    private static List<Tuple> readAll(PhysicalOperator operator) {
+        List<Tuple> tuples = new ArrayList<>();
+        Tuple tuple;
+        while ((tuple = operator.getNextTuple()) != null) {
+            tuples.add(tuple);
+        }
+        return tuples;
+    }
+}
@@ -9,7 +9,11 @@ import org.junit.Test;
 import util.Catalog;
 import util.Constants;
 
+import java.io.File;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -37,4 +41,126 @@ public class PhysicalHashJoinOperatorTest {
 
     }
 
+    /**
+     * join with the given memory budget and mode
+     * the result should be the same as the one of the block nested loop join
+     */
+    private void compareWithBlockJoin(int memory, boolean hybrid) throws Exception {
+        compareWithBlockJoin("SELECT * FROM Reserves R, Sailors S WHERE R.G = S.A;", memory, hybrid);
+    }
+
+    private void compareWithBlockJoin(String statement, int memory, boolean hybrid) throws Exception {
+        Handler.init(new String[0]);
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
+
+        Catalog.getInstance().setJoinMethod(Constants.JoinMethod.BNLJ);
+        List<String> expected = collect(Handler.constructPhysicalQueryPlan(plainSelect));
+
+        Catalog.getInstance().setJoinMethod(Constants.JoinMethod.HASH);
+        Catalog.getInstance().setHashJoinMemory(memory);
+        Catalog.getInstance().setHybridHashJoin(hybrid);
+        PhysicalOperator op = Handler.constructPhysicalQueryPlan(plainSelect);
+        Catalog.getInstance().setHashJoinMemory(Constants.DEFAULT_HASH_JOIN_MEMORY);
+        Catalog.getInstance().setHybridHashJoin(true);
+        assertTrue(op instanceof PhysicalHashJoinOperator);
+        List<String> result = collect(op);
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, result);
+    }
+
+    /**
+     * the rows of one key of the first join do not fit in the memory of a task and can not
+     * be split, so the bucket is built and probed in chunks
+     */
+    @Test
+    public void hotKeyInChunks() throws Exception {
+        compareWithBlockJoin("SELECT * FROM Sailors S, Boats B, Reserves R WHERE S.B = B.E AND B.E = R.H;", 1, false);
+    }
+
+    /**
+     * a memory budget far below the size of the inputs forces recursive repartitioning
+     */
+    @Test
+    public void recursivePartition() throws Exception {
+        compareWithBlockJoin(3, false);
+    }
+
+    /**
+     * the left side fits in memory, nothing is spilled
+     */
+    @Test
+    public void hybridInMemory() throws Exception {
+        compareWithBlockJoin(Constants.DEFAULT_HASH_JOIN_MEMORY, true);
+    }
+
+    /**
+     * some buckets are resident, the others are spilled and repartitioned
+     */
+    @Test
+    public void hybridPartlySpilled() throws Exception {
+        compareWithBlockJoin(6, true);
+    }
+
+    /**
+     * the spilled buckets are joined by as many threads as configured, each with its
+     * share of the memory, a single thread joins them all
+     */
+    @Test
+    public void joinThreadCount() throws Exception {
+        int threads = Catalog.getInstance().getJoinThreadCount();
+        try {
+            Catalog.getInstance().setJoinThreadCount(8);
+            compareWithBlockJoin(6, false);
+            Catalog.getInstance().setJoinThreadCount(1);
+            compareWithBlockJoin(6, false);
+        } finally {
+            Catalog.getInstance().setJoinThreadCount(threads);
+        }
+    }
+
+    /**
+     * building the plan writes nothing, closing it in the middle of the join stops
+     * the threads and deletes the buckets
+     */
+    @Test
+    public void closeMidQuery() throws Exception {
+        Handler.init(new String[0]);
+        String statement = "SELECT * FROM Reserves R, Sailors S WHERE R.G = S.A;";
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
+        Catalog.getInstance().setJoinMethod(Constants.JoinMethod.HASH);
+        Catalog.getInstance().setHashJoinMemory(3);
+        Catalog.getInstance().setHybridHashJoin(false);
+        int files = countTempFiles();
+        PhysicalOperator op = Handler.constructPhysicalQueryPlan(plainSelect);
+        Catalog.getInstance().setHashJoinMemory(Constants.DEFAULT_HASH_JOIN_MEMORY);
+        Catalog.getInstance().setHybridHashJoin(true);
+        assertEquals(files, countTempFiles());
+
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(op.getNextTuple());
+        }
+        assertTrue(countTempFiles() > files);
+        op.close();
+        assertEquals(files, countTempFiles());
+        assertNull(op.getNextTuple());
+    }
+
+    private static int countTempFiles() {
+        String[] names = new File(Catalog.getInstance().getTempPath()).list();
+        return names == null ? 0 : names.length;
+    }
+
+    private List<String> collect(PhysicalOperator op) {
+        List<String> tuples = new ArrayList<>();
+        Tuple tuple;
+        while ((tuple = op.getNextTuple()) != null) {
+            tuples.add(tuple.toString());
+        }
+        Collections.sort(tuples);
+        return tuples;
+    }
+
 }
\ No newline at end of file
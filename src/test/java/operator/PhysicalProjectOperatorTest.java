@@ -6,6 +6,7 @@ import logical.operator.ProjectOperator;
 import logical.operator.ScanOperator;
 import logical.operator.SelectOperator;
 import model.Tuple;
+import model.TupleBatch;
 import net.sf.jsqlparser.parser.CCJSqlParserManager;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.Select;
@@ -39,6 +40,29 @@ public class PhysicalProjectOperatorTest {
         }
     }
 
+    @Test
+    public void getNextBatch() throws Exception {
+        String statement = "SELECT BT.F, BT.E FROM Boats AS BT WHERE BT.E = 9;";
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.
+                parse(new StringReader(statement))).getSelectBody();
+        Operator scanOp = new ScanOperator(plainSelect, 0);
+        SelectOperator selectOp = new SelectOperator(scanOp, plainSelect);
+        PhysicalPlanBuilder physPB = new PhysicalPlanBuilder();
+        physPB.visit(selectOp);
+        ProjectOperator projectOp = new ProjectOperator(selectOp, plainSelect);
+        PhysicalOperator physProjOp = new PhysicalProjectOperator(projectOp, physPB.getPhysOpChildren().pop());
+
+        TupleBatch batch = physProjOp.getNextBatch();
+        while (batch != null) {
+            assertEquals(2, batch.getWidth());
+            for (int i = 0; i < batch.getSize(); i++) {
+                assertEquals(9, batch.getDataAt(i, 1));
+            }
+            batch = physProjOp.getNextBatch();
+        }
+    }
+
     @Test
     public void reset() {
     }
@@ -4,6 +4,7 @@ import PlanBuilder.PhysicalPlanBuilder;
 import logical.operator.ScanOperator;
 import logical.operator.SelectOperator;
 import model.Tuple;
+import model.TupleBatch;
 import net.sf.jsqlparser.parser.CCJSqlParserManager;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.Select;
@@ -36,6 +37,33 @@ public class PhysicalSelectOperatorTest {
         }
     }
 
+    @Test
+    public void getNextBatch() throws Exception {
+        String statement = "SELECT * FROM Boats AS BT WHERE BT.E = 9;";
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
+        ScanOperator logScanOp = new ScanOperator(plainSelect, 0);
+        SelectOperator logSelectOp = new SelectOperator(logScanOp, plainSelect);
+        PhysicalSelectOperator physSelectOp = new PhysicalSelectOperator(logSelectOp, new PhysicalScanOperator(logScanOp));
+
+        int tupleCount = 0;
+        while (physSelectOp.getNextTuple() != null) {
+            tupleCount++;
+        }
+        physSelectOp.reset();
+
+        int batchCount = 0;
+        TupleBatch batch = physSelectOp.getNextBatch();
+        while (batch != null) {
+            for (int i = 0; i < batch.getSize(); i++) {
+                assertEquals(9, batch.getDataAt(i, 1));
+            }
+            batchCount += batch.getSize();
+            batch = physSelectOp.getNextBatch();
+        }
+        assertEquals(tupleCount, batchCount);
+    }
+
     @Test
     public void reset() {
     }
@@ -0,0 +1,99 @@
+package operator;
+
+import com.sql.interpreter.Handler;
+import model.Tuple;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.Test;
+import util.Catalog;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class PhysicalTopNOperatorTest {
+
+    public PhysicalTopNOperatorTest() throws Exception {
+        Handler.init(new String[0]);
+        Catalog.getInstance().setSortBlockSize(5);
+    }
+
+    /**
+     * the rows of a limit with an order are the rows of the full sort from the offset
+     */
+    @Test
+    public void orderByLimit() throws Exception {
+        List<Tuple> sorted = readAll("SELECT S.A, S.B FROM Sailors S ORDER BY S.B;");
+        PhysicalOperator root = plan("SELECT S.A, S.B FROM Sailors S ORDER BY S.B LIMIT 10 OFFSET 5;");
+
+        assertTrue(root.getChildren().get(0) instanceof PhysicalTopNOperator);
+        assertEquals(sorted.subList(5, 15), readAll(root));
+        root.reset();
+        assertEquals(sorted.subList(5, 15), readAll(root));
+    }
+
+    /**
+     * rows that do not fit in the sort memory are limited after an external sort
+     */
+    @Test
+    public void largeLimit() throws Exception {
+        List<Tuple> sorted = readAll("SELECT * FROM Sailors S ORDER BY S.C;");
+        Catalog.getInstance().setSortBlockSize(1);
+        PhysicalOperator root = plan("SELECT * FROM Sailors S ORDER BY S.C LIMIT 900;");
+        Catalog.getInstance().setSortBlockSize(5);
+
+        PhysicalOperator topN = root instanceof PhysicalTopNOperator ? root : root.getChildren().get(0);
+        assertTrue(topN.getChildren().get(0) instanceof PhysicalExternalSortOperator);
+        assertEquals(sorted.subList(0, 900), readAll(root));
+    }
+
+    @Test
+    public void limitWithoutOrder() throws Exception {
+        List<Tuple> all = readAll("SELECT * FROM Boats;");
+        assertEquals(all.subList(2, 5), readAll(plan("SELECT * FROM Boats LIMIT 3 OFFSET 2;")));
+        assertEquals(all, readAll(plan("SELECT * FROM Boats LIMIT ALL;")));
+    }
+
+    /**
+     * LIMIT 0 returns no row, a lone OFFSET skips rows without a limit
+     */
+    @Test
+    public void limitZeroAndOffset() throws Exception {
+        List<Tuple> sorted = readAll("SELECT * FROM Sailors S ORDER BY S.B;");
+        assertTrue(readAll(plan("SELECT * FROM Sailors S ORDER BY S.B LIMIT 0;")).isEmpty());
+        assertTrue(readAll(plan("SELECT * FROM Boats LIMIT 0;")).isEmpty());
+        assertEquals(sorted.subList(990, 1000), readAll(plan("SELECT * FROM Sailors S ORDER BY S.B OFFSET 990;")));
+        assertEquals(sorted.subList(990, 1000), readAll(plan("SELECT * FROM Sailors S ORDER BY S.B LIMIT ALL OFFSET 990;")));
+    }
+
+    @Test
+    public void distinctLimit() throws Exception {
+        List<Tuple> distinct = readAll("SELECT DISTINCT S.B FROM Sailors S ORDER BY S.B;");
+        assertEquals(distinct.subList(0, 4), readAll(plan("SELECT DISTINCT S.B FROM Sailors S ORDER BY S.B LIMIT 4;")));
+    }
+
+    private static PhysicalOperator plan(String statement) throws Exception {
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
+        Catalog.getInstance().setAttributeOrder(plainSelect);
+        return Handler.constructPhysicalQueryPlan(plainSelect);
+    }
+
+    private static List<Tuple> readAll(String statement) throws Exception {
+        return readAll(plan(statement));
+    }
+
+    private static List<Tuple> readAll(PhysicalOperator operator) {
+        List<Tuple> tuples = new ArrayList<>();
+        Tuple tuple;
+        while ((tuple = operator.getNextTuple()) != null) {
+            tuples.add(tuple.materialize());
+        }
+        return tuples;
+    }
+}
@@ -0,0 +1,72 @@
+package util;
+
+import model.Tuple;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import operator.PhysicalOperator;
+import operator.PhysicalScanOperator;
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExpressionCompilerTest {
+
+    /**
+     * the compiled predicate should agree with SelectExpressionVisitor on every tuple
+     */
+    private void compareWithVisitor(String statement) throws Exception {
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
+        PhysicalOperator op = new PhysicalScanOperator(plainSelect, 0);
+        Expression whereEx = plainSelect.getWhere();
+        TuplePredicate predicate = ExpressionCompiler.compile(whereEx, op.getSchema());
+
+        Tuple tuple = op.getNextTuple();
+        int count = 0;
+        while (tuple != null) {
+            SelectExpressionVisitor visitor = new SelectExpressionVisitor(tuple, op.getSchema());
+            whereEx.accept(visitor);
+            assertEquals(statement, visitor.getResult(), predicate.test(tuple));
+            count++;
+            tuple = op.getNextTuple();
+        }
+        assertEquals(1000, count);
+    }
+
+    @Test
+    public void compileComparison() throws Exception {
+        compareWithVisitor("SELECT * FROM Sailors S WHERE S.A = 3;");
+        compareWithVisitor("SELECT * FROM Sailors S WHERE S.A != 3;");
+        compareWithVisitor("SELECT * FROM Sailors S WHERE S.B > 50;");
+        compareWithVisitor("SELECT * FROM Sailors S WHERE 50 >= S.B;");
+        compareWithVisitor("SELECT * FROM Sailors S WHERE S.B < S.C;");
+        compareWithVisitor("SELECT * FROM Sailors S WHERE S.B <= S.C;");
+    }
+
+    @Test
+    public void compileAnd() throws Exception {
+        compareWithVisitor("SELECT * FROM Sailors S WHERE S.B >= S.C AND S.A < 100 AND S.C != 3;");
+    }
+
+    @Test
+    public void compileOr() throws Exception {
+        String statement = "SELECT * FROM Sailors S WHERE S.A < 10 OR (S.B = 3 AND S.C > 50);";
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
+        PhysicalOperator op = new PhysicalScanOperator(plainSelect, 0);
+        TuplePredicate predicate = ExpressionCompiler.compile(plainSelect.getWhere(), op.getSchema());
+        int a = op.getSchema().get("S.A");
+        int b = op.getSchema().get("S.B");
+        int c = op.getSchema().get("S.C");
+
+        Tuple tuple;
+        while ((tuple = op.getNextTuple()) != null) {
+            boolean expected = tuple.getDataAt(a) < 10 || (tuple.getDataAt(b) == 3 && tuple.getDataAt(c) > 50);
+            assertEquals(expected, predicate.test(tuple));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HyperLogLogTest {
+    @Test
+    public void estimate() {
+        HyperLogLog sketch = new HyperLogLog();
+        assertEquals(0, sketch.estimate());
+        for (int i = 0; i < 100000; i++) {
+            sketch.add(i);
+            sketch.add(i);
+        }
+        assertEquals(100000, sketch.estimate(), 100000 * 0.05);
+    }
+
+    @Test
+    public void smallCardinality() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 200; i++) {
+            sketch.add(i % 50);
+        }
+        assertEquals(50, sketch.estimate(), 2);
+    }
+
+    @Test
+    public void merge() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        for (int i = 0; i < 60000; i++) {
+            first.add(i);
+            second.add(i + 30000);
+        }
+        first.merge(second);
+        assertEquals(90000, first.estimate(), 90000 * 0.05);
+    }
+}
@@ -0,0 +1,78 @@
+package util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RingBufferTest {
+
+    @Test
+    public void noProducer() {
+        RingBuffer<Integer> ring = new RingBuffer<>(4, 0);
+        assertNull(ring.take());
+    }
+
+    /**
+     * several producers put more items than the capacity, the consumer gets each item once
+     */
+    @Test
+    public void multipleProducers() throws Exception {
+        int producers = 4;
+        int items = 10000;
+        RingBuffer<Integer> ring = new RingBuffer<>(8, producers);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int offset = p * items;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < items; i++) {
+                    ring.put(offset + i);
+                }
+                ring.producerDone();
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        boolean[] seen = new boolean[producers * items];
+        int[] last = new int[producers];
+        Arrays.fill(last, -1);
+        Integer item;
+        int count = 0;
+        while ((item = ring.take()) != null) {
+            assertFalse(seen[item]);
+            seen[item] = true;
+            // items of one producer keep their order
+            assertTrue(item % items > last[item / items]);
+            last[item / items] = item % items;
+            count++;
+        }
+        assertEquals(producers * items, count);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * a producer waiting on a full buffer returns once the consumer closes it
+     */
+    @Test
+    public void closeReleasesProducer() throws Exception {
+        RingBuffer<Integer> ring = new RingBuffer<>(2, 1);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                ring.put(i);
+            }
+            ring.producerDone();
+        });
+        producer.start();
+        assertEquals(Integer.valueOf(0), ring.take());
+        ring.close();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertNull(ring.take());
+    }
+}
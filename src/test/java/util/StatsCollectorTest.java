@@ -0,0 +1,47 @@
+package util;
+
+import io.BinaryTupleWriter;
+import model.Tuple;
+import model.TableStatistics;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class StatsCollectorTest {
+    /**
+     * the page ranges scanned in parallel merge into the statistics of a sequential scan
+     */
+    @Test
+    public void parallelMatchesSequential() throws Exception {
+        File file = File.createTempFile("Stats", "");
+        file.deleteOnExit();
+        BinaryTupleWriter writer = new BinaryTupleWriter(file.getPath(), 3, Constants.PAGE_SIZE);
+        StatsCollector sequential = new StatsCollector(3, 0);
+        for (int i = 0; i < 200000; i++) {
+            Tuple tuple = new Tuple(new int[]{i, i % 100, (i * 7919) % 10007 - 5000});
+            writer.writeNextTuple(tuple);
+            sequential.add(tuple);
+        }
+        writer.finish();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        StatsCollector parallel = StatsCollector.collect(pool, file.getPath(), 3, 0).join();
+        pool.shutdown();
+
+        String[] columns = {"A", "B", "C"};
+        TableStatistics expected = sequential.finish("T", columns, new long[3]);
+        TableStatistics actual = parallel.finish("T", columns, new long[3]);
+        assertEquals(200000, actual.getCount());
+        assertEquals(expected.toStatsLine(), actual.toStatsLine());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected.getDistinct(i), actual.getDistinct(i));
+        }
+        assertEquals(100, actual.getDistinct(1));
+        for (int key = 0; key < 100; key++) {
+            assertEquals(2000, actual.getHistogram(1).getCount(key));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package util;
+
+import model.Tuple;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TupleSorterTest {
+
+    /**
+     * same order as comparing the key columns one by one, negative values and ties included
+     */
+    @Test
+    public void sortByKeyColumns() {
+        Random random = new Random(7);
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            tuples.add(new Tuple(new int[]{random.nextInt(10) - 5, random.nextInt(), random.nextInt(3),
+                    random.nextBoolean() ? Integer.MIN_VALUE : Integer.MAX_VALUE}));
+        }
+        int[] keys = new int[]{2, 0, 3, 1};
+        List<Tuple> expected = new ArrayList<>(tuples);
+        expected.sort((t1, t2) -> {
+            for (int key : keys) {
+                int cmp = Integer.compare(t1.getDataAt(key), t2.getDataAt(key));
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        });
+
+        TupleSorter.sort(tuples, keys);
+        assertEquals(expected, tuples);
+    }
+
+    @Test
+    public void smallInputs() {
+        List<Tuple> tuples = new ArrayList<>();
+        TupleSorter.sort(tuples, new int[]{0});
+        assertTrue(tuples.isEmpty());
+        tuples.add(new Tuple(new int[]{3}));
+        tuples.add(new Tuple(new int[]{1}));
+        TupleSorter.sort(tuples, new int[]{0});
+        assertEquals(1, tuples.get(0).getDataAt(0));
+        assertEquals(3, tuples.get(1).getDataAt(0));
+    }
+}
@@ -0,0 +1,78 @@
+package util.codegen;
+
+import model.Tuple;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import operator.PhysicalOperator;
+import operator.PhysicalScanOperator;
+import org.junit.Test;
+import util.ExpressionCompiler;
+import util.TuplePredicate;
+import util.TupleProjection;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class CodeGeneratorTest {
+
+    /**
+     * the generated predicate should agree with the compiled one on every tuple
+     */
+    private void compareWithCompiled(String statement) throws Exception {
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(new StringReader(statement))).getSelectBody();
+        PhysicalOperator op = new PhysicalScanOperator(plainSelect, 0);
+        Expression whereEx = plainSelect.getWhere();
+        TuplePredicate generated = CodeGenerator.generatePredicate(whereEx, op.getSchema());
+        TuplePredicate compiled = ExpressionCompiler.compile(whereEx, op.getSchema(), false);
+        assertNotNull(statement, generated);
+
+        Tuple tuple;
+        int count = 0;
+        while ((tuple = op.getNextTuple()) != null) {
+            assertEquals(statement, compiled.test(tuple), generated.test(tuple));
+            count++;
+        }
+        assertEquals(1000, count);
+    }
+
+    @Test
+    public void generateComparison() throws Exception {
+        compareWithCompiled("SELECT * FROM Sailors S WHERE S.A = 3;");
+        compareWithCompiled("SELECT * FROM Sailors S WHERE S.A != 3;");
+        compareWithCompiled("SELECT * FROM Sailors S WHERE S.B > 50;");
+        compareWithCompiled("SELECT * FROM Sailors S WHERE 50 >= S.B;");
+        compareWithCompiled("SELECT * FROM Sailors S WHERE S.B < S.C;");
+        compareWithCompiled("SELECT * FROM Sailors S WHERE S.B <= 100000;");
+        compareWithCompiled("SELECT * FROM Sailors S WHERE S.B < 10000000000;");
+    }
+
+    @Test
+    public void generateAndOr() throws Exception {
+        compareWithCompiled("SELECT * FROM Sailors S WHERE S.B >= S.C AND S.A < 100 AND S.C != 3;");
+        compareWithCompiled("SELECT * FROM Sailors S WHERE S.A < 10 OR (S.B = 3 AND S.C > 50);");
+        compareWithCompiled("SELECT * FROM Sailors S WHERE (S.A < 10 OR S.B = 3) AND (S.C > 50 OR S.A > 150);");
+    }
+
+    @Test
+    public void unsupportedExpression() throws Exception {
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect plainSelect = (PlainSelect) ((Select) parserManager.parse(
+                new StringReader("SELECT * FROM Sailors S WHERE S.A + 1 < 3;"))).getSelectBody();
+        PhysicalOperator op = new PhysicalScanOperator(plainSelect, 0);
+        assertNull(CodeGenerator.generatePredicate(plainSelect.getWhere(), op.getSchema()));
+    }
+
+    @Test
+    public void generateProjection() {
+        TupleProjection projection = CodeGenerator.generateProjection(new int[]{2, 0});
+        assertNotNull(projection);
+        assertArrayEquals(new int[]{30, 10}, projection.project(new Tuple(new int[]{10, 20, 30})));
+        int[] into = new int[2];
+        assertSame(into, projection.project(Tuple.view(new int[]{0, 40, 50, 60}, 1, 3), into));
+        assertArrayEquals(new int[]{60, 40}, into);
+    }
+}